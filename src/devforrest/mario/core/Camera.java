@@ -0,0 +1,95 @@
+package devforrest.mario.core;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+import devforrest.mario.core.state.Stateful;
+import devforrest.mario.core.tile.TileMap;
+import devforrest.mario.objects.mario.Mario;
+
+/**
+ * The Camera follows the player and decides which part of the map is on the screen.
+ * It is part of the game state, since creatures wake up when the camera reaches them, so 
+ * it is updated once per tick by the Simulation and only read by the GameRenderer.
+ */
+
+public class Camera implements Stateful {
+	
+	private static final int TILE_SIZE = 16;
+	
+	private int screenWidth;
+	private int screenHeight;
+	private int offsetX;
+	private int offsetY;
+	
+	// AdjustYScroll is used to record the previous value of player.getY(). This way I can 
+	// continue to draw on the same y level if there is no significant change in Y. I use 
+	// the player jumping as a measure of significant change. Hides errors in my animations, 
+	// keeping the screen from bobbing when there is a change in height of the player animation. 
+	private int AdjustYScroll = 0;
+	
+	public Camera(int screenWidth, int screenHeight) {
+		this.screenWidth = screenWidth;
+		this.screenHeight = screenHeight;
+	}
+	
+	public int getScreenWidth() { return screenWidth; }
+	
+	public int getScreenHeight() { return screenHeight; }
+	
+	/**
+	 * @return the amount to add to a pixel x position on the map to get the x position on the screen.
+	 */
+	public int getOffsetX() { return offsetX; }
+	
+	/**
+	 * @return the amount to add to a pixel y position on the map to get the y position on the screen.
+	 */
+	public int getOffsetY() { return offsetY; }
+	
+	public void writeState(DataOutput out) throws IOException {
+		out.writeInt(offsetX);
+		out.writeInt(offsetY);
+		out.writeInt(AdjustYScroll);
+	}
+	
+	public void readState(DataInput in) throws IOException {
+		offsetX = in.readInt();
+		offsetY = in.readInt();
+		AdjustYScroll = in.readInt();
+	}
+	
+	/**
+	 * Moves the camera to follow the player of the map.
+	 * @modifies offsetX, offsetY
+	 */
+	public void update(TileMap map) {
+		
+		Mario player = map.getPlayer();
+        int mapWidth = GameRenderer.tilesToPixels(map.getWidth());
+        int mapHeight = GameRenderer.tilesToPixels(map.getHeight());
+        
+        // get the scrolling position of the map based on player's position...
+        
+        offsetX = screenWidth/2 - Math.round(player.getX()) - TILE_SIZE;
+        offsetX = Math.min(offsetX, 0); // if this gets set to 0, player is within a screen width
+        offsetX = Math.max(offsetX, screenWidth - mapWidth);
+        
+        int round = Math.round(player.getY());
+        
+        // initialize AdjustYScroll
+        if (AdjustYScroll == 0) {
+        	AdjustYScroll = round;
+        }
+        
+        // if the player is jumping, change the level at which the screen is drawn.
+        if(player.isJumping() || player.isAbovePlatform() || player.isOnSlopedTile()) {
+        	AdjustYScroll = round;
+        }
+        
+        offsetY = screenHeight/2 - AdjustYScroll - TILE_SIZE;
+        offsetY = Math.min(offsetY, 0);
+        offsetY = Math.max(offsetY, screenHeight - mapHeight - 25); // 25 fixs the JPanel height error
+	}
+}
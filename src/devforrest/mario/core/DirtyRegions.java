@@ -0,0 +1,111 @@
+package devforrest.mario.core;
+
+import java.util.Arrays;
+
+/**
+ * A list of the rectangles of the screen that have to be drawn again, kept in int arrays so
+ * collecting them every frame doesn't allocate. Rectangles are clipped to the screen when 
+ * they are added, and merge() joins the ones that overlap, so no pixel is drawn twice.
+ */
+
+class DirtyRegions {
+	
+	private int[] x = new int[64];
+	private int[] y = new int[64];
+	private int[] w = new int[64];
+	private int[] h = new int[64];
+	private int size;
+	private int screenWidth;
+	private int screenHeight;
+	
+	/**
+	 * Empties the list and sets the size of the screen the rectangles are clipped to.
+	 */
+	public void clear(int screenWidth, int screenHeight) {
+		this.screenWidth = screenWidth;
+		this.screenHeight = screenHeight;
+		size = 0;
+	}
+	
+	/**
+	 * Adds the rectangle at (rx, ry) of the given size, clipped to the screen. Rectangles 
+	 * that are off the screen are left out.
+	 */
+	public void add(int rx, int ry, int rw, int rh) {
+		int x1 = Math.max(0, rx);
+		int y1 = Math.max(0, ry);
+		int x2 = Math.min(screenWidth, rx + rw);
+		int y2 = Math.min(screenHeight, ry + rh);
+		if(x1 >= x2 || y1 >= y2) { return; }
+		if(size == x.length) {
+			x = Arrays.copyOf(x, size * 2);
+			y = Arrays.copyOf(y, size * 2);
+			w = Arrays.copyOf(w, size * 2);
+			h = Arrays.copyOf(h, size * 2);
+		}
+		x[size] = x1;
+		y[size] = y1;
+		w[size] = x2 - x1;
+		h[size] = y2 - y1;
+		size++;
+	}
+	
+	/**
+	 * Adds every rectangle of other.
+	 */
+	public void addAll(DirtyRegions other) {
+		for(int i = 0; i < other.size; i++) {
+			add(other.x[i], other.y[i], other.w[i], other.h[i]);
+		}
+	}
+	
+	/**
+	 * Replaces rectangles that overlap or touch by their bounding box, until none do.
+	 */
+	public void merge() {
+		boolean merged = true;
+		while(merged) {
+			merged = false;
+			for(int i = 0; i < size; i++) {
+				for(int j = i + 1; j < size; j++) {
+					if(x[i] <= x[j] + w[j] && x[j] <= x[i] + w[i] && y[i] <= y[j] + h[j] && y[j] <= y[i] + h[i]) {
+						int x1 = Math.min(x[i], x[j]);
+						int y1 = Math.min(y[i], y[j]);
+						w[i] = Math.max(x[i] + w[i], x[j] + w[j]) - x1;
+						h[i] = Math.max(y[i] + h[i], y[j] + h[j]) - y1;
+						x[i] = x1;
+						y[i] = y1;
+						size--;
+						x[j] = x[size];
+						y[j] = y[size];
+						w[j] = w[size];
+						h[j] = h[size];
+						j--;
+						merged = true;
+					}
+				}
+			}
+		}
+	}
+	
+	/**
+	 * @return the number of pixels covered, counting overlaps more than once.
+	 */
+	public int area() {
+		int area = 0;
+		for(int i = 0; i < size; i++) {
+			area += w[i] * h[i];
+		}
+		return area;
+	}
+	
+	public int size() { return size; }
+	
+	public int getX(int i) { return x[i]; }
+	
+	public int getY(int i) { return y[i]; }
+	
+	public int getWidth(int i) { return w[i]; }
+	
+	public int getHeight(int i) { return h[i]; }
+}
@@ -7,21 +7,26 @@ import java.awt.image.BufferedImage;
 import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Scanner;
 
 import javax.imageio.ImageIO;
 
-import devforrest.mario.core.sound.specific.MarioSoundManager22050Hz;
 import devforrest.mario.core.tile.GameTile;
+import devforrest.mario.core.tile.SlopeType;
 import devforrest.mario.core.tile.TileMap;
 import devforrest.mario.objects.creatures.Coin;
 import devforrest.mario.objects.creatures.Goomba;
 import devforrest.mario.objects.creatures.Platform;
+import devforrest.mario.objects.creatures.PlatformPath;
 import devforrest.mario.objects.creatures.RedKoopa;
 import devforrest.mario.objects.creatures.RedShell;
 import devforrest.mario.objects.tiles.QuestionBlock;
 import devforrest.mario.objects.tiles.RotatingBlock;
 import devforrest.mario.objects.tiles.SlopedTile;
+import devforrest.mario.util.ImageManipulator;
 import devforrest.mario.util.SpriteMap;
 
 
@@ -32,6 +37,7 @@ public class GameLoader {
 	private BufferedImage[] plainTiles;
 	
 	private BufferedImage sloped_image;
+	private BufferedImage sloped_down_image;
 	private BufferedImage grass_edge;
 	private BufferedImage grass_center;
 	
@@ -45,6 +51,7 @@ public class GameLoader {
 		}
 		
 		sloped_image = loadImage("items/Sloped_Tile.png");
+		sloped_down_image = (sloped_image == null) ? null : ImageManipulator.horizontalFlip(sloped_image);
 		grass_edge = loadImage("items/Grass_Edge.png");
 		grass_center = loadImage("items/Grass_Center.png");
 	}
@@ -82,7 +89,7 @@ public class GameLoader {
 		}
 		height = lines.size(); // number of elements in lines is the height
 		
-		TileMap newMap = new TileMap(width, height);
+		TileMap newMap = new TileMap(width, height, 0);
 		for (int y=0; y < height; y++) {
 			String line = lines.get(y);
 			for (int x=0; x < line.length(); x++) {
@@ -106,10 +113,26 @@ public class GameLoader {
 		return newMap;	
 	}
     	
-    // Use this to load the main map
-	public TileMap loadMap(String filename, MarioSoundManager22050Hz soundManager) throws IOException {
+    // Use this to load the main map with a random seed.
+	public TileMap loadMap(String filename) throws IOException {
+		return loadMap(filename, System.nanoTime());
+	}
+	
+    // Use this to load the main map. Maps loaded with the same seed play the same way.
+	public TileMap loadMap(String filename, long seed) throws IOException {
+		return loadMap(filename, seed, new World());
+	}
+	
+	// Use this to load the main map into a given World, so several games can run side by side.
+	// Lines starting with # are left out of the map. A line
+	//   #path column row kind ticks x y [x y ...]
+	// makes the platform 'P' at column, row move along a PlatformPath of the given kind 
+	// (linear, loop, sine or spline) that repeats every ticks ticks, through the waypoints
+	// x y, in tiles from the platform. Other platforms move along PlatformPath.DEFAULT.
+	public TileMap loadMap(String filename, long seed, World world) throws IOException {
 		// lines is a list of strings, each element is a row of the map
 		ArrayList<String> lines = new ArrayList<String>();
+		ArrayList<String> pathLines = new ArrayList<String>();
 		int width = 0;
 		int height = 0;
 		
@@ -117,14 +140,17 @@ public class GameLoader {
 		Scanner reader = new Scanner(new File(filename));
 		while(reader.hasNextLine()) {
 			String line = reader.nextLine();
-			if(!line.startsWith("#")) {
+			if(line.startsWith("#path")) {
+				pathLines.add(line);
+			} else if(!line.startsWith("#")) {
 				lines.add(line);
 				width = Math.max(width, line.length());
 			}
 		}
 		height = lines.size(); // number of elements in lines is the height
+		Map<Integer, PlatformPath> paths = readPaths(pathLines, lines, width);
 		
-		TileMap newMap = new TileMap(width, height);
+		TileMap newMap = new TileMap(width, height, seed, world);
 		for (int y=0; y < height; y++) {
 			String line = lines.get(y);
 			for (int x=0; x < line.length(); x++) {
@@ -134,9 +160,9 @@ public class GameLoader {
 				int pixelY = GameRenderer.tilesToPixels(y);
 				// enumerate the possible tiles...
 				if (ch == 'G') {
-					newMap.creatures().add(new Goomba(pixelX, pixelY, soundManager));
+					newMap.addCreature(new Goomba(pixelX, pixelY, newMap.random()));
 				} else if (ch == 'K') {
-					newMap.creatures().add(new RedKoopa(pixelX, pixelY, soundManager));
+					newMap.addCreature(new RedKoopa(pixelX, pixelY, newMap.random()));
 				} else if (ch == 'V') {
 					GameTile t = new GameTile(pixelX, pixelY, plain.get(56));
 					newMap.setTile(x, y, t);
@@ -154,22 +180,27 @@ public class GameLoader {
 					GameTile t = new GameTile(pixelX, pixelY, plain.get(86));
 					newMap.setTile(x, y, t);
 				} else if (ch == 'Q') {
-					QuestionBlock q = new QuestionBlock(pixelX, pixelY, newMap, soundManager, true, false);
+					QuestionBlock q = new QuestionBlock(pixelX, pixelY, newMap, true, false);
 					newMap.setTile(x, y, q);
 					newMap.animatedTiles().add(q);
 				} else if (ch == 'W') {
-					QuestionBlock q = new QuestionBlock(pixelX, pixelY, newMap, soundManager, false, true);
+					QuestionBlock q = new QuestionBlock(pixelX, pixelY, newMap, false, true);
 					newMap.setTile(x, y, q);
 					newMap.animatedTiles().add(q);
 				} else if (ch == 'S') {
-					newMap.creatures().add(new RedShell(pixelX, pixelY, newMap, soundManager, true));
+					newMap.addCreature(new RedShell(pixelX, pixelY, newMap, true));
 				} else if(ch == 'C') {
-					newMap.creatures().add(new Coin(pixelX, pixelY));
+					newMap.addCreature(new Coin(pixelX, pixelY, newMap.getWorld()));
 				} else if(ch == 'P') {
-					Platform p = new Platform(pixelX, pixelY);
-					newMap.creatures().add(p);
+					PlatformPath path = paths.get(y * width + x);
+					Platform p = new Platform(pixelX, pixelY, (path == null) ? PlatformPath.DEFAULT : path);
+					newMap.addCreature(p);
 				} else if(ch == '9') {
-					SlopedTile t = new SlopedTile(pixelX, pixelY, sloped_image, true);
+					SlopedTile t = new SlopedTile(pixelX, pixelY, sloped_image, SlopeType.UP_45);
+					newMap.setTile(x, y, t);
+					newMap.slopedTiles().add(t);
+				} else if(ch == '6') {
+					SlopedTile t = new SlopedTile(pixelX, pixelY, sloped_down_image, SlopeType.DOWN_45);
 					newMap.setTile(x, y, t);
 					newMap.slopedTiles().add(t);
 				} else if(ch == '8') {
@@ -183,5 +214,32 @@ public class GameLoader {
 		}
 		return newMap;	
 	}
+	
+	// Reads the #path lines of a map into the paths of the platforms, by row * width + column.
+	private static Map<Integer, PlatformPath> readPaths(List<String> pathLines, List<String> lines, int width) 
+			throws IOException {
+		Map<Integer, PlatformPath> paths = new HashMap<Integer, PlatformPath>();
+		for(String line : pathLines) {
+			String[] words = line.trim().split("\\s+");
+			try {
+				int column = Integer.parseInt(words[1]);
+				int row = Integer.parseInt(words[2]);
+				PlatformPath.Kind kind = PlatformPath.Kind.valueOf(words[3].toUpperCase());
+				int ticks = Integer.parseInt(words[4]);
+				float[] waypoints = new float[words.length - 5];
+				for(int i = 0; i < waypoints.length; i++) {
+					waypoints[i] = GameRenderer.tilesToPixels(1) * Float.parseFloat(words[i + 5]);
+				}
+				if(row < 0 || row >= lines.size() || column < 0 || column >= lines.get(row).length() 
+						|| lines.get(row).charAt(column) != 'P') {
+					throw new IOException("No platform at " + column + ", " + row + ": " + line);
+				}
+				paths.put(row * width + column, new PlatformPath(kind, ticks, waypoints));
+			} catch (RuntimeException e) { // a missing or malformed word
+				throw new IOException("Bad path: " + line, e);
+			}
+		}
+		return paths;
+	}
 
 }
@@ -11,46 +11,71 @@ import java.awt.event.KeyEvent;
 import java.io.File;
 import java.io.IOException;
 import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import javax.imageio.ImageIO;
-import javax.sound.midi.Sequence;
 import javax.sound.sampled.AudioFormat;
 import javax.swing.JPanel;
 import javax.swing.JPopupMenu;
 
-import devforrest.mario.core.animation.SpriteListener;
-import devforrest.mario.core.sound.MidiPlayer;
+import devforrest.mario.core.input.InputRecorder;
+import devforrest.mario.core.input.KeyboardInput;
+import devforrest.mario.core.input.Replay;
+import devforrest.mario.core.profile.FrameProfiler;
+import devforrest.mario.core.profile.FrameProfiler.Counter;
+import devforrest.mario.core.profile.FrameProfiler.Phase;
+import devforrest.mario.core.profile.ProfilerOverlay;
+import devforrest.mario.core.sound.MusicManager;
+import devforrest.mario.core.sound.SoundManager;
 import devforrest.mario.core.sound.specific.MarioSoundManager10512Hz;
 import devforrest.mario.core.sound.specific.MarioSoundManager22050Hz;
-import devforrest.mario.core.tile.GameTile;
+import devforrest.mario.core.sound.specific.MarioSoundPlayer;
+import devforrest.mario.core.state.RewindBuffer;
+import devforrest.mario.core.state.StateBuffer;
 import devforrest.mario.core.tile.TileMap;
-import devforrest.mario.objects.base.Creature;
-import devforrest.mario.objects.creatures.Coin;
 import devforrest.mario.objects.mario.Mario;
 
 public class GamePanel extends JPanel implements Runnable {
 
+	// The tracks a level may start with. smwovr2 is listed twice to play it more often.
+	private static final String[] LEVEL_TRACKS = { "sounds/smwovr2.mid", "sounds/smwovr2.mid",
+		"music/smb_hammerbros.mid", "music/smrpg_nimbus1.mid" };
+	private static final String MAP_FILE = "maps/map2.txt";
+
 	private int panelWidth;
 	private int panelHeight;
 	private Graphics dbg;
 	private Image dbImage = null;
 
-	private boolean running = false; 
+	private volatile boolean running = false; 
 	private boolean gameOver = false;
-	private boolean gameFreeze = false;
+	private volatile boolean gameFreeze = false;
+	private AtomicInteger stepRequests = new AtomicInteger(); // extra game loops asked for by the debug keys
+	private volatile boolean saveRequested, loadRequested; // quick save and quick load asked for by F6 and F9
+	private volatile boolean replaySaveRequested; // replay save asked for by F5
+	private StateBuffer quickSave = new StateBuffer();
+	private long quickSaveTick = -1; // the tick of the quick save, -1 if there is none
+	private volatile boolean rewinding; // 'R' is held
+	private RewindBuffer rewind = new RewindBuffer();
 	
 	private Thread animator;
 	private int period = 20; 
 	
+	private World world;
 	private Mario mario;
 	private TileMap map;
 	private TileMap backgroundMap;
 	private TileMap foregroundMap;
 	private GameRenderer renderer;
 	private GameLoader manager;
+	private Simulation simulation;
+	private KeyboardInput keyboard;
+	private InputRecorder input;
+	private FrameProfiler profiler;
+	private ProfilerOverlay profilerOverlay;
 	
 	
-	private MidiPlayer player;
+	private MusicManager music;
 	private MarioSoundManager22050Hz SM_22050_Hz;
 	private MarioSoundManager10512Hz SM_10512_Hz;
 	
@@ -59,42 +84,47 @@ public class GamePanel extends JPanel implements Runnable {
 		this.panelWidth = w;
 		this.panelHeight = h;
 		
-		SM_22050_Hz = new MarioSoundManager22050Hz(new AudioFormat(22050, 8, 1, true, true));
-		SM_10512_Hz = new MarioSoundManager10512Hz(new AudioFormat(10512, 8, 1, true, true));
- 		mario = new Mario(SM_22050_Hz);
+		profiler = new FrameProfiler();
+		profiler.registerMBean("GamePanel");
+		profilerOverlay = new ProfilerOverlay(profiler);
+		
+		// Everything random in the game comes from this seed, it is saved with the replay.
+		long seed = System.nanoTime();
+		keyboard = new KeyboardInput();
+		input = new InputRecorder(keyboard, new Replay(seed, period, MAP_FILE, w, h));
+		world = new World("game");
+		
+		AudioFormat format22050 = new AudioFormat(22050, 8, 1, true, true);
+		AudioFormat format10512 = new AudioFormat(10512, 8, 1, true, true);
+		SM_22050_Hz = new MarioSoundManager22050Hz(format22050, SoundManager.getMaxSimultaneousSounds(format22050),
+				world.newPoolName("sound"));
+		SM_10512_Hz = new MarioSoundManager10512Hz(format10512, SoundManager.getMaxSimultaneousSounds(format10512),
+				System.nanoTime(), world.newPoolName("voice"));
+ 		world.getEvents().addListener(new MarioSoundPlayer(SM_22050_Hz, SM_10512_Hz));
+ 		mario = new Mario();
 		
 		try {
 			manager = new GameLoader();
 			renderer = new GameRenderer();
 			renderer.setBackground(ImageIO.read(new File("backgrounds/background2.png")));
-			map = manager.loadMap("maps/map2.txt", SM_22050_Hz); // use the ResourceManager to load the game map
+			map = manager.loadMap(MAP_FILE, seed, world); // use the ResourceManager to load the game map
 			//backgroundMap = manager.loadOtherMaps("backgroundMap.txt");
 			//foregroundMap = manager.loadOtherMaps("foregroundMap.txt");
 			map.setPlayer(mario); // set the games main player to mario
+			simulation = new Simulation(map, period, w, h, profiler);
+			rewind.record(simulation); // the tick rewinding stops at
 		} catch (IOException e){
 			System.out.println("Invalid Map.");
 		}
 		
-		player = new MidiPlayer();
-		Sequence sequence;
+		// Music is parsed in the background, the chosen track starts as soon as it's loaded.
+		music = new MusicManager();
 		Random r = new Random();
-		int rNum = r.nextInt(4);
-		if(rNum == 0) {
-			sequence = player.getSequence("sounds/smwovr2.mid");
-	        player.play(sequence, true);
-		} else if(rNum == 1) {
-			sequence = player.getSequence("sounds/smwovr2.mid");
-	        player.play(sequence, true);
-		} else if(rNum == 2) {
-			sequence = player.getSequence("music/smb_hammerbros.mid");
-	        player.play(sequence, true);
-		} else if(rNum == 3) {
-			sequence = player.getSequence("music/smrpg_nimbus1.mid");
-	        player.play(sequence, true);
-		}
+		music.play(LEVEL_TRACKS[r.nextInt(LEVEL_TRACKS.length)]);
+		music.preloadAll();
 		
 		JPopupMenu.setDefaultLightWeightPopupEnabled(false);
-		this.addKeyListener(new SpriteListener(mario));
+		this.addKeyListener(keyboard);
 		this.addKeyListener(new GameListener());
 		this.setFocusable(true); 
 	}
@@ -127,9 +157,17 @@ public class GamePanel extends JPanel implements Runnable {
 	 * Defines a single game loop.
 	 */
 	public void gameAction() {
+		profiler.beginFrame();
 		gameUpdate(); // Update game state.
+		long t = profiler.start();
 		gameRender(); // Draw to the double buffer.
+		profiler.end(Phase.RENDER, t);
+		t = profiler.start();
 		paintScreen(); // Draw double buffer to screen.
+		profiler.end(Phase.PRESENT, t);
+		profiler.count(Counter.INPUT_EVENTS, keyboard.sampledEvents());
+		profiler.count(Counter.INPUT_LATENCY, keyboard.sampledLatencyNanos(System.nanoTime()));
+		profiler.endFrame();
 	}
 	
 	/**
@@ -139,9 +177,26 @@ public class GamePanel extends JPanel implements Runnable {
 		
 		running = true;
 		while(running) {
+			// Save and load between two ticks, on this thread.
+			if(replaySaveRequested) {
+				replaySaveRequested = false;
+				saveReplay();
+			}
+			if(saveRequested) {
+				saveRequested = false;
+				quickSave();
+			}
+			if(loadRequested) {
+				loadRequested = false;
+				quickLoad();
+			}
 			if(!gameFreeze) {
 				gameAction();
 			}
+			// Run the game loops requested by the debug keys here, on this thread.
+			for(int steps = stepRequests.getAndSet(0); steps > 0; steps--) {
+				gameAction();
+			}
 			
 			try {
 				Thread.sleep(period);
@@ -151,51 +206,74 @@ public class GamePanel extends JPanel implements Runnable {
 	}
 	
 	/**
-	 * Update the state of all game objects. In the future this game logic
-	 * should probably be abstracted out of this class.
+	 * Update the state of all game objects by running one tick of the simulation with the
+	 * buttons held right now. The buttons are recorded so the game can be replayed, and 
+	 * the tick is recorded so it can be rewound.
+	 * 
+	 * While rewinding, the game goes back one tick per frame instead, and the replay forgets
+	 * the ticks that are undone.
 	 */
 	private void gameUpdate() {
-		
-		if (!gameOver) {
-			// Update all relevant Creatures.
-			for(int i = 0; i < map.relevantCreatures().size(); i++) {
-				Creature c = map.relevantCreatures().get(i);
-				if(!(c instanceof Coin)) {
-					c.updateCreature(map, period);
-					mario.playerCollision(map, c);
-					for(Creature other : map.relevantCreatures()) {
-						c.creatureCollision(other);
-					}
-				} else {
-					c.updateCreature(map, period);
-					mario.playerCollision(map, c);
+		if(rewinding) {
+			keyboard.sample(simulation.getTick()); // keep the keyboard's queue drained
+			try {
+				if(rewind.stepBack(simulation)) {
+					input.getReplay().truncate(simulation.getTick());
+					gameOver = false;
 				}
+			} catch (IOException ex) {
+				System.out.println("Could not rewind: " + ex);
+				rewind.clear();
 			}
-			
-			// Debugging information:
-			//System.out.println("relevant creatures size: " + map.relevantCreatures().size());
-			//System.out.println("creatures size: " + map.creatures().size());
-			//System.out.println(map.platforms().size());
-			
-			for(GameTile tile : map.animatedTiles()) {
-	            tile.collidingCreatures().clear();  // clear the colliding sprites on the tile
-	            tile.update(20);
-			}
-        
-			// Add creatures that need to be created. They are added here to avoid concurrent modifcation errors.
-            for(Creature c : map.creaturesToAdd()) {
-            	map.creatures().add(c);
-            }
-            
-            map.creaturesToAdd().clear(); // This line MUST be called BEFORE mario.update(). Why?
-            							  // If it is called after, all the creatures that are created
-            							  // as a result of mario colliding are not added next update because
-            							  // they are cleared immediately afterwards.
-
-			mario.update(map, period);
-			Coin.turn.update(period);
-			map.relevantCreatures().clear();
-			map.platforms().clear();
+		} else if (!gameOver) {
+			simulation.step(input.sample(simulation.getTick()));
+			long t = profiler.start();
+			rewind.record(simulation);
+			profiler.end(Phase.SNAPSHOT, t);
+		}
+	}
+	
+	/**
+	 * Writes the replay of the game so far to a new file.
+	 */
+	private void saveReplay() {
+		String filename = "replay-" + System.currentTimeMillis() + ".mrpl";
+		try {
+			Replay replay = input.getReplay();
+			replay.save(filename);
+			System.out.println("Wrote " + replay.getLength() + " ticks to " + filename);
+		} catch (IOException ex) {
+			System.out.println("Could not write " + filename + ": " + ex);
+		}
+	}
+	
+	/**
+	 * Saves the state of the game in memory.
+	 */
+	private void quickSave() {
+		int size = quickSave.capture(simulation);
+		quickSaveTick = simulation.getTick();
+		System.out.println("Saved tick " + quickSaveTick + " (" + size + " bytes).");
+	}
+	
+	/**
+	 * Puts the game back in the state of the quick save. The replay forgets the ticks played
+	 * since, so it still plays back the game that is on the screen.
+	 */
+	private void quickLoad() {
+		if(quickSaveTick < 0) {
+			System.out.println("Nothing to load.");
+			return;
+		}
+		try {
+			quickSave.restore(simulation);
+			input.getReplay().truncate(quickSaveTick);
+			rewind.clear();
+			rewind.record(simulation);
+			gameOver = false;
+			System.out.println("Loaded tick " + quickSaveTick + ".");
+		} catch (IOException ex) {
+			System.out.println("Could not load the saved state: " + ex);
 		}
 	}
 	
@@ -205,10 +283,16 @@ public class GamePanel extends JPanel implements Runnable {
 	private void gameRender() {
 		if(dbImage == null) {
 			dbImage = createImage(this.panelWidth, this.panelHeight);
+			renderer.invalidate();
 			return;
 		}
 	    dbg = dbImage.getGraphics();    
-		renderer.draw((Graphics2D) dbg, map, backgroundMap, foregroundMap, panelWidth, panelHeight);
+		renderer.draw((Graphics2D) dbg, map, backgroundMap, foregroundMap, simulation.getCamera());
+		profiler.count(Counter.DRAW_CALLS, renderer.getDrawCalls());
+		profilerOverlay.draw((Graphics2D) dbg, 4, 24);
+		if(profiler.isOverlayShown()) {
+			renderer.damage(4, 24, profilerOverlay.getWidth(), profilerOverlay.getHeight());
+		}
 	}
 	
 	/**
@@ -227,21 +311,35 @@ public class GamePanel extends JPanel implements Runnable {
 	
 	/**
 	 * Adds debugging features so it is possible to single step a game loop one by one.
+	 * The steps are only requested here, the game thread runs them, so the game state is
+	 * never changed from the event dispatch thread.
 	 * 'Z' pauses the game.
 	 * 'X' resumes the game.
 	 * '1' runs a single game loop if the game if paused.
 	 * 'L' runs a single game loop if pressed and continously runs the game loop if held.
+	 * 'P' shows or hides the profiler overlay.
+	 * 'O' dumps the profiler's frame history to a CSV file.
+	 * 'D' switches between drawing the whole screen and only the parts that changed.
+	 * 'F5' saves the replay of the game so far.
+	 * 'F6' saves the state of the game in memory.
+	 * 'F9' loads the state saved by 'F6'.
+	 * 'R' rewinds the game while it is held.
 	 */
 	class GameListener extends KeyAdapter {
 		
 	    public void keyReleased(KeyEvent e) {
 	    	int key = e.getKeyCode();
+	    	
+	    	// 'R' is released.
+	    	if (key == KeyEvent.VK_R) {
+	    		GamePanel.this.rewinding = false;
+	    	}
 			
 	    	// 'Z' is pressed.
 	        if (key == KeyEvent.VK_Z) { // pause
 	        	if(GamePanel.this.gameFreeze == false) {
 		        	GamePanel.this.gameFreeze = true;
-		        	GamePanel.this.player.setPaused(true);
+		        	GamePanel.this.music.setPaused(true);
 		        	GamePanel.this.SM_22050_Hz.playPause();
 	        	}
 	        }
@@ -250,19 +348,54 @@ public class GamePanel extends JPanel implements Runnable {
 	        if (key == KeyEvent.VK_X) { // resume
 	        	if(GamePanel.this.gameFreeze == true) {
 		        	GamePanel.this.gameFreeze = false;
-		        	GamePanel.this.player.setPaused(false);
+		        	GamePanel.this.music.setPaused(false);
 		        	GamePanel.this.SM_22050_Hz.playPause();
 	        	}
 	        }
 	        
+	        // 'P' is pressed.
+	        if (key == KeyEvent.VK_P) {
+	        	profiler.setOverlayShown(!profiler.isOverlayShown());
+	        }
+	        
+	        // 'O' is pressed.
+	        if (key == KeyEvent.VK_O) {
+	        	String filename = "profile-" + System.currentTimeMillis() + ".csv";
+	        	try {
+	        		int frames = profiler.dumpCsv(filename);
+	        		System.out.println("Wrote " + frames + " frames to " + filename);
+	        	} catch (IOException ex) {
+	        		System.out.println("Could not write " + filename + ": " + ex);
+	        	}
+	        }
+	        
+	        // 'D' is pressed.
+	        if (key == KeyEvent.VK_D) {
+	        	renderer.setDirtyRectangles(!renderer.isDirtyRectangles());
+	        	System.out.println("Dirty rectangles " + (renderer.isDirtyRectangles() ? "on." : "off."));
+	        }
+	        
+	        // 'F5' is pressed.
+	        if (key == KeyEvent.VK_F5) {
+	        	GamePanel.this.replaySaveRequested = true;
+	        }
+	        
+	        // 'F6' is pressed.
+	        if (key == KeyEvent.VK_F6) {
+	        	GamePanel.this.saveRequested = true;
+	        }
+	        
+	        // 'F9' is pressed.
+	        if (key == KeyEvent.VK_F9) {
+	        	GamePanel.this.loadRequested = true;
+	        }
+	        
 	        // '1' is pressed.
 	        if (key == KeyEvent.VK_1) {
 	        	if(GamePanel.this.gameFreeze == true) {
 	        		System.out.println();
-	        		System.out.println("Game Update (1) Starting...");
-	        		GamePanel.this.gameAction();
-	        		System.out.println();
-	        		System.out.println("Game Update (1) Completed.");
+	        		System.out.println("Game Update (1) Requested.");
+	        		GamePanel.this.stepRequests.incrementAndGet();
 	        	}
 	        }
 
@@ -272,7 +405,11 @@ public class GamePanel extends JPanel implements Runnable {
 	    public void keyPressed(KeyEvent e) {
 	    	int key = e.getKeyCode();
 	    	if (key == KeyEvent.VK_L) {
-	    		GamePanel.this.gameAction();
+	    		GamePanel.this.stepRequests.incrementAndGet();
+	    	}
+	    	// 'R' is pressed or held.
+	    	if (key == KeyEvent.VK_R) {
+	    		GamePanel.this.rewinding = true;
 	    	}
 
 	    }
@@ -1,19 +1,14 @@
 package devforrest.mario.core;
 
-import java.awt.Color;
 import java.awt.Graphics2D;
 import java.awt.Image;
-import java.awt.Point;
 import java.awt.image.BufferedImage;
-import java.text.DecimalFormat;
 import java.util.ArrayList;
 
-import devforrest.mario.core.animation.Sprite;
+import devforrest.mario.core.hud.Hud;
 import devforrest.mario.core.tile.GameTile;
-import devforrest.mario.core.tile.Tile;
 import devforrest.mario.core.tile.TileMap;
 import devforrest.mario.objects.base.Creature;
-import devforrest.mario.objects.creatures.Platform;
 import devforrest.mario.objects.mario.Mario;
 
 
@@ -23,14 +18,17 @@ import devforrest.mario.objects.mario.Mario;
 
 public class GameRenderer {
 	
-	// AdjustYScroll is used to record the previous value of player.getY(). This way I can 
-	// continue to draw on the same y level if there is no significant change in Y. I use 
-	// the player jumping as a measure of significant change. Hides errors in my animations, 
-	// keeping the screen from bobbing when there is a change in height of the player animation. 
-	private int AdjustYScroll = 0;
 	private ArrayList<TileMap> maps = new ArrayList<TileMap>();
-	private int lastLife = -5;
-	private DecimalFormat df2 = new DecimalFormat("#,###,###,##0.00");
+	private Hud hud = new Hud();
+	private int drawCalls; // number of images drawn by the last call to draw()
+	
+	// dirty rectangle mode
+	private volatile boolean dirtyRectangles;
+	private volatile boolean invalid = true; // everything has to be drawn next frame
+	private int lastOffsetX;
+	private int lastOffsetY;
+	private DirtyRegions damage = new DirtyRegions(); // what is drawn this frame
+	private DirtyRegions nextDamage = new DirtyRegions(); // what has to be drawn next frame
 
 	// the size in bits of the tile
     private static final int TILE_SIZE = 16;
@@ -61,113 +59,106 @@ public class GameRenderer {
         //return numTiles * TILE_SIZE;
     }
 
+    // Returns the number of images drawn by the last call to draw().
+    public int getDrawCalls() {
+    	return drawCalls;
+    }
+
     // Sets the background to draw.
     public void setBackground(BufferedImage background) {
         this.background = background;
+        invalid = true;
     }
     
-	// Returns the tile that a Sprite has collided with. Returns null if no 
-	// collision was detected. The last parameter, right, is used to check if multiple blocks
-	// are hit when a sprite jumps.
-	public static Point getTileCollision(TileMap map, Sprite sprite, float currX, float currY, float newX, float newY) {
-
-	    float fromX = Math.min(currX, newX);
-	    float fromY = Math.min(currY, newY);
-	    float toX = Math.max(currX, newX);
-	    float toY = Math.max(currY, newY);
-	
-	    // get the tile locations
-	    int fromTileX = GameRenderer.pixelsToTiles(fromX);
-	    int fromTileY = GameRenderer.pixelsToTiles(fromY);
-	    int toTileX = GameRenderer.pixelsToTiles(toX + sprite.getWidth() - 1);
-	    int toTileY = GameRenderer.pixelsToTiles(toY + sprite.getHeight() - 1);
-	
-	    // check each tile for a collision
-	    for (int x=fromTileX; x<=toTileX; x++) {
-	        for (int y=fromTileY; y<=toTileY; y++) {
-	            if (x < 0 || x >= map.getWidth() || map.getImage(x, y) != null) {
-	            	Tile tile = map.getTile(x,y);
-	            	if(tile != null && map.getTile(x, y).isCollidable()) {
-	                // collision found and the tile is collidable, return the tile
-	            		return new Point(x,y);
-	            	} 
-	            }
-	        }
-	    }
-	    // no collision found, return null
-	    return null;
-	}
-	
-	/**
-	 * @return A List of Points, where each Point corresponds to the location of a tile the sprite is 
-	 * colliding with in map.tiles().
-	 */
-	public static ArrayList<Point> getTileCollisionAll(TileMap map, Sprite sprite, float currX, float currY, float newX, float newY) {
-		
-		ArrayList<Point> collisionPoints = new ArrayList<Point>(); 
-	    float fromX = Math.min(currX, newX);
-	    float fromY = Math.min(currY, newY);
-	    float toX = Math.max(currX, newX);
-	    float toY = Math.max(currY, newY);
-	
-	    // get the tile locations
-	    int fromTileX = GameRenderer.pixelsToTiles(fromX);
-	    int fromTileY = GameRenderer.pixelsToTiles(fromY);
-	    int toTileX = GameRenderer.pixelsToTiles(toX + sprite.getWidth() - 1);
-	    int toTileY = GameRenderer.pixelsToTiles(toY + sprite.getHeight() - 1);
-	
-	    // check each tile for a collision
-	    for (int x=fromTileX; x<=toTileX; x++) {
-	        for (int y=fromTileY; y<=toTileY; y++) {
-	            if (x < 0 || x >= map.getWidth() || map.getImage(x, y) != null) {
-	            	Tile tile = map.getTile(x,y);
-	            	if(tile != null && map.getTile(x, y).isCollidable()) {
-	                // collision found and the tile is collidable, return the tile
-	            		collisionPoints.add(new Point(x,y));
-	            	} 
-	            }
-	        }
-	    }
-	    // no collision found, return null
-	    return collisionPoints;
-	}
+    // Returns the HUD, to which more HudElements can be added.
+    public Hud getHud() {
+    	return hud;
+    }
+    
+    // Returns true if only the parts of the screen that changed are drawn.
+    public boolean isDirtyRectangles() {
+    	return dirtyRectangles;
+    }
+    
+    // Sets whether only the parts of the screen that changed are drawn, or everything.
+    public void setDirtyRectangles(boolean dirtyRectangles) {
+    	this.dirtyRectangles = dirtyRectangles;
+    	invalid = true;
+    }
+    
+    // Makes the next call to draw() draw everything, as when the image it draws on was lost.
+    public void invalidate() {
+    	invalid = true;
+    }
+    
+    // Reports that something was drawn over the area at (x, y) of the given size after draw(), 
+    // so it has to be drawn again next frame.
+    public void damage(int x, int y, int width, int height) {
+    	nextDamage.add(x, y, width, height);
+    }
     
     /**
-     * Draws all game elements. I did the best I can to seperate all updating from drawing. However, it 
-     * seems its much more efficient to do some updating here where I have all the information I need
-     * to make important decisions. So calling draw() DOES change the game state.
+     * Draws all game elements, seen through the camera. Drawing doesn't change the game state: 
+     * the camera, the relevant creatures and their on screen status are all updated by the 
+     * Simulation at the end of each tick.
+     * 
+     * In dirty rectangle mode only the parts of the screen that may have changed since the 
+     * last call are drawn: where the sprites and animated tiles were and are now, the HUD if 
+     * it changed, and what was reported with damage(). Everything is drawn when the camera has moved, when the 
+     * changes cover more than half of the screen, and after invalidate(). g must then draw on 
+     * the same image every frame, and whatever else draws on that image must report it.
      */
-    public void draw(Graphics2D g, TileMap mainMap, TileMap backgroundMap, TileMap foregroundMap, int screenWidth, int screenHeight) {
+    public void draw(Graphics2D g, TileMap mainMap, TileMap backgroundMap, TileMap foregroundMap, Camera camera) {
     	
+    	drawCalls = 0;
     	// add the three maps to the list of maps to draw, only mainMap is interactive
     	maps.add(backgroundMap);
     	maps.add(mainMap);
     	maps.add(foregroundMap);
-        Mario player = mainMap.getPlayer();
-        int mapWidth = tilesToPixels(mainMap.getWidth());
-        int mapHeight = tilesToPixels(mainMap.getHeight());
+        int screenWidth = camera.getScreenWidth();
+        int screenHeight = camera.getScreenHeight();
+        int offsetX = camera.getOffsetX();
+        int offsetY = camera.getOffsetY();
         
-        // get the scrolling position of the map based on player's position...
-        
-        int offsetX = screenWidth/2 - Math.round(player.getX()) - TILE_SIZE;
-        offsetX = Math.min(offsetX, 0); // if this gets set to 0, player is within a screen width
-        offsetX = Math.max(offsetX, screenWidth - mapWidth);
-        
-        int round = Math.round(player.getY());
-        
-        // initialize AdjustYScroll
-        if (AdjustYScroll == 0) {
-        	AdjustYScroll = round;
+        // What is drawn this frame is damaged again next frame, since it may move or go away.
+        damage.clear(screenWidth, screenHeight);
+        damage.addAll(nextDamage);
+        nextDamage.clear(screenWidth, screenHeight);
+        addSprites(mainMap, offsetX, offsetY, screenWidth, screenHeight);
+        damage.addAll(nextDamage);
+        if(hud.update(mainMap, screenWidth)) {
+        	damage.add(0, 0, screenWidth, Hud.HEIGHT);
         }
+        damage.merge();
         
-        // if the player is jumping, change the level at which the screen is drawn.
-        if(player.isJumping() || player.isAbovePlatform() || player.isOnSlopedTile()) {
-        	AdjustYScroll = round;
+        if(!dirtyRectangles || invalid || offsetX != lastOffsetX || offsetY != lastOffsetY 
+        		|| damage.area() > screenWidth * screenHeight / 2) {
+        	drawArea(g, mainMap, camera, 0, 0, screenWidth, screenHeight);
+        } else {
+        	for(int i = 0; i < damage.size(); i++) {
+        		g.setClip(damage.getX(i), damage.getY(i), damage.getWidth(i), damage.getHeight(i));
+        		drawArea(g, mainMap, camera, damage.getX(i), damage.getY(i), damage.getWidth(i), damage.getHeight(i));
+        	}
+        	g.setClip(null);
         }
+        lastOffsetX = offsetX;
+        lastOffsetY = offsetY;
+        invalid = false;
         
-        int offsetY = screenHeight/2 - AdjustYScroll - TILE_SIZE;
-        offsetY = Math.min(offsetY, 0);
-        offsetY = Math.max(offsetY, screenHeight - mapHeight - 25); // 25 fixs the JPanel height error
+        maps.clear(); 
+    }
+    
+    // Draws the background, and the tiles, creatures, player and HUD that are in the area of the 
+    // screen at (areaX, areaY) of the given size. Things that are partly in it are drawn whole, 
+    // the caller clips them if it needs to.
+    private void drawArea(Graphics2D g, TileMap mainMap, Camera camera, int areaX, int areaY, int areaWidth, int areaHeight) {
+        Mario player = mainMap.getPlayer();
+        int screenWidth = camera.getScreenWidth();
+        int screenHeight = camera.getScreenHeight();
+        int mapWidth = tilesToPixels(mainMap.getWidth());
+        int mapHeight = tilesToPixels(mainMap.getHeight());
+        int offsetX = camera.getOffsetX();
+        int offsetY = camera.getOffsetY();
 
         // draw parallax background image
         if (background != null) {
@@ -175,15 +166,14 @@ public class GameRenderer {
             int x = offsetX * (screenWidth - background.getWidth(null)) / (screenWidth - mapWidth);
             int y = offsetY * (screenHeight - background.getHeight(null)) / (screenHeight - mapHeight);
             g.drawImage(background, x, y, null);
+            drawCalls++;
         }
 
-
-        int firstTileX = pixelsToTiles(-offsetX);
-        int lastTileX = firstTileX + pixelsToTiles(screenWidth) + 1;
-        int firstTileY = pixelsToTiles(-offsetY);
-        int lastTileY = firstTileY + pixelsToTiles(screenHeight) + 1;
+        int firstTileX = pixelsToTiles(areaX - offsetX);
+        int lastTileX = pixelsToTiles(areaX + areaWidth - 1 - offsetX);
+        int firstTileY = pixelsToTiles(areaY - offsetY);
+        int lastTileY = pixelsToTiles(areaY + areaHeight - 1 - offsetY);
       
-        
         for(TileMap map : maps) {
             // draw the visible tiles
         	if(map != null) {
@@ -193,6 +183,7 @@ public class GameRenderer {
         	            if(tile != null) {
         	            	tile.draw(g, tilesToPixels(x), tilesToPixels(y), 
         	            			tile.getOffsetX() + offsetX, tile.getOffsetY() + offsetY);
+        	            	drawCalls++;
                         }
                     }
                 }
@@ -200,71 +191,69 @@ public class GameRenderer {
         	
 	    	if(map == mainMap) {
                 
-	    		for(int i = 0; i < map.creatures().size(); i++) { 
-	            	
-	    			Creature c = map.creatures().get(i);
-	                int x = Math.round(c.getX()) + offsetX;
-	                int y = Math.round(c.getY()) + offsetY;
-	                int tileX = pixelsToTiles(x);
-	                int tileY = pixelsToTiles(y); 
-	                
-	                if(!c.isAlive()) {
-	                	map.creatures().remove(i);
-	                	i--;
-	                } else {
-		                if(Creature.WAKE_UP_VALUE_UP_LEFT <= tileX && Creature.WAKE_UP_VALUE_DOWN_RIGHT >= tileX && 
-		                		Creature.WAKE_UP_VALUE_UP_LEFT <= tileY && Creature.WAKE_UP_VALUE_DOWN_RIGHT >= tileY ) {
-		                	
-		                	// Only want to deal with platforms that are awake.
-			                if(c instanceof Platform) { map.platforms().add((Platform) c); }
-	                        // Wake up the creature the first time the sprite is in view.
-		                	if(c.isSleeping()) { c.wakeUp(); }
-			                
-		                	c.setIsOnScreen(true);
-		                	if(!c.isInvisible()) {
-		                		c.draw(g, x, y); // draw the creature
-		                	}
-			                map.relevantCreatures().add(c);
-			                
-		                } else {
-		                	if(c.isAlwaysRelevant()) { map.relevantCreatures().add(c); }
-		                	c.setIsOnScreen(false);
-		                }
-	                }
-	                           
-	                // Draw the player.
-	                if(!(((Mario) player).isInvisible())) {
-	                player.draw(g, Math.round(player.getX()) + offsetX, Math.round(player.getY()) + offsetY,
-	                		player.getOffsetX(), player.getOffsetY());
+	    		// draw the creatures on the screen
+	    		for(Creature c : map.relevantCreatures()) { 
+	                if(c.isOnScreen() && !c.isInvisible()) {
+	                	int x = Math.round(c.getX()) + offsetX;
+	                	int y = Math.round(c.getY()) + offsetY;
+	                	if(intersects(x, y, c.getWidth(), c.getHeight(), areaX, areaY, areaWidth, areaHeight)) {
+	                		c.draw(g, x, y);
+	                		drawCalls++;
+	                	}
 	                }
 	            }
+	    		
+                // Draw the player.
+                if(!player.isInvisible()) {
+                	int x = Math.round(player.getX()) + offsetX;
+                	int y = Math.round(player.getY()) + offsetY;
+                	if(intersects(x + player.getOffsetX(), y + player.getOffsetY(), player.getWidth(), player.getHeight(), 
+                			areaX, areaY, areaWidth, areaHeight)) {
+                		player.draw(g, x, y, player.getOffsetX(), player.getOffsetY());
+                		drawCalls++;
+                	}
+                }
 	    	}
         }
         
-        float dd2dec = new Float(df2.format(player.getdX())).floatValue();
-
-        g.drawString("dx: " + dd2dec, 300, 17);
-       
-        if(lastLife != player.getHealth()); {
-	        lastLife = player.getHealth();
-        	Color myColor = new Color(50, 50, 50, 50);
-	        g.setColor(myColor);
-	        g.draw3DRect(2, 2, screenWidth - 10, 18, true);
-	        g.fill3DRect(2, 2, screenWidth - 10, 18, true);
-	        g.setColor(Color.BLACK);
-	        int hbStart = 4;
-	        int hbWidth = 35;
-	        g.draw3DRect(hbStart, 4, hbWidth, 13, true);
-	        g.draw3DRect(hbStart + hbWidth, 4, hbWidth, 13, true);
-	        g.draw3DRect(hbStart + 2*hbWidth, 4, hbWidth, 13, true);
-	        
-	        //Color myColor2 = new Color(200, 60, 60, 50);
-	        g.setColor(Color.RED);
-	        for(int i=0; i < player.getHealth(); i++) {
-	        	g.fill3DRect(hbStart + i*hbWidth, 4, hbWidth, 13, true);
-	        } 
+        if(areaY < Hud.HEIGHT) {
+        	hud.draw(g);
+        	drawCalls++;
         }
-        
-        maps.clear(); 
+    }
+    
+    // Adds where the creatures, the player and the animated tiles on the screen are drawn this 
+    // frame to nextDamage.
+    private void addSprites(TileMap mainMap, int offsetX, int offsetY, int screenWidth, int screenHeight) {
+    	for(Creature c : mainMap.relevantCreatures()) {
+    		if(c.isOnScreen() && !c.isInvisible()) {
+    			nextDamage.add(Math.round(c.getX()) + offsetX, Math.round(c.getY()) + offsetY, c.getWidth(), c.getHeight());
+    		}
+    	}
+    	Mario player = mainMap.getPlayer();
+    	if(!player.isInvisible()) {
+    		nextDamage.add(Math.round(player.getX()) + offsetX + player.getOffsetX(), 
+    				Math.round(player.getY()) + offsetY + player.getOffsetY(), player.getWidth(), player.getHeight());
+    	}
+    	int lastTileX = Math.min(pixelsToTiles(screenWidth - 1 - offsetX), mainMap.getWidth() - 1);
+    	int lastTileY = Math.min(pixelsToTiles(screenHeight - 1 - offsetY), mainMap.getHeight() - 1);
+    	for(int x = Math.max(0, pixelsToTiles(-offsetX)); x <= lastTileX; x++) {
+    		for(int y = Math.max(0, pixelsToTiles(-offsetY)); y <= lastTileY; y++) {
+    			GameTile tile = mainMap.getTile(x, y);
+    			if(tile != null && tile.currentAnimation() != null) { addTile(tile, offsetX, offsetY); }
+    		}
+    	}
+    }
+    
+    // Adds where an animated tile is drawn this frame, bumped or not, to nextDamage.
+    private void addTile(GameTile tile, int offsetX, int offsetY) {
+    	int tileOffsetX = tile.getOffsetX();
+    	int tileOffsetY = tile.getOffsetY();
+    	nextDamage.add(tile.getPixelX() + offsetX + Math.min(0, tileOffsetX), tile.getPixelY() + offsetY + Math.min(0, tileOffsetY), 
+    			TILE_SIZE + Math.abs(tileOffsetX), TILE_SIZE + Math.abs(tileOffsetY));
+    }
+    
+    private static boolean intersects(int x, int y, int w, int h, int areaX, int areaY, int areaWidth, int areaHeight) {
+    	return x < areaX + areaWidth && areaX < x + w && y < areaY + areaHeight && areaY < y + h;
     }
 }
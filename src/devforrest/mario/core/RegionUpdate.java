@@ -0,0 +1,198 @@
+package devforrest.mario.core;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import devforrest.mario.core.event.GameEvents;
+import devforrest.mario.core.tile.TickBuffer;
+import devforrest.mario.core.tile.TileMap;
+import devforrest.mario.objects.base.Creature;
+import devforrest.mario.objects.creatures.Coin;
+
+/**
+ * A RegionUpdate updates the relevant creatures of a tick, other than the platforms, by
+ * regions of REGION_COLUMNS tile columns. A creature belongs to the region its left edge is
+ * in when the update starts.
+ * 
+ * A region updates its creatures in order, each followed by its collisions with the other 
+ * creatures of the region. Meanwhile its creatures only touch each other, and put what they 
+ * change of the things regions share (events, tiles landed on, platforms got on and off) in 
+ * a TickBuffer of the region. The buffers are then applied in region order. Last, the pairs of 
+ * creatures of different regions that overlap collide, one pair at a time, in a fixed order.
+ * 
+ * With a ForkJoinPool the regions are updated in parallel, otherwise one after the other. 
+ * Nothing depends on which: the game is the same either way.
+ */
+
+class RegionUpdate {
+	
+	static final int REGION_COLUMNS = 16;
+	
+	private final int regionCount;
+	private final List<List<Creature>> members; // the creatures of each region
+	private final TickBuffer[] buffers;
+	private ForkJoinPool pool; // null to update the regions on the calling thread
+	
+	// Per relevant creature, by its index in the relevant creatures: its region, -1 for a 
+	// platform, and the first and last region it touches when the regions collide.
+	private int[] member;
+	private int[] first;
+	private int[] last;
+	private int[][] touching; // the creatures that touch each region, by index
+	private int[] touchingCount;
+	
+	/**
+	 * Creates a RegionUpdate for a map widthInTiles wide.
+	 */
+	RegionUpdate(int widthInTiles) {
+		regionCount = Math.max(1, (widthInTiles + REGION_COLUMNS - 1) / REGION_COLUMNS);
+		members = new ArrayList<List<Creature>>(regionCount);
+		buffers = new TickBuffer[regionCount];
+		touching = new int[regionCount][8];
+		touchingCount = new int[regionCount];
+		for(int r = 0; r < regionCount; r++) {
+			members.add(new ArrayList<Creature>());
+			buffers[r] = new TickBuffer();
+		}
+		member = new int[64];
+		first = new int[64];
+		last = new int[64];
+	}
+	
+	void setPool(ForkJoinPool pool) {
+		this.pool = pool;
+	}
+	
+	/**
+	 * Updates the relevant creatures that aren't platforms on tick, region by region, and 
+	 * applies what they changed of the shared things.
+	 */
+	void update(final TileMap map, List<Creature> relevant, final int period, final long tick) {
+		int count = relevant.size();
+		if(count > member.length) {
+			member = new int[Math.max(count, member.length * 2)];
+			first = new int[member.length];
+			last = new int[member.length];
+		}
+		for(List<Creature> region : members) {
+			region.clear();
+		}
+		for(int i = 0; i < count; i++) {
+			Creature c = relevant.get(i);
+			if(c.isPlatform()) {
+				member[i] = -1;
+			} else {
+				member[i] = regionOf(Math.round(c.getX()));
+				members.get(member[i]).add(c);
+			}
+		}
+		
+		final GameEvents shared = map.getWorld().getEvents();
+		List<RecursiveAction> tasks = new ArrayList<RecursiveAction>();
+		for(int r = 0; r < regionCount; r++) {
+			if(members.get(r).isEmpty()) { continue; }
+			final int region = r;
+			tasks.add(new RecursiveAction() {
+				protected void compute() {
+					updateRegion(region, map, period, tick, shared);
+				}
+			});
+		}
+		if(pool == null || tasks.size() < 2) {
+			for(RecursiveAction task : tasks) {
+				task.invoke();
+			}
+		} else {
+			final List<RecursiveAction> all = tasks;
+			pool.invoke(new RecursiveAction() {
+				protected void compute() {
+					invokeAll(all);
+				}
+			});
+		}
+		for(TickBuffer buffer : buffers) {
+			buffer.applyTo(map, shared);
+		}
+	}
+	
+	// Updates the creatures of region, which touch nothing shared but through its buffer.
+	private void updateRegion(int region, TileMap map, int period, long tick, GameEvents shared) {
+		List<Creature> creatures = members.get(region);
+		TickBuffer buffer = buffers[region];
+		for(Creature c : creatures) {
+			c.setTickBuffer(buffer);
+			c.setEvents(buffer.events());
+		}
+		for(Creature c : creatures) {
+			c.updateTo(map, period, tick);
+			if(!(c instanceof Coin)) {
+				for(Creature other : creatures) {
+					c.creatureCollision(other);
+				}
+			}
+		}
+		for(Creature c : creatures) {
+			c.setTickBuffer(null);
+			c.setEvents(shared);
+		}
+	}
+	
+	/**
+	 * Collides the creatures of different regions that overlap, after update(). Creatures 
+	 * that stayed inside their region can't overlap one of another region, so only the pairs
+	 * with a creature that now sticks out of its region are looked at, in the first region 
+	 * both touch. Each pair collides both ways, the creature that comes first in relevant first.
+	 */
+	void collideAcrossRegions(List<Creature> relevant) {
+		int count = relevant.size();
+		Arrays.fill(touchingCount, 0);
+		boolean strays = false;
+		for(int i = 0; i < count; i++) {
+			if(member[i] < 0) { continue; }
+			Creature c = relevant.get(i);
+			int x = Math.round(c.getX());
+			first[i] = regionOf(x);
+			last[i] = regionOf(x + c.getWidth() - 1);
+			strays |= isStray(i);
+			for(int r = first[i]; r <= last[i]; r++) {
+				if(touchingCount[r] == touching[r].length) { touching[r] = Arrays.copyOf(touching[r], touchingCount[r] * 2); }
+				touching[r][touchingCount[r]++] = i;
+			}
+		}
+		if(!strays) { return; }
+		
+		for(int r = 0; r < regionCount; r++) {
+			int[] here = touching[r];
+			for(int m = 0; m < touchingCount[r]; m++) {
+				int a = here[m];
+				if(!isStray(a)) { continue; }
+				for(int k = 0; k < touchingCount[r]; k++) {
+					int b = here[k];
+					if(member[a] == member[b] || (isStray(b) && k < m) || Math.max(first[a], first[b]) != r) { 
+						continue; // same region, done as b's pair, or done in an earlier region
+					}
+					collide(relevant.get(Math.min(a, b)), relevant.get(Math.max(a, b)));
+				}
+			}
+		}
+	}
+	
+	// True if the relevant creature i sticks out of its region.
+	private boolean isStray(int i) {
+		return first[i] != member[i] || last[i] != member[i];
+	}
+	
+	private static void collide(Creature a, Creature b) {
+		if(!(a instanceof Coin)) { a.creatureCollision(b); }
+		if(!(b instanceof Coin)) { b.creatureCollision(a); }
+	}
+	
+	// The region of pixel column x; the map's edge regions reach beyond it.
+	private int regionOf(int x) {
+		int region = GameRenderer.pixelsToTiles(x) / REGION_COLUMNS;
+		return Math.max(0, Math.min(regionCount - 1, region));
+	}
+}
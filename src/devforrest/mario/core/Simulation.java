@@ -0,0 +1,334 @@
+package devforrest.mario.core;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import devforrest.mario.core.event.GameEvents;
+import devforrest.mario.core.profile.FrameProfiler;
+import devforrest.mario.core.profile.FrameProfiler.Counter;
+import devforrest.mario.core.profile.FrameProfiler.Phase;
+import devforrest.mario.core.state.Stateful;
+import devforrest.mario.core.tile.CreatureIndex;
+import devforrest.mario.core.tile.GameTile;
+import devforrest.mario.core.tile.TileMap;
+import devforrest.mario.objects.base.Creature;
+import devforrest.mario.objects.base.CreatureFactory;
+import devforrest.mario.objects.creatures.Coin;
+import devforrest.mario.objects.creatures.Platform;
+import devforrest.mario.objects.mario.Mario;
+
+/**
+ * The Simulation owns the game state of a map and advances it one fixed tick at a time. 
+ * A tick only depends on the state and the Buttons held during it, and all randomness comes
+ * from the map's seeded GameRandom, so the same map, seed and inputs always give the same 
+ * game. Nothing here draws, which lets a Replay be run without a screen.
+ * 
+ * The state of a Simulation can be saved between two ticks and read back later; the ticks 
+ * that follow are then the same as the ones that followed the save.
+ * 
+ * Gameplay code publishes what it spawns and the tiles it hits to the GameEvents of the 
+ * map's World. The Simulation applies them at the end of each update phase, and hands all
+ * the events of a tick to the World's listeners, such as the sound player, at its end.
+ * 
+ * Creatures are updated by regions of the map, which can be run in parallel by a pool of 
+ * workers without changing the game; see RegionUpdate.
+ */
+
+public class Simulation implements Stateful {
+	
+	// Orders creatures like map.creatures(), to which they are added with increasing ids.
+	private static final Comparator<Creature> BY_ID = new Comparator<Creature>() {
+		public int compare(Creature a, Creature b) {
+			return (a.getId() < b.getId()) ? -1 : ((a.getId() == b.getId()) ? 0 : 1);
+		}
+	};
+	
+	private TileMap map;
+	private Mario mario;
+	private Camera camera;
+	private int period;
+	private long tick;
+	// Always relevant creatures off the screen are updated every tick up to FULL_RATE_TILES 
+	// tiles away from the wake up window, every COARSE_TICKS ticks up to FROZEN_TILES tiles 
+	// away, and not at all farther away.
+	private static final int FULL_RATE_TILES = 8;
+	private static final int FROZEN_TILES = 48;
+	private static final int COARSE_TICKS = 4;
+	private FrameProfiler profiler;
+	private GameEvents events;
+	private GameEvents.Listener gameplay;
+	private List<Creature> candidates; // the creatures findRelevantCreatures() looks at
+	private int[] relevantSlots; // the slots of the relevant creatures in the creature store
+	private RegionUpdate regions;
+	
+	/**
+	 * Creates a Simulation of the map, whose player must be set, that advances period
+	 * milliseconds per tick and wakes creatures up as they come on a screen of the given size. 
+	 */
+	public Simulation(TileMap map, int period, int screenWidth, int screenHeight, FrameProfiler profiler) {
+		this.map = map;
+		this.mario = map.getPlayer();
+		this.period = period;
+		this.profiler = profiler;
+		events = map.getWorld().getEvents();
+		gameplay = new GameEvents.Listener() {
+			public void event(int type, int a, int b) {
+				applyEvent(type, a, b);
+			}
+		};
+		candidates = new ArrayList<Creature>();
+		relevantSlots = new int[64];
+		regions = new RegionUpdate(map.getWidth());
+		camera = new Camera(screenWidth, screenHeight);
+		camera.update(map);
+		findRelevantCreatures();
+	}
+	
+	public TileMap getMap() { return map; }
+	
+	public Camera getCamera() { return camera; }
+	
+	public int getPeriod() { return period; }
+	
+	/**
+	 * Updates the regions of the map on the threads of pool from now on, or one after the 
+	 * other on the calling thread if pool is null, as by default. The game is the same 
+	 * either way; see RegionUpdate.
+	 */
+	public void setWorkerPool(ForkJoinPool pool) {
+		regions.setPool(pool);
+	}
+	
+	/**
+	 * @return the number of ticks run so far, which is also the index of the next tick.
+	 */
+	public long getTick() {
+		return tick;
+	}
+	
+	public void writeState(DataOutput out) throws IOException {
+		out.writeLong(tick);
+		camera.writeState(out);
+		map.writeState(out);
+	}
+	
+	public void readState(DataInput in) throws IOException {
+		tick = in.readLong();
+		camera.readState(in);
+		map.readState(in);
+	}
+	
+	/**
+	 * Runs one tick with the given Buttons held.
+	 */
+	public void step(int input) {
+		
+		mario.applyInput(input);
+		
+		List<Creature> relevant = map.relevantCreatures();
+		profiler.count(Counter.RELEVANT_CREATURES, relevant.size());
+		// Move all relevant Creatures in one pass over the store, then run their behaviour: 
+		// the platforms first, as they carry the others, then the others region by region.
+		long t = profiler.start();
+		integrateRelevantCreatures();
+		for(int i = 0; i < relevant.size(); i++) {
+			Creature c = relevant.get(i);
+			if(c.isPlatform()) { c.updateTo(map, period, tick); }
+		}
+		regions.update(map, relevant, period, tick);
+		profiler.end(Phase.CREATURE_UPDATE, t);
+		
+		t = profiler.start();
+		regions.collideAcrossRegions(relevant);
+		for(int i = 0; i < relevant.size(); i++) {
+			mario.playerCollision(map, relevant.get(i));
+		}
+		profiler.end(Phase.COLLISION, t);
+		events.apply(gameplay);
+		
+		t = profiler.start();
+		map.clearLandings(); // clear the colliding sprites on the tiles
+		map.updateActiveTiles(period);
+		profiler.end(Phase.TILE_ANIMATION, t);
+    
+		// Add creatures that need to be created. They are added here to avoid concurrent modifcation errors.
+        for(Creature c : map.creaturesToAdd()) {
+        	map.addCreature(c);
+        }
+        
+        map.creaturesToAdd().clear(); // This line MUST be called BEFORE mario.update(). Why?
+        							  // If it is called after, all the creatures that are created
+        							  // as a result of mario colliding are not added next update because
+        							  // they are cleared immediately afterwards.
+
+		t = profiler.start();
+		mario.update(map, period);
+		profiler.end(Phase.MARIO_UPDATE, t);
+		events.apply(gameplay);
+		events.endTick();
+		map.getWorld().getAnimationClock().advance(period);
+		
+		camera.update(map);
+		tick++;
+		findRelevantCreatures();
+	}
+	
+	/**
+	 * Applies gravity to the relevant creatures and finds how far they move this tick, before
+	 * any of them is updated. Velocity changes made by collisions during a tick therefore move
+	 * a creature from the next tick on, whichever creature is updated first.
+	 * 
+	 * Creatures that skipped ticks are left out: they make up for them in their own update.
+	 */
+	private void integrateRelevantCreatures() {
+		List<Creature> relevant = map.relevantCreatures();
+		if(relevant.size() > relevantSlots.length) { relevantSlots = new int[Math.max(relevant.size(), relevantSlots.length * 2)]; }
+		int count = 0;
+		for(int i = 0; i < relevant.size(); i++) {
+			Creature c = relevant.get(i);
+			long updated = c.getUpdatedTick();
+			if(updated < 0 || updated == tick - 1) { relevantSlots[count++] = c.getSlot(); }
+		}
+		map.creatureStore().integrate(relevantSlots, count, map, period);
+	}
+	
+	/**
+	 * Does what a spawn or tile hit event stands for. Spawned creatures are added to the 
+	 * map before Mario's next update, as if they had been created in place.
+	 */
+	private void applyEvent(int type, int a, int b) {
+		if(type == GameEvents.SPAWN) {
+			Creature c = CreatureFactory.create(GameEvents.spawnType(a), GameEvents.unpackX(b), GameEvents.unpackY(b), map);
+			if((a & GameEvents.SHOT) != 0) { ((Coin) c).shoot(); }
+			map.creaturesToAdd().add(c);
+		} else if(type == GameEvents.TILE_HIT) {
+			GameTile tile = map.getTile(a, b);
+			if(tile != null) { 
+				tile.doAction();
+				map.activate(tile);
+			}
+		}
+	}
+	
+	/**
+	 * Removes dead creatures, wakes up the creatures near the screen and collects the 
+	 * creatures the next tick has to update. Always relevant creatures off the screen are 
+	 * only collected as often as their distance to it asks for, on ticks staggered by their 
+	 * ids so that they don't all come on the same tick.
+	 * 
+	 * Only the creatures that were relevant can have moved or died since the last call, so 
+	 * they are the only ones moved in the creature index. The creatures near the screen are 
+	 * then found in the columns of the index around the camera, and the relevant creatures 
+	 * are kept in the order of map.creatures().
+	 * @modifies map.creatures(), map.creatureStore(), map.creatureIndex(), map.relevantCreatures(), 
+	 * map.platformIndex()
+	 */
+	private void findRelevantCreatures() {
+		CreatureIndex index = map.creatureIndex();
+		List<Creature> relevant = map.relevantCreatures();
+		candidates.clear();
+		for(Creature c : relevant) {
+			index.move(c);
+			candidates.add(c);
+		}
+		relevant.clear();
+		
+		int offsetX = camera.getOffsetX();
+		int offsetY = camera.getOffsetY();
+		int upLeft = map.getWorld().getWakeUpUpLeft();
+		int downRight = map.getWorld().getWakeUpDownRight();
+		int firstColumn = GameRenderer.pixelsToTiles(GameRenderer.tilesToPixels(upLeft) - offsetX);
+		int lastColumn = GameRenderer.pixelsToTiles(GameRenderer.tilesToPixels(downRight + 1) - 1 - offsetX);
+		index.collect(firstColumn, lastColumn, candidates);
+		candidates.addAll(index.alwaysRelevant());
+		Collections.sort(candidates, BY_ID);
+		
+		boolean died = false;
+		Creature previous = null;
+		for(Creature c : candidates) {
+			if(c == previous) { continue; } // found more than once
+			previous = c;
+            int tileX = GameRenderer.pixelsToTiles(Math.round(c.getX()) + offsetX);
+            int tileY = GameRenderer.pixelsToTiles(Math.round(c.getY()) + offsetY); 
+            
+            if(!c.isAlive()) {
+            	index.remove(c);
+            	if(c instanceof Platform) { map.platformIndex().remove((Platform) c); }
+            	died = true;
+            } else {
+                if(upLeft <= tileX && downRight >= tileX && upLeft <= tileY && downRight >= tileY) {
+                    // Wake up the creature the first time the sprite is in view.
+                	if(c.isSleeping()) { c.wakeUp(); }
+	                
+                	c.setIsOnScreen(true);
+	                relevant.add(c);
+	                
+                } else {
+                	if(c.isAlwaysRelevant() && isDue(c, Math.max(gap(upLeft, downRight, tileX), gap(upLeft, downRight, tileY)))) { 
+                		relevant.add(c); 
+                	}
+                	c.setIsOnScreen(false);
+                }
+            }
+		}
+		if(died) {
+			for(Iterator<Creature> i = map.creatures().iterator(); i.hasNext(); ) {
+				if(!i.next().isAlive()) { i.remove(); }
+			}
+			map.creatureStore().removeDead();
+		}
+	}
+	
+	// The number of tiles from the wake up window to tile, on one axis.
+	private static int gap(int upLeft, int downRight, int tile) {
+		return Math.max(0, Math.max(upLeft - tile, tile - downRight));
+	}
+	
+	// Whether an always relevant creature distance tiles off the wake up window is updated on tick.
+	private boolean isDue(Creature c, int distance) {
+		if(distance <= FULL_RATE_TILES) { return true; }
+		return distance <= FROZEN_TILES && (tick + c.getId()) % COARSE_TICKS == 0;
+	}
+	
+	/**
+	 * @return a hash of the positions, speeds and status of Mario and every creature, and of
+	 * the random number generator. Two runs that end with the same checksum are, for all
+	 * practical purposes, in the same state.
+	 */
+	public long checksum() {
+		long hash = 0xCBF29CE484222325L;
+		hash = mix(hash, tick);
+		hash = mix(hash, map.random().getState());
+		hash = mix(hash, Float.floatToIntBits(mario.getX()));
+		hash = mix(hash, Float.floatToIntBits(mario.getY()));
+		hash = mix(hash, Float.floatToIntBits(mario.getdX()));
+		hash = mix(hash, Float.floatToIntBits(mario.getdY()));
+		hash = mix(hash, mario.getHealth());
+		hash = mix(hash, map.creatures().size());
+		for(Creature c : map.creatures()) {
+			hash = mix(hash, c.getClass().getName().hashCode());
+			hash = mix(hash, Float.floatToIntBits(c.getX()));
+			hash = mix(hash, Float.floatToIntBits(c.getY()));
+			hash = mix(hash, Float.floatToIntBits(c.getdX()));
+			hash = mix(hash, Float.floatToIntBits(c.getdY()));
+			hash = mix(hash, (c.isAlive() ? 1 : 0) | (c.isSleeping() ? 2 : 0) | (c.isCollidable() ? 4 : 0));
+		}
+		return hash;
+	}
+	
+	// FNV-1a over the 8 bytes of value
+	private static long mix(long hash, long value) {
+		for(int i = 0; i < 8; i++) {
+			hash ^= (value >>> (i * 8)) & 0xFF;
+			hash *= 0x100000001B3L;
+		}
+		return hash;
+	}
+}
@@ -0,0 +1,139 @@
+package devforrest.mario.core;
+
+import java.awt.image.BufferedImage;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import devforrest.mario.core.animation.Animation;
+import devforrest.mario.core.animation.AnimationClip;
+import devforrest.mario.core.animation.AnimationClock;
+import devforrest.mario.core.event.GameEvents;
+import devforrest.mario.core.state.Stateful;
+import devforrest.mario.objects.creatures.Coin;
+
+/**
+ * A World holds what one game instance shares between its objects: the physics tuning, the
+ * distance at which creatures wake up, the coin images and clips, the AnimationClock that idle
+ * loops play by, the GameEvents its objects publish to, and the names of its thread pools. 
+ * Nothing of it is static, so several worlds can run side by side in one JVM, each on its own 
+ * thread.
+ * 
+ * The tuning values are fixed when the World is created. Only the AnimationClock changes, 
+ * once per tick, and it is part of the saved state of the TileMap that owns the World.
+ */
+
+public class World implements Stateful {
+	
+	public static final float DEFAULT_GRAVITY = .0008f; // pixels/ms^2
+	public static final float DEFAULT_TERMINAL_FALL_DY = .22f; // pixels/ms
+	
+	// Wake up values are based on the number of tiles on the screen and are used to 
+	// determine when mario comes within range of a creature.
+	public static final int DEFAULT_WAKE_UP_UP_LEFT = -3;
+	public static final int DEFAULT_WAKE_UP_DOWN_RIGHT = 24;
+	
+	private final String name;
+	private final float gravity;
+	private final float terminalFallDy;
+	private final int wakeUpUpLeft;
+	private final int wakeUpDownRight;
+	private final BufferedImage[] coinImages;
+	private final AnimationClock animationClock = new AnimationClock();
+	private final Animation coinAnimation;
+	private final AnimationClip coinShootClip;
+	private final GameEvents events = new GameEvents();
+	private final AtomicInteger poolCount = new AtomicInteger();
+	
+	/**
+	 * Creates a World named "world" with the default tuning.
+	 */
+	public World() {
+		this("world");
+	}
+	
+	/**
+	 * Creates a World with the default tuning. The name is given to its thread pools.
+	 */
+	public World(String name) {
+		this(name, DEFAULT_GRAVITY, DEFAULT_TERMINAL_FALL_DY, DEFAULT_WAKE_UP_UP_LEFT, DEFAULT_WAKE_UP_DOWN_RIGHT);
+	}
+	
+	public World(String name, float gravity, float terminalFallDy, int wakeUpUpLeft, int wakeUpDownRight) {
+		this.name = name;
+		this.gravity = gravity;
+		this.terminalFallDy = terminalFallDy;
+		this.wakeUpUpLeft = wakeUpUpLeft;
+		this.wakeUpDownRight = wakeUpDownRight;
+		coinImages = Coin.loadImages();
+		coinAnimation = new Animation(Coin.newTurnClip(coinImages), animationClock, 0);
+		coinShootClip = Coin.newShootClip(coinImages);
+	}
+	
+	public String getName() { return name; }
+	
+	/**
+	 * @return the pull toward the ground, in pixels/ms^2.
+	 */
+	public float getGravity() { return gravity; }
+	
+	/**
+	 * @return the speed above which gravity stops accelerating a fall, in pixels/ms.
+	 */
+	public float getTerminalFallDy() { return terminalFallDy; }
+	
+	/**
+	 * @return the smallest tile distance from the top left corner of the screen at which a
+	 * creature is awake. Usually negative, to wake creatures up just before they come on screen.
+	 */
+	public int getWakeUpUpLeft() { return wakeUpUpLeft; }
+	
+	/**
+	 * @return the largest tile distance from the top left corner of the screen at which a
+	 * creature is awake.
+	 */
+	public int getWakeUpDownRight() { return wakeUpDownRight; }
+	
+	/**
+	 * @return the frames of a turning coin. Don't modify them.
+	 */
+	public BufferedImage[] getCoinImages() { return coinImages; }
+	
+	/**
+	 * @return the clock the idle loops of this world play by. The game advances it once per tick.
+	 */
+	public AnimationClock getAnimationClock() { return animationClock; }
+	
+	/**
+	 * @return the Animation all the coins of this world turn with. It follows the animation 
+	 * clock, so they all turn together.
+	 */
+	public Animation getCoinAnimation() { return coinAnimation; }
+	
+	/**
+	 * @return the clip of a coin of this world shot out of a block.
+	 */
+	public AnimationClip getCoinShootClip() { return coinShootClip; }
+	
+	/**
+	 * @return the queue the objects of this world publish their sounds, spawns and tile hits to.
+	 */
+	public GameEvents getEvents() { return events; }
+	
+	/**
+	 * @return a new name for a thread pool of this world, such as "world-sound-0", so
+	 * the threads of different worlds can be told apart.
+	 */
+	public String newPoolName(String role) {
+		return name + "-" + role + "-" + poolCount.getAndIncrement();
+	}
+	
+	public void writeState(DataOutput out) throws IOException {
+		animationClock.writeState(out);
+	}
+	
+	public void readState(DataInput in) throws IOException {
+		animationClock.readState(in);
+	}
+}
@@ -1,15 +1,27 @@
 package devforrest.mario.core.animation;
 
 import java.awt.Graphics;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+import devforrest.mario.core.state.Stateful;
 
 /**
  * Animatible is an abstract class that a class should extend if it wants to be drawn using
  * an Animation. 
+ * 
+ * Its state is the offsets, which of its animations is current and how far each of them
+ * has played. Subclasses list their animations with setAnimations() so they can be saved.
+ * When the current animation finishes its entire duration, endOfAnimationAction() is called.
  */
 
-abstract public class Animatible {
+abstract public class Animatible implements Stateful {
+	
+	private static final Animation[] NO_ANIMATIONS = {};
 	
 	private Animation currAnim;
+	private Animation[] animations = NO_ANIMATIONS;
 	private int offsetX;
 	private int offsetY;
 
@@ -26,10 +38,62 @@ abstract public class Animatible {
 		this.currAnim = currAnim;
 	}
 	
+	/**
+	 * Sets every Animation this object can show, in a fixed order. A snapshot saves the
+	 * current animation as its index in this list.
+	 */
+	protected void setAnimations(Animation... animations) {
+		this.animations = animations;
+	}
+	
+	/**
+	 * @return the index of anim in the list set by setAnimations(), or -1.
+	 */
+	protected int animationIndex(Animation anim) {
+		for(int i = 0; i < animations.length; i++) {
+			if(animations[i] == anim) { return i; }
+		}
+		return -1;
+	}
+	
+	/**
+	 * @return the Animation at index in the list set by setAnimations(), or null if index is -1.
+	 */
+	protected Animation animationAt(int index) {
+		return (index < 0) ? null : animations[index];
+	}
+	
+	public void writeState(DataOutput out) throws IOException {
+		out.writeShort(offsetX);
+		out.writeShort(offsetY);
+		out.writeByte(animationIndex(currAnim));
+		for(Animation anim : animations) {
+			anim.writeState(out);
+		}
+	}
+	
+	public void readState(DataInput in) throws IOException {
+		offsetX = in.readShort();
+		offsetY = in.readShort();
+		int index = in.readByte();
+		if(index >= 0) { currAnim = animations[index]; } // set directly, without the side effects of setAnimation()
+		for(Animation anim : animations) {
+			anim.readState(in);
+		}
+	}
+	
 	public void update(int time) {
-		currAnim.update(time);
+		if(currAnim.update(time)) {
+			endOfAnimationAction(currAnim);
+		}
 	}
 	
+	/**
+	 * Override this method to add an action when anim, the current animation, finishes its
+	 * entire duration.
+	 */
+	protected void endOfAnimationAction(Animation anim) { }
+	
 	public void setOffsetX(int offsetX) {
 		this.offsetX = offsetX;
 	}
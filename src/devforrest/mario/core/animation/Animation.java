@@ -1,177 +1,118 @@
 package devforrest.mario.core.animation;
 
 import java.awt.image.BufferedImage;
-import java.util.ArrayList;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+import devforrest.mario.core.state.Stateful;
 
 /**
- * An object used to store an animation!
+ * How far an object has played an AnimationClip.
+ * 
+ * The frames are kept by the clip, which objects showing the same animation share; an 
+ * Animation only keeps its time in the clip. To play the animation, we update it by 'adding 
+ * time', and the clip finds the frame of that time. When the total duration of the clip is 
+ * reached, we go back to the start, and update() says so. This way the Animatible playing it 
+ * can perform certain tasks once an animation is finished.
  * 
- * An Animation object consists of many frames, each which occur for a given amount of time.
- * To play the animation, we update the frame by 'adding time'. The time is checked
- * vs the length of each frame. If current time > end time that the frame should
- * occupy, we update to the next frame. When the total duration of the animation is reached,
- * we go back to the first frame. This way we are continually moving through the frames!
- * When an animation is finished, it calls endOfAnimationAction(). This way you can perform
- * certain tasks once an animation is finished. 
- *
+ * An Animation can also follow an AnimationClock instead of keeping its own time. It is 
+ * then never updated, and shows the frame of the clock's time.
  */
 
-public class Animation {
+public class Animation implements Stateful {
 	
 	// fields
-	private ArrayList<AnimFrame> frames;
-	private int currFrameIndex; // index of current frame
-	private long animTime; // current time in animation
-	private long totalDuration; // length of entire animation
-	private long defaultAnimLength;
+	private final AnimationClip clip;
+	private final AnimationClock clock; // the clock this animation follows, or null
+	private final long phase; // how far ahead of its clock this animation is
+	private long animTime; // current time in animation, if it has no clock
 	
 	/**
-	 * Constructs a new Animation object with no frames.
+	 * Constructs a new Animation that plays clip from its start.
 	 */
-	public Animation() {
-		frames = new ArrayList<AnimFrame>();
-		totalDuration = 0;
-		defaultAnimLength = 0;
-		start();
+	public Animation(AnimationClip clip) {
+		this(clip, null, 0);
 	}
 	
 	/**
-	 * Constructs a new Animation object with no frames and with the
-	 * specified default animation length;
+	 * Constructs a new Animation that plays clip phase milliseconds ahead of clock.
 	 */
-	public Animation(long defaultAnimLength) {
-		frames = new ArrayList<AnimFrame>();
-		totalDuration = 0;
-		this.defaultAnimLength = defaultAnimLength;
+	public Animation(AnimationClip clip, AnimationClock clock, long phase) {
+		this.clip = clip;
+		this.clock = clock;
+		this.phase = phase;
 		start();
 	}
 	
+	public AnimationClip getClip() {
+		return clip;
+	}
+	
 	/**
-	 * Sets the default animation length (DAL);
-	 * @return this Animation with the default animation length changed.
+	 * Starts this animation.
 	 */
-	public Animation setDAL(long defaultAnimLength) {
-		this.defaultAnimLength = defaultAnimLength;
-		return this;
+	public void start() {
+		animTime = 0;
 	}
 	
 	/**
-	 * Add a frame to the animation with the default animation length milliseconds.
-	 * @modifies defaultAnimLength == duration.
-	 * @returns this Animation with the added frame.
+	 * @return the current time in the clip, in milliseconds.
 	 */
-	public Animation addFrame(BufferedImage image) {
-		totalDuration += defaultAnimLength;
-		frames.add(new AnimFrame(image, totalDuration));
-		return this;
+	public long getTime() {
+		if(clock == null) { return animTime; }
+		int duration = clip.getDuration();
+		return (duration == 0) ? 0 : (clock.getTime() + phase) % duration;
 	}
 	
 	/**
-	 * Add a frame to the animation with a given duration in milliseconds.
-	 * @modifies defaultAnimLength == duration.
-	 * @returns this Animation with the added frame.
+	 * @return the height of the current animation in pixels.
 	 */
-	public Animation addFrame(BufferedImage image, long duration) {
-		totalDuration += duration;
-		frames.add(new AnimFrame(image, totalDuration));
-		defaultAnimLength = duration;
-		return this;
+	public int getHeight() {
+		return getImage().getHeight(null);
 	}
 	
 	/**
-	 * Starts this animation.
+	 * @return the width of the current animation in pixels.
 	 */
-	public void start() {
-		animTime = 0;
-		currFrameIndex = 0;
+	public int getWidth() {
+		return getImage().getWidth(null);
 	}
 	
 	/**
-	 * @return the height of the current animation in pixels.
+	 * Updates the animation by a given amount of time. An animation that follows a clock
+	 * isn't changed.
+	 * @return true if the animation reached the end of its clip and started again.
 	 */
-	public int getHeight() {
-		return getFrame(currFrameIndex).image.getHeight(null);
+	public boolean update(long elapsedTime) {
+		if(clock != null || clip.getFrameCount() < 2) { // must have at least 2 frames to animate
+			return false;
+		}
+		animTime += elapsedTime; // animation time increase here
+		int duration = clip.getDuration();
+		if(animTime >= duration) { // reset animation
+			animTime = (duration == 0) ? 0 : animTime % duration;
+			return true;
+		}
+		return false;
 	}
 	
 	/**
-	 * @return the width of the current animation in pixels.
+	 * Writes how far this animation has played. The clip is constant and isn't written, and
+	 * neither is anything of an animation that follows a clock.
 	 */
-	public int getWidth() {
-		return getFrame(currFrameIndex).image.getWidth(null);
+	public void writeState(DataOutput out) throws IOException {
+		if(clock == null) { out.writeInt((int) animTime); }
+	}
+	
+	public void readState(DataInput in) throws IOException {
+		if(clock == null) { animTime = in.readInt(); }
 	}
 	
 	/**
-	 * Updates the animation by a give amount of time.
-	 * The frames are updated accordingly to the internal timer of this animation.
+	 * @return the Image of the current frame of this animation.
 	 */
-    public void update(long elapsedTime) {
-    	
-        if (frames.size() > 1) { // must have at least 2 frames to animate
-            animTime += elapsedTime; // animation time increase here
-
-            if (animTime >= totalDuration) { //reset animation
-            	animTime = 0; 
-                currFrameIndex = 0; // back to first frame
-                endOfAnimationAction();
-                
-            }
-
-            if(animTime > getFrame(currFrameIndex).endTime) {
-                currFrameIndex++;
-            }
-        }
-    }
-    
-    /**
-     * Override this method to add an action when animation finishes its entire duration.
-     */
-    public void endOfAnimationAction() { }
-
-    /**
-     * @return an array of the images in this animation.
-     * note: this method is never called.
-     */
-    private BufferedImage[] getImages() {
-    	if(frames.size() == 0) {
-    		return null;
-    	} else {
-    		return (BufferedImage[]) frames.toArray();
-    	}
-    }
-    
-    /**
-     * @return the Image of the current frame of this animation.
-     */
-    public BufferedImage getImage() {
-        if (frames.size() == 0) {
-            return null;
-        }
-        else {
-            return getFrame(currFrameIndex).image;
-        }
-    }
-
-    /**
-     * @return the AnimFrame of the given frame.
-     * This is used in update to get the end time of the current frame.
-     */
-    private AnimFrame getFrame(int i) {
-        return frames.get(i);
-    }
-
-    /**
-     * An inner class used to help manage timing of each frame in the animation.
-     */
-    private class AnimFrame {
-
-        BufferedImage image;
-        long endTime; // the totalDuration up to the end of this frame
-        			  // is the endTime for this frame
- 
-        public AnimFrame(BufferedImage image, long endTime) {
-            this.image = image;
-            this.endTime = endTime;
-        }
-    }
-
+	public BufferedImage getImage() {
+		return clip.imageAt(getTime());
+	}
 }
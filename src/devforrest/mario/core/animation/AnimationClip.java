@@ -0,0 +1,133 @@
+package devforrest.mario.core.animation;
+
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The frames of an animation and how long each of them is shown. 
+ * 
+ * An AnimationClip never changes once it is built, so every object that shows the same 
+ * animation can share one; how far each of them has played is kept by an Animation. The 
+ * frame shown at a given time is found by a binary search over the end times of the frames, 
+ * so a long update lands on the right frame instead of the next one.
+ */
+
+public final class AnimationClip {
+	
+	private final BufferedImage[] images;
+	private final int[] endTimes; // the time up to the end of each frame, increasing
+	
+	/**
+	 * Constructs a clip of the given images, each shown for frameLength milliseconds.
+	 */
+	public AnimationClip(int frameLength, BufferedImage... images) {
+		this.images = images.clone();
+		endTimes = new int[images.length];
+		for(int i = 0; i < images.length; i++) {
+			endTimes[i] = (i + 1) * frameLength;
+		}
+	}
+	
+	private AnimationClip(BufferedImage[] images, int[] endTimes) {
+		this.images = images;
+		this.endTimes = endTimes;
+	}
+	
+	/**
+	 * @return the length of the whole clip in milliseconds.
+	 */
+	public int getDuration() {
+		return (endTimes.length == 0) ? 0 : endTimes[endTimes.length - 1];
+	}
+	
+	public int getFrameCount() {
+		return images.length;
+	}
+	
+	/**
+	 * @return the index of the frame shown time milliseconds into the clip, for a time 
+	 * between 0 and the duration. The last frame is shown from the duration on.
+	 */
+	public int frameAt(long time) {
+		int low = 0;
+		int high = endTimes.length - 1;
+		while(low < high) {
+			int middle = (low + high) >>> 1;
+			if(endTimes[middle] > time) {
+				high = middle;
+			} else {
+				low = middle + 1;
+			}
+		}
+		return low;
+	}
+	
+	/**
+	 * @return the image of the given frame.
+	 */
+	public BufferedImage getImage(int frame) {
+		return images[frame];
+	}
+	
+	/**
+	 * @return the image shown time milliseconds into the clip, or null if it has no frames.
+	 */
+	public BufferedImage imageAt(long time) {
+		return (images.length == 0) ? null : images[frameAt(time)];
+	}
+	
+	/**
+	 * Builds an AnimationClip whose frames don't all last as long.
+	 */
+	public static final class Builder {
+		
+		private List<BufferedImage> images = new ArrayList<BufferedImage>();
+		private int[] endTimes = new int[4];
+		private int totalDuration;
+		private int defaultAnimLength;
+		
+		/**
+		 * Constructs a Builder whose frames last defaultAnimLength milliseconds by default.
+		 */
+		public Builder(int defaultAnimLength) {
+			this.defaultAnimLength = defaultAnimLength;
+		}
+		
+		/**
+		 * Sets the default animation length (DAL);
+		 * @return this Builder with the default animation length changed.
+		 */
+		public Builder setDAL(int defaultAnimLength) {
+			this.defaultAnimLength = defaultAnimLength;
+			return this;
+		}
+		
+		/**
+		 * Adds a frame with the default animation length milliseconds.
+		 * @return this Builder with the added frame.
+		 */
+		public Builder addFrame(BufferedImage image) {
+			return addFrame(image, defaultAnimLength);
+		}
+		
+		/**
+		 * Adds a frame with a given duration in milliseconds.
+		 * @modifies defaultAnimLength == duration.
+		 * @return this Builder with the added frame.
+		 */
+		public Builder addFrame(BufferedImage image, int duration) {
+			if(images.size() == endTimes.length) { endTimes = Arrays.copyOf(endTimes, endTimes.length * 2); }
+			totalDuration += duration;
+			endTimes[images.size()] = totalDuration;
+			images.add(image);
+			defaultAnimLength = duration;
+			return this;
+		}
+		
+		public AnimationClip build() {
+			return new AnimationClip(images.toArray(new BufferedImage[images.size()]), Arrays.copyOf(endTimes, images.size()));
+		}
+	}
+}
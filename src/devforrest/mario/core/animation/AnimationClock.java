@@ -0,0 +1,39 @@
+package devforrest.mario.core.animation;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+import devforrest.mario.core.state.Stateful;
+
+/**
+ * The time that the looping animations of a World play by, in milliseconds.
+ * 
+ * An Animation that follows a clock has no time of its own and is never updated: the 
+ * clock is advanced once per tick, and every such Animation shows the frame of the clock's 
+ * time. Idle loops, like the turning coins and the question blocks, cost nothing per tick.
+ */
+
+public class AnimationClock implements Stateful {
+	
+	private long time;
+	
+	public long getTime() {
+		return time;
+	}
+	
+	/**
+	 * @modifies the time of this clock, which goes elapsedTime milliseconds forward.
+	 */
+	public void advance(int elapsedTime) {
+		time += elapsedTime;
+	}
+	
+	public void writeState(DataOutput out) throws IOException {
+		out.writeLong(time);
+	}
+	
+	public void readState(DataInput in) throws IOException {
+		time = in.readLong();
+	}
+}
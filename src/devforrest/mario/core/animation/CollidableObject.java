@@ -1,24 +1,46 @@
 package devforrest.mario.core.animation;
 
-import devforrest.mario.core.sound.specific.MarioSoundManager22050Hz;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+import devforrest.mario.core.event.GameEvents;
 
 
 
 public class CollidableObject extends Sprite {
 	
-	protected MarioSoundManager22050Hz soundManager;
+	protected GameEvents events; // The events of the map this object is in, set when it is added.
 	private boolean isCollidable;
 	private boolean isOnScreen;
 	
-	public CollidableObject(int pixelX, int pixelY, MarioSoundManager22050Hz soundManager) {
+	public CollidableObject(int pixelX, int pixelY) {
 		super(pixelX, pixelY);
 		this.isCollidable = true;
 		setIsOnScreen(false);
-		this.soundManager = soundManager;
 	}
 	
-	public CollidableObject(int pixelX, int pixelY) {
-		this(pixelX, pixelY, null);
+	public GameEvents getEvents() {
+		return events;
+	}
+	
+	/**
+	 * @modifies the GameEvents this object publishes what happens to it to. Only a TileMap should set it.
+	 */
+	public void setEvents(GameEvents events) {
+		this.events = events;
+	}
+	
+	public void writeState(DataOutput out) throws IOException {
+		super.writeState(out);
+		out.writeByte((isCollidable ? 1 : 0) | (isOnScreen ? 2 : 0));
+	}
+	
+	public void readState(DataInput in) throws IOException {
+		super.readState(in);
+		int flags = in.readByte();
+		isCollidable = (flags & 1) != 0;
+		isOnScreen = (flags & 2) != 0;
 	}
 	
 	public boolean isCollidable() {
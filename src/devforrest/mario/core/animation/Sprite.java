@@ -2,6 +2,9 @@ package devforrest.mario.core.animation;
 
 import java.awt.Graphics;
 import java.awt.event.KeyEvent;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 
 public class Sprite extends Animatible {
 	
@@ -69,6 +72,22 @@ public class Sprite extends Animatible {
     	return currentAnimation().getWidth();
     }
     
+    public void writeState(DataOutput out) throws IOException {
+    	super.writeState(out);
+    	out.writeFloat(getX());
+    	out.writeFloat(getY());
+    	out.writeFloat(getdX());
+    	out.writeFloat(getdY());
+    }
+    
+    public void readState(DataInput in) throws IOException {
+    	super.readState(in);
+    	setX(in.readFloat());
+    	setY(in.readFloat());
+    	setdX(in.readFloat());
+    	setdY(in.readFloat());
+    }
+    
     public void keyReleased(KeyEvent e) {}
     public void keyPressed(KeyEvent e) {} 
     public void keyTyped(KeyEvent e) {} 
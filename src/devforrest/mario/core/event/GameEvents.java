@@ -0,0 +1,247 @@
+package devforrest.mario.core.event;
+
+/**
+ * GameEvents is the queue through which gameplay code reports what happened during a tick:
+ * a sound to play, a creature to spawn, a tile that was hit. Collision code only publishes
+ * events, and the work they stand for is done after the update phase that published them.
+ * 
+ * An event is three ints, a type and two arguments, kept in a ring of int arrays that only
+ * grows when a tick publishes more events than ever before, so publishing allocates nothing.
+ * Sounds are deduplicated: the same sound published twice in one tick is queued once.
+ * 
+ * Events are handled in two steps. The Simulation applies the events that change the game
+ * (spawns and tile hits) with apply() at the end of each of its update phases, so that their 
+ * effects land where they always did. At the end of the tick, endTick() hands every event of 
+ * the tick to the listeners, such as the sound player, and empties the queue. A headless
+ * game simply has no listeners. 
+ * 
+ * A GameEvents belongs to one World and is used by its game thread only. Creatures updated
+ * on other threads publish to GameEvents of their own, which are drained into it afterwards.
+ */
+
+public class GameEvents {
+	
+	/**
+	 * Receives the events of a tick. The arguments of each type are described by its constant.
+	 */
+	public interface Listener {
+		void event(int type, int a, int b);
+	}
+	
+	// Event types.
+	public static final int SOUND = 1; // a: the sound, one of the sound constants below
+	public static final int SPAWN = 2; // a: a CreatureFactory type code, ORed with SHOT; b: the position, see pack()
+	public static final int TILE_HIT = 3; // a, b: the tile that was hit from below or from the side
+	
+	// Sounds.
+	public static final int BUMP = 0;
+	public static final int KICK = 1;
+	public static final int COIN = 2;
+	public static final int JUMP = 3;
+	public static final int ITEM_SPROUT = 4;
+	public static final int BONUS_POINTS = 5;
+	public static final int HEALTH_UP = 6;
+	public static final int HEALTH_DOWN = 7;
+	public static final int HURT = 8;
+	public static final int CELEBRATE = 9;
+	
+	// Flag of a SPAWN event: the creature is shot out of a block.
+	public static final int SHOT = 0x100;
+	
+	private static final int TYPE_MASK = 0xFF;
+	private static final int INITIAL_CAPACITY = 64;
+	
+	private int[] types;
+	private int[] as;
+	private int[] bs;
+	private int mask;
+	private int head; // first event of the tick
+	private int applied; // first event apply() hasn't handed out yet
+	private int tail; // where the next event goes
+	private Listener[] listeners;
+	private long published;
+	private long dropped;
+	
+	public GameEvents() {
+		types = new int[INITIAL_CAPACITY];
+		as = new int[INITIAL_CAPACITY];
+		bs = new int[INITIAL_CAPACITY];
+		mask = INITIAL_CAPACITY - 1;
+		listeners = new Listener[0];
+	}
+	
+	/**
+	 * Queues a sound, unless it was already queued this tick.
+	 */
+	public void sound(int sound) {
+		for(int i = head; i != tail; i++) {
+			int j = i & mask;
+			if(types[j] == SOUND && as[j] == sound) {
+				dropped++;
+				return;
+			}
+		}
+		publish(SOUND, sound, 0);
+	}
+	
+	/**
+	 * Queues the spawn of a creature of the given CreatureFactory type at (pixelX, pixelY).
+	 * @param flags 0, or SHOT.
+	 */
+	public void spawn(int type, int flags, int pixelX, int pixelY) {
+		publish(SPAWN, type | flags, pack(pixelX, pixelY));
+	}
+	
+	/**
+	 * Queues the action of the tile at (tileX, tileY), which was hit.
+	 */
+	public void tileHit(int tileX, int tileY) {
+		publish(TILE_HIT, tileX, tileY);
+	}
+	
+	/**
+	 * Queues an event. Events are never dropped: the queue grows instead.
+	 */
+	public void publish(int type, int a, int b) {
+		if(tail - head == types.length) { grow(); }
+		int j = tail & mask;
+		types[j] = type;
+		as[j] = a;
+		bs[j] = b;
+		tail++;
+		published++;
+	}
+	
+	/**
+	 * Hands the events published since the last call to the handler, in order, including 
+	 * the ones the handler publishes itself. They stay queued for the listeners.
+	 */
+	public void apply(Listener handler) {
+		while(applied != tail) {
+			int j = applied & mask;
+			applied++;
+			handler.event(types[j], as[j], bs[j]);
+		}
+	}
+	
+	/**
+	 * Hands every event of the tick to each listener and empties the queue.
+	 */
+	public void endTick() {
+		for(Listener l : listeners) {
+			for(int i = head; i != tail; i++) {
+				int j = i & mask;
+				l.event(types[j], as[j], bs[j]);
+			}
+		}
+		head = applied = tail;
+	}
+	
+	/**
+	 * Publishes the events queued here to target, in order, and empties this queue. Sounds
+	 * are queued with sound(), so they stay deduplicated in target. This lets a group of 
+	 * creatures that is updated on another thread publish to a GameEvents of its own.
+	 */
+	public void drainTo(GameEvents target) {
+		for(int i = head; i != tail; i++) {
+			int j = i & mask;
+			if(types[j] == SOUND) {
+				target.sound(as[j]);
+			} else {
+				target.publish(types[j], as[j], bs[j]);
+			}
+		}
+		head = applied = tail;
+	}
+	
+	/**
+	 * Drops the queued events without handing them to anyone, as when a state is restored.
+	 */
+	public void clear() {
+		head = applied = tail;
+	}
+	
+	public void addListener(Listener listener) {
+		Listener[] l = new Listener[listeners.length + 1];
+		System.arraycopy(listeners, 0, l, 0, listeners.length);
+		l[listeners.length] = listener;
+		listeners = l;
+	}
+	
+	public void removeListener(Listener listener) {
+		for(int i = 0; i < listeners.length; i++) {
+			if(listeners[i] == listener) {
+				Listener[] l = new Listener[listeners.length - 1];
+				System.arraycopy(listeners, 0, l, 0, i);
+				System.arraycopy(listeners, i + 1, l, i, l.length - i);
+				listeners = l;
+				return;
+			}
+		}
+	}
+	
+	/**
+	 * @return the number of events queued this tick.
+	 */
+	public int size() {
+		return tail - head;
+	}
+	
+	/**
+	 * @return the number of events published so far.
+	 */
+	public long getPublishedCount() {
+		return published;
+	}
+	
+	/**
+	 * @return the number of sounds that were not queued because they already were.
+	 */
+	public long getDroppedCount() {
+		return dropped;
+	}
+	
+	/**
+	 * @return the pixel position x, y packed in an int, x in the high 16 bits. Both must fit
+	 * in a signed short.
+	 */
+	public static int pack(int x, int y) {
+		return (x << 16) | (y & 0xFFFF);
+	}
+	
+	public static int unpackX(int position) {
+		return position >> 16;
+	}
+	
+	public static int unpackY(int position) {
+		return (short) position;
+	}
+	
+	/**
+	 * @return the CreatureFactory type code of the a argument of a SPAWN event.
+	 */
+	public static int spawnType(int a) {
+		return a & TYPE_MASK;
+	}
+	
+	// doubles the ring, moving the queued events to its start
+	private void grow() {
+		int size = tail - head;
+		int[] t = new int[types.length * 2];
+		int[] a = new int[t.length];
+		int[] b = new int[t.length];
+		for(int i = 0; i < size; i++) {
+			int j = (head + i) & mask;
+			t[i] = types[j];
+			a[i] = as[j];
+			b[i] = bs[j];
+		}
+		applied -= head;
+		head = 0;
+		tail = size;
+		types = t;
+		as = a;
+		bs = b;
+		mask = t.length - 1;
+	}
+} // GameEvents
@@ -0,0 +1,31 @@
+package devforrest.mario.core.hud;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+
+import devforrest.mario.core.tile.TileMap;
+
+/**
+ * Shows Mario's health as three boxes, one filled for each life he has left.
+ */
+
+public class HealthBar implements HudElement {
+	
+	private static final int BOXES = 3;
+	private static final int BOX_WIDTH = 35;
+	
+	public int value(TileMap map) {
+		return map.getPlayer().getHealth();
+	}
+	
+	public void draw(Graphics2D g, int x, int health) {
+		g.setColor(Color.BLACK);
+		for(int i = 0; i < BOXES; i++) {
+			g.draw3DRect(x + i*BOX_WIDTH, 4, BOX_WIDTH, 13, true);
+		}
+		g.setColor(Color.RED);
+		for(int i = 0; i < health; i++) {
+			g.fill3DRect(x + i*BOX_WIDTH, 4, BOX_WIDTH, 13, true);
+		}
+	}
+}
@@ -0,0 +1,101 @@
+package devforrest.mario.core.hud;
+
+import java.awt.AlphaComposite;
+import java.awt.Color;
+import java.awt.Composite;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.List;
+
+import devforrest.mario.core.tile.TileMap;
+
+/**
+ * The Hud is the bar at the top of the screen. It is kept in a translucent image that is only
+ * drawn again when the value of one of its elements changes; the rest of the time, showing
+ * the HUD costs one value() call per element and one drawImage().
+ * 
+ * Elements are added with the x position of their left edge, and drawn in the order they 
+ * were added. By default the HUD shows Mario's health and speed.
+ */
+
+public class Hud {
+	
+	public static final int HEIGHT = 22;
+	private static final Color BAR = new Color(50, 50, 50, 50);
+	
+	private List<HudElement> elements;
+	private int[] positions;
+	private int[] values;
+	private BufferedImage image;
+	private boolean changed;
+	
+	/**
+	 * Creates the HUD with a HealthBar and a SpeedReadout.
+	 */
+	public Hud() {
+		elements = new ArrayList<HudElement>();
+		positions = new int[0];
+		values = new int[0];
+		add(new HealthBar(), 4);
+		add(new SpeedReadout(), 300);
+	}
+	
+	/**
+	 * Adds element, with its left edge at x.
+	 */
+	public void add(HudElement element, int x) {
+		elements.add(element);
+		int n = elements.size();
+		int[] p = new int[n];
+		int[] v = new int[n];
+		System.arraycopy(positions, 0, p, 0, n - 1);
+		System.arraycopy(values, 0, v, 0, n - 1);
+		p[n - 1] = x;
+		positions = p;
+		values = v;
+		changed = true;
+	}
+	
+	/**
+	 * Reads the values of the elements for map and draws the HUD image again if one of them 
+	 * has changed, or if the screen width has.
+	 * @return true if the HUD looks different than after the last update.
+	 */
+	public boolean update(TileMap map, int screenWidth) {
+		for(int i = 0; i < values.length; i++) {
+			int value = elements.get(i).value(map);
+			if(value != values[i]) {
+				values[i] = value;
+				changed = true;
+			}
+		}
+		if(image == null || image.getWidth() != screenWidth) {
+			image = new BufferedImage(screenWidth, HEIGHT, BufferedImage.TYPE_INT_ARGB);
+			changed = true;
+		}
+		if(!changed) { return false; }
+		
+		Graphics2D g = image.createGraphics();
+		Composite composite = g.getComposite();
+		g.setComposite(AlphaComposite.Clear);
+		g.fillRect(0, 0, image.getWidth(), HEIGHT);
+		g.setComposite(composite);
+		g.setColor(BAR);
+		g.draw3DRect(2, 2, screenWidth - 10, 18, true);
+		g.fill3DRect(2, 2, screenWidth - 10, 18, true);
+		for(int i = 0; i < values.length; i++) {
+			elements.get(i).draw(g, positions[i], values[i]);
+		}
+		g.dispose();
+		changed = false;
+		return true;
+	}
+	
+	/**
+	 * Draws the HUD image, as of the last update, at the top of the screen.
+	 */
+	public void draw(Graphics2D g) {
+		if(image != null) { g.drawImage(image, 0, 0, null); }
+	}
+}
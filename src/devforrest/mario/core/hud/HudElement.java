@@ -0,0 +1,24 @@
+package devforrest.mario.core.hud;
+
+import java.awt.Graphics2D;
+
+import devforrest.mario.core.tile.TileMap;
+
+/**
+ * A HudElement is one thing the HUD shows, such as Mario's health. The Hud asks each element
+ * for its value every frame, which must be cheap, and only draws the elements again when one
+ * of the values has changed.
+ */
+
+public interface HudElement {
+	
+	/**
+	 * @return the value shown for map. Two calls that return the same value must draw the same.
+	 */
+	int value(TileMap map);
+	
+	/**
+	 * Draws the element showing value, with its left edge at x, on the HUD image.
+	 */
+	void draw(Graphics2D g, int x, int value);
+}
@@ -0,0 +1,25 @@
+package devforrest.mario.core.hud;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+
+import devforrest.mario.core.tile.TileMap;
+
+/**
+ * Shows Mario's horizontal speed, in pixels/ms with two decimals.
+ */
+
+public class SpeedReadout implements HudElement {
+	
+	public int value(TileMap map) {
+		return Math.round(map.getPlayer().getdX() * 100);
+	}
+	
+	public void draw(Graphics2D g, int x, int hundredths) {
+		int abs = Math.abs(hundredths);
+		int fraction = abs % 100;
+		String dx = "dx: " + (hundredths < 0 ? "-" : "") + (abs / 100) + "." + (fraction < 10 ? "0" : "") + fraction;
+		g.setColor(Color.WHITE);
+		g.drawString(dx, x, 15);
+	}
+}
@@ -0,0 +1,36 @@
+package devforrest.mario.core.input;
+
+import java.awt.event.KeyEvent;
+
+/**
+ * The game's buttons. The state of every button during one tick is an int bitmask
+ * of these constants, which is what the game reads and what replays store.
+ */
+
+public final class Buttons {
+	
+	public static final int LEFT = 1;
+	public static final int RIGHT = 1 << 1;
+	public static final int DOWN = 1 << 2;
+	public static final int RUN = 1 << 3;
+	public static final int JUMP = 1 << 4;
+	
+	/** Every button, in the order they are applied within a tick. */
+	public static final int[] ALL = { LEFT, RIGHT, DOWN, RUN, JUMP };
+	
+	private Buttons() { }
+	
+	/**
+	 * @return the button for the given key code, or 0 if the key isn't a game button.
+	 */
+	public static int fromKeyCode(int keyCode) {
+		switch(keyCode) {
+		case KeyEvent.VK_LEFT: return LEFT;
+		case KeyEvent.VK_RIGHT: return RIGHT;
+		case KeyEvent.VK_DOWN: return DOWN;
+		case KeyEvent.VK_SHIFT: return RUN;
+		case KeyEvent.VK_SPACE: return JUMP;
+		default: return 0;
+		}
+	}
+}
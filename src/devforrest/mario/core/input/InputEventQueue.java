@@ -0,0 +1,84 @@
+package devforrest.mario.core.input;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A lock-free ring buffer of timestamped input events, for exactly one producer thread
+ * (the AWT event dispatch thread) and one consumer thread (the game thread). 
+ * 
+ * Each side owns one index: the producer writes a slot and then publishes it by moving
+ * tail, the consumer reads slots up to tail and then frees them by moving head. The 
+ * ordered writes of the AtomicLongs make the slot contents visible to the other thread
+ * before the index that covers them.
+ */
+
+public class InputEventQueue {
+	
+	/** Receives the events drained from the queue. */
+	public interface Handler {
+		public void event(long time, int event);
+	}
+	
+	private final long[] times;
+	private final int[] events;
+	private final int mask;
+	private final AtomicLong head = new AtomicLong(); // next slot to read, only moved by the consumer
+	private final AtomicLong tail = new AtomicLong(); // next slot to write, only moved by the producer
+	private long cachedHead; // the producer's last view of head, saves reading it on every offer
+	
+	/**
+	 * Creates an empty queue of the given capacity, which is rounded up to a power of 2.
+	 */
+	public InputEventQueue(int capacity) {
+		int size = Integer.highestOneBit(Math.max(2, capacity) - 1) << 1;
+		times = new long[size];
+		events = new int[size];
+		mask = size - 1;
+	}
+	
+	public int getCapacity() {
+		return times.length;
+	}
+	
+	/**
+	 * @return the number of events waiting. Only exact on the consumer thread.
+	 */
+	public int size() {
+		return (int) (tail.get() - head.get());
+	}
+	
+	/**
+	 * Adds an event. Must only be called by the producer thread.
+	 * @return false if the queue is full and the event was dropped.
+	 */
+	public boolean offer(long time, int event) {
+		long t = tail.get();
+		if(t - cachedHead >= times.length) {
+			cachedHead = head.get();
+			if(t - cachedHead >= times.length) {
+				return false;
+			}
+		}
+		int slot = (int) (t & mask);
+		times[slot] = time;
+		events[slot] = event;
+		tail.lazySet(t + 1); // publish the slot
+		return true;
+	}
+	
+	/**
+	 * Passes every waiting event to the handler, oldest first, and removes them. Must only
+	 * be called by the consumer thread.
+	 * @return the number of events drained.
+	 */
+	public int drain(Handler handler) {
+		long h = head.get();
+		long t = tail.get();
+		for(long i = h; i < t; i++) {
+			int slot = (int) (i & mask);
+			handler.event(times[slot], events[slot]);
+		}
+		head.lazySet(t); // free the slots
+		return (int) (t - h);
+	}
+}
@@ -0,0 +1,27 @@
+package devforrest.mario.core.input;
+
+/**
+ * An InputRecorder passes the samples of another InputSource through unchanged and
+ * records each of them in a Replay.
+ */
+
+public class InputRecorder implements InputSource {
+	
+	private final InputSource source;
+	private final Replay replay;
+	
+	public InputRecorder(InputSource source, Replay replay) {
+		this.source = source;
+		this.replay = replay;
+	}
+	
+	public Replay getReplay() {
+		return replay;
+	}
+	
+	public int sample(long tick) {
+		int mask = source.sample(tick);
+		replay.record(tick, mask);
+		return mask;
+	}
+}
@@ -0,0 +1,14 @@
+package devforrest.mario.core.input;
+
+/**
+ * An InputSource gives the game the buttons held during each tick. It is sampled
+ * exactly once per tick, on the game thread.
+ */
+
+public interface InputSource {
+	
+	/**
+	 * @return the bitmask of Buttons held during the given tick.
+	 */
+	public int sample(long tick);
+}
@@ -0,0 +1,88 @@
+package devforrest.mario.core.input;
+
+import java.awt.event.KeyAdapter;
+import java.awt.event.KeyEvent;
+
+/**
+ * KeyboardInput turns AWT key events into the bitmask of held Buttons. Events are pushed
+ * with their time through an InputEventQueue by the event dispatch thread and applied by
+ * the game thread when it samples the buttons, once per tick, so the game state is never
+ * touched from the AWT thread.
+ * 
+ * A button pressed and released between two samples is still reported as held by the
+ * next sample, so short taps of the jump key aren't lost. The keyboard's auto repeat is
+ * ignored, the game repeats held directions itself.
+ * 
+ * The time from each event to the frame that shows it is kept for the FrameProfiler: call
+ * sampledEvents() and sampledLatencyNanos() once the frame of the last sample is on the screen.
+ */
+
+public class KeyboardInput extends KeyAdapter implements InputSource {
+	
+	// More events than anyone can type between two ticks. It can only fill up while the game
+	// is paused; dropped events are made up by the button mask every later event carries.
+	private static final int QUEUE_CAPACITY = 1024;
+	private static final int PRESSED_SHIFT = 8;
+	private static final int MASK_BITS = (1 << PRESSED_SHIFT) - 1;
+	
+	private final InputEventQueue queue = new InputEventQueue(QUEUE_CAPACITY);
+	
+	// owned by the event dispatch thread
+	private int keysHeld; // the buttons held after the last key event
+	
+	// owned by the game thread
+	private int held; // the buttons held after the last applied event
+	private int tapped; // buttons pressed by the events applied in this sample
+	private int sampledEvents;
+	private long sampledTimeSum; // the sum of the times of those events
+	private final InputEventQueue.Handler applier = new InputEventQueue.Handler() {
+		public void event(long time, int event) {
+			held = event & MASK_BITS;
+			tapped |= event >>> PRESSED_SHIFT;
+			sampledEvents++;
+			sampledTimeSum += time;
+		}
+	};
+	
+	public void keyPressed(KeyEvent e) {
+		int button = Buttons.fromKeyCode(e.getKeyCode());
+		if(button != 0 && (keysHeld & button) == 0) {
+			keysHeld |= button;
+			queue.offer(System.nanoTime(), keysHeld | (button << PRESSED_SHIFT));
+		}
+	}
+	
+	public void keyReleased(KeyEvent e) {
+		int button = Buttons.fromKeyCode(e.getKeyCode());
+		if(button != 0 && (keysHeld & button) != 0) {
+			keysHeld &= ~button;
+			queue.offer(System.nanoTime(), keysHeld);
+		}
+	}
+	
+	/**
+	 * Applies the key events that arrived since the last sample. Must be called on the game thread.
+	 */
+	public int sample(long tick) {
+		tapped = 0;
+		sampledEvents = 0;
+		sampledTimeSum = 0;
+		queue.drain(applier);
+		return held | tapped;
+	}
+	
+	/**
+	 * @return the number of key events applied by the last sample.
+	 */
+	public int sampledEvents() {
+		return sampledEvents;
+	}
+	
+	/**
+	 * @return the sum of the times, in nanoseconds, from each key event applied by the last 
+	 * sample to now.
+	 */
+	public long sampledLatencyNanos(long now) {
+		return sampledEvents * now - sampledTimeSum;
+	}
+}
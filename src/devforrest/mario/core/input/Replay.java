@@ -0,0 +1,231 @@
+package devforrest.mario.core.input;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+
+/**
+ * A Replay is a recorded game: everything needed to set the game up again (the random
+ * seed, the tick period, the map and the screen size) followed by the Buttons held
+ * during every tick. Only the ticks where the held buttons changed are stored, so a
+ * minute of play is usually a few hundred bytes.
+ * 
+ * File format, big-endian:
+ * 
+ *   int    magic 'MRPL'
+ *   byte   version
+ *   long   seed
+ *   int    period (ms)
+ *   UTF    map filename
+ *   short  screen width, short screen height
+ *   varint number of ticks, varint number of changes
+ *   for each change: varint ticks since the previous change, byte new button mask
+ * 
+ * A Replay is also an InputSource that plays the recorded buttons back.
+ */
+
+public class Replay implements InputSource {
+	
+	private static final int MAGIC = 0x4D52504C; // "MRPL"
+	private static final int VERSION = 7; // changed whenever the game plays differently, as old replays would desync
+	
+	private final long seed;
+	private final int period;
+	private final String mapFile;
+	private final int screenWidth;
+	private final int screenHeight;
+	
+	private long length; // number of recorded ticks
+	private long[] changeTicks = new long[64]; // the ticks where the mask changed
+	private int[] changeMasks = new int[64]; // the mask from that tick on
+	private int numChanges;
+	
+	public Replay(long seed, int period, String mapFile, int screenWidth, int screenHeight) {
+		this.seed = seed;
+		this.period = period;
+		this.mapFile = mapFile;
+		this.screenWidth = screenWidth;
+		this.screenHeight = screenHeight;
+	}
+	
+	public long getSeed() { return seed; }
+	
+	public int getPeriod() { return period; }
+	
+	public String getMapFile() { return mapFile; }
+	
+	public int getScreenWidth() { return screenWidth; }
+	
+	public int getScreenHeight() { return screenHeight; }
+	
+	/**
+	 * @return the number of recorded ticks.
+	 */
+	public long getLength() {
+		return length;
+	}
+	
+	/**
+	 * @return the number of times the held buttons changed.
+	 */
+	public int getNumChanges() {
+		return numChanges;
+	}
+	
+	/**
+	 * Records the buttons held during the next tick. Ticks must be recorded in order.
+	 * @throws IllegalArgumentException if tick isn't the next tick.
+	 */
+	public void record(long tick, int mask) {
+		if(tick != length) {
+			throw new IllegalArgumentException("Expected tick " + length + ", got " + tick);
+		}
+		if(numChanges == 0 ? mask != 0 : mask != changeMasks[numChanges - 1]) {
+			addChange(tick, mask);
+		}
+		length++;
+	}
+	
+	/**
+	 * Forgets every tick from the given tick on, so that recording can go on from there. 
+	 * Used when the game goes back to an earlier state.
+	 */
+	public void truncate(long tick) {
+		if(tick < 0 || tick >= length) {
+			return;
+		}
+		while(numChanges > 0 && changeTicks[numChanges - 1] >= tick) {
+			numChanges--;
+		}
+		length = tick;
+	}
+	
+	/**
+	 * @return the buttons held during the given tick, 0 before the first or after the last
+	 * recorded tick. Sampling keeps no state, so several games can play the same Replay
+	 * back at once.
+	 */
+	public int sample(long tick) {
+		if(tick < 0 || tick >= length || numChanges == 0) {
+			return 0;
+		}
+		int i = Arrays.binarySearch(changeTicks, 0, numChanges, tick);
+		if(i < 0) {
+			i = -i - 2; // the last change before tick
+		}
+		return (i >= 0) ? changeMasks[i] : 0;
+	}
+	
+	/**
+	 * Writes this Replay to a file.
+	 */
+	public void save(String filename) throws IOException {
+		OutputStream out = new BufferedOutputStream(new FileOutputStream(filename));
+		try {
+			write(out);
+		} finally {
+			out.close();
+		}
+	}
+	
+	/**
+	 * Reads a Replay from a file.
+	 */
+	public static Replay load(String filename) throws IOException {
+		InputStream in = new BufferedInputStream(new FileInputStream(filename));
+		try {
+			return read(in);
+		} finally {
+			in.close();
+		}
+	}
+	
+	/**
+	 * Writes this Replay to a stream.
+	 */
+	public void write(OutputStream stream) throws IOException {
+		DataOutputStream out = new DataOutputStream(stream);
+		out.writeInt(MAGIC);
+		out.writeByte(VERSION);
+		out.writeLong(seed);
+		out.writeInt(period);
+		out.writeUTF(mapFile);
+		out.writeShort(screenWidth);
+		out.writeShort(screenHeight);
+		writeVarLong(out, length);
+		writeVarLong(out, numChanges);
+		long lastTick = 0;
+		for(int i = 0; i < numChanges; i++) {
+			writeVarLong(out, changeTicks[i] - lastTick);
+			out.writeByte(changeMasks[i]);
+			lastTick = changeTicks[i];
+		}
+		out.flush();
+	}
+	
+	/**
+	 * Reads a Replay from a stream.
+	 * @throws IOException if the stream isn't a Replay of a known version.
+	 */
+	public static Replay read(InputStream stream) throws IOException {
+		DataInputStream in = new DataInputStream(stream);
+		if(in.readInt() != MAGIC) {
+			throw new IOException("Not a replay file");
+		}
+		int version = in.readUnsignedByte();
+		if(version != VERSION) {
+			throw new IOException("Unsupported replay version " + version);
+		}
+		Replay replay = new Replay(in.readLong(), in.readInt(), in.readUTF(), 
+				in.readUnsignedShort(), in.readUnsignedShort());
+		long length = readVarLong(in);
+		long changes = readVarLong(in);
+		long tick = 0;
+		for(long i = 0; i < changes; i++) {
+			tick += readVarLong(in);
+			if(tick >= length || (i > 0 && tick == replay.changeTicks[replay.numChanges - 1])) {
+				throw new IOException("Corrupt replay: bad change tick " + tick);
+			}
+			replay.addChange(tick, in.readUnsignedByte());
+		}
+		replay.length = length;
+		return replay;
+	}
+	
+	private void addChange(long tick, int mask) {
+		if(numChanges == changeTicks.length) {
+			changeTicks = Arrays.copyOf(changeTicks, numChanges * 2);
+			changeMasks = Arrays.copyOf(changeMasks, numChanges * 2);
+		}
+		changeTicks[numChanges] = tick;
+		changeMasks[numChanges] = mask;
+		numChanges++;
+	}
+	
+	private static void writeVarLong(DataOutputStream out, long value) throws IOException {
+		while((value & ~0x7FL) != 0) {
+			out.writeByte((int) ((value & 0x7F) | 0x80));
+			value >>>= 7;
+		}
+		out.writeByte((int) value);
+	}
+	
+	private static long readVarLong(DataInputStream in) throws IOException {
+		long value = 0;
+		for(int shift = 0; shift < 64; shift += 7) {
+			int b = in.readUnsignedByte();
+			value |= (long) (b & 0x7F) << shift;
+			if((b & 0x80) == 0) {
+				return value;
+			}
+		}
+		throw new IOException("Corrupt replay: varint too long");
+	}
+}
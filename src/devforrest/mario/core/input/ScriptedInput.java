@@ -0,0 +1,46 @@
+package devforrest.mario.core.input;
+
+import devforrest.mario.util.GameRandom;
+
+/**
+ * A ScriptedInput plays like an impatient player: it runs right and jumps over whatever is
+ * in the way, with a bit of randomness so different seeds take different paths. The same
+ * seed always gives the same buttons, so a run with a ScriptedInput can be repeated.
+ */
+
+public class ScriptedInput implements InputSource {
+	
+	private final GameRandom random;
+	private int mask;
+	private int ticksLeft; // ticks until the next choice
+	
+	public ScriptedInput(long seed) {
+		random = new GameRandom(seed);
+	}
+	
+	public int sample(long tick) {
+		if(ticksLeft == 0) {
+			choose();
+		}
+		ticksLeft--;
+		return mask;
+	}
+	
+	// picks the buttons to hold and for how long
+	private void choose() {
+		int roll = random.nextInt(20);
+		if(roll < 12) { // run
+			mask = Buttons.RIGHT | Buttons.RUN;
+			ticksLeft = 10 + random.nextInt(40);
+		} else if(roll < 17) { // running jump, held longer to jump higher
+			mask = Buttons.RIGHT | Buttons.RUN | Buttons.JUMP;
+			ticksLeft = 5 + random.nextInt(30);
+		} else if(roll < 19) { // standing jump
+			mask = Buttons.JUMP;
+			ticksLeft = 10 + random.nextInt(20);
+		} else { // back off a little
+			mask = Buttons.LEFT;
+			ticksLeft = 5 + random.nextInt(15);
+		}
+	}
+}
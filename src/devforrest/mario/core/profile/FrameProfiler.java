@@ -0,0 +1,264 @@
+package devforrest.mario.core.profile;
+
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * FrameProfiler records where each frame of the game loop goes. The game thread times
+ * each Phase of a frame and adds to each Counter, then ends the frame, which copies
+ * the frame's values into a ring buffer holding the last HISTORY frames.
+ * 
+ * Only the game thread writes. Readers (the overlay, JMX, CSV dumps) read the ring
+ * buffer without locking, using the published frame count to know which slots are
+ * complete. A reader racing with a writer that laps it can see a mixed frame, which is 
+ * fine for monitoring.
+ * 
+ * Usage, on the game thread:
+ *   profiler.beginFrame();
+ *   long t = profiler.start();
+ *   ... 
+ *   profiler.end(Phase.RENDER, t);
+ *   profiler.count(Counter.DRAW_CALLS, n);
+ *   profiler.endFrame();
+ */
+
+public class FrameProfiler implements FrameProfilerMBean {
+	
+	/** The timed phases of a frame. SNAPSHOT is the recording of the tick for rewinding. */
+	public enum Phase { CREATURE_UPDATE, COLLISION, TILE_ANIMATION, MARIO_UPDATE, SNAPSHOT, RENDER, PRESENT }
+	
+	/** 
+	 * The per frame counters. INPUT_LATENCY is the sum, in nanoseconds, of the time from 
+	 * each of the frame's INPUT_EVENTS to the frame being presented.
+	 */
+	public enum Counter { RELEVANT_CREATURES, DRAW_CALLS, ALLOCATED_BYTES, INPUT_EVENTS, INPUT_LATENCY }
+	
+	public static final int HISTORY = 512; // must be a power of 2
+	private static final int MASK = HISTORY - 1;
+	private static final Phase[] PHASES = Phase.values();
+	private static final Counter[] COUNTERS = Counter.values();
+	
+	// ring buffers, indexed [phase or counter][frame & MASK]
+	private final long[][] phaseNanos = new long[PHASES.length][HISTORY];
+	private final long[][] counts = new long[COUNTERS.length][HISTORY];
+	private final long[] frameNanos = new long[HISTORY];
+	
+	// the current frame, only touched by the game thread
+	private final long[] currPhaseNanos = new long[PHASES.length];
+	private final long[] currCounts = new long[COUNTERS.length];
+	private long frameStart;
+	private long frameAllocStart;
+	
+	private final AtomicLong frames = new AtomicLong(); // number of completed frames
+	private volatile boolean enabled = true;
+	private volatile boolean showOverlay = false;
+	private com.sun.management.ThreadMXBean allocationBean;
+	
+	public FrameProfiler() {
+		ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+		if(bean instanceof com.sun.management.ThreadMXBean) {
+			com.sun.management.ThreadMXBean sunBean = (com.sun.management.ThreadMXBean) bean;
+			if(sunBean.isThreadAllocatedMemorySupported() && sunBean.isThreadAllocatedMemoryEnabled()) {
+				allocationBean = sunBean;
+			}
+		}
+	}
+	
+	/**
+	 * Registers this profiler with the platform MBean server under
+	 * devforrest.mario:type=FrameProfiler,name=[name].
+	 * @return true if the profiler was registered.
+	 */
+	public boolean registerMBean(String name) {
+		try {
+			MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+			ObjectName objectName = new ObjectName("devforrest.mario:type=FrameProfiler,name=" + name);
+			if(!server.isRegistered(objectName)) {
+				server.registerMBean(this, objectName);
+			}
+			return true;
+		} catch (Exception e) {
+			System.out.println("Could not register the frame profiler: " + e);
+			return false;
+		}
+	}
+	
+	/**
+	 * Starts a new frame. Must be called on the game thread.
+	 */
+	public void beginFrame() {
+		for(int i = 0; i < currPhaseNanos.length; i++) { currPhaseNanos[i] = 0; }
+		for(int i = 0; i < currCounts.length; i++) { currCounts[i] = 0; }
+		if(!enabled) { return; }
+		frameStart = System.nanoTime();
+		frameAllocStart = allocatedBytes();
+	}
+	
+	/**
+	 * @return a start time to pass to end(), or 0 if the profiler is disabled.
+	 */
+	public long start() {
+		return enabled ? System.nanoTime() : 0;
+	}
+	
+	/**
+	 * Adds the time since start to the given phase of the current frame. A phase can
+	 * be timed several times in one frame.
+	 */
+	public void end(Phase phase, long start) {
+		if(start != 0) {
+			currPhaseNanos[phase.ordinal()] += System.nanoTime() - start;
+		}
+	}
+	
+	/**
+	 * Adds amount to the given counter of the current frame.
+	 */
+	public void count(Counter counter, long amount) {
+		currCounts[counter.ordinal()] += amount;
+	}
+	
+	/**
+	 * Ends the current frame and publishes it to the ring buffer.
+	 */
+	public void endFrame() {
+		if(!enabled) { return; }
+		long frame = frames.get();
+		int slot = (int) (frame & MASK);
+		long allocStart = frameAllocStart;
+		if(allocStart >= 0) {
+			currCounts[Counter.ALLOCATED_BYTES.ordinal()] += allocatedBytes() - allocStart;
+		}
+		for(int i = 0; i < currPhaseNanos.length; i++) { phaseNanos[i][slot] = currPhaseNanos[i]; }
+		for(int i = 0; i < currCounts.length; i++) { counts[i][slot] = currCounts[i]; }
+		frameNanos[slot] = System.nanoTime() - frameStart;
+		frames.lazySet(frame + 1); // publish the slot
+	}
+	
+	private long allocatedBytes() {
+		if(allocationBean == null) { return -1; }
+		return allocationBean.getThreadAllocatedBytes(Thread.currentThread().getId());
+	}
+	
+	/**
+	 * @return the average of the given phase, in nanoseconds, over the ring buffer.
+	 */
+	public long averageNanos(Phase phase) {
+		return average(phaseNanos[phase.ordinal()]);
+	}
+	
+	/**
+	 * @return the average per frame of the given counter over the ring buffer.
+	 */
+	public long average(Counter counter) {
+		return average(counts[counter.ordinal()]);
+	}
+	
+	/**
+	 * @return the average length of a whole frame, in nanoseconds, over the ring buffer.
+	 */
+	public long averageFrameNanos() {
+		return average(frameNanos);
+	}
+	
+	/**
+	 * @return the average time, in nanoseconds, from an input event to the frame that shows 
+	 * it, over the ring buffer.
+	 */
+	public long averageInputLatencyNanos() {
+		long events = sum(counts[Counter.INPUT_EVENTS.ordinal()]);
+		return (events == 0) ? 0 : sum(counts[Counter.INPUT_LATENCY.ordinal()]) / events;
+	}
+	
+	private long average(long[] ring) {
+		int n = (int) Math.min(frames.get(), HISTORY);
+		return (n == 0) ? 0 : sum(ring) / n;
+	}
+	
+	private long sum(long[] ring) {
+		long frame = frames.get();
+		int n = (int) Math.min(frame, HISTORY);
+		long sum = 0;
+		for(int i = 1; i <= n; i++) {
+			sum += ring[(int) ((frame - i) & MASK)];
+		}
+		return sum;
+	}
+	
+	public long getFrameCount() { return frames.get(); }
+	public int getHistorySize() { return HISTORY; }
+	
+	public long getCreatureUpdateMicros() { return averageNanos(Phase.CREATURE_UPDATE) / 1000; }
+	public long getCollisionMicros() { return averageNanos(Phase.COLLISION) / 1000; }
+	public long getTileAnimationMicros() { return averageNanos(Phase.TILE_ANIMATION) / 1000; }
+	public long getMarioUpdateMicros() { return averageNanos(Phase.MARIO_UPDATE) / 1000; }
+	public long getSnapshotMicros() { return averageNanos(Phase.SNAPSHOT) / 1000; }
+	public long getRenderMicros() { return averageNanos(Phase.RENDER) / 1000; }
+	public long getPresentMicros() { return averageNanos(Phase.PRESENT) / 1000; }
+	public long getFrameMicros() { return averageFrameNanos() / 1000; }
+	
+	public long getMaxFrameMicros() {
+		long frame = frames.get();
+		int n = (int) Math.min(frame, HISTORY);
+		long max = 0;
+		for(int i = 1; i <= n; i++) {
+			max = Math.max(max, frameNanos[(int) ((frame - i) & MASK)]);
+		}
+		return max / 1000;
+	}
+	
+	public long getRelevantCreatures() { return average(Counter.RELEVANT_CREATURES); }
+	public long getDrawCalls() { return average(Counter.DRAW_CALLS); }
+	public long getAllocatedBytes() { return average(Counter.ALLOCATED_BYTES); }
+	public long getInputLatencyMicros() { return averageInputLatencyNanos() / 1000; }
+	
+	public boolean isEnabled() { return enabled; }
+	public void setEnabled(boolean enabled) { this.enabled = enabled; }
+	
+	public boolean isOverlayShown() { return showOverlay; }
+	public void setOverlayShown(boolean showOverlay) { this.showOverlay = showOverlay; }
+	
+	public int dumpCsv(String filename) throws IOException {
+		Writer out = new FileWriter(filename);
+		try {
+			return dumpCsv(out);
+		} finally {
+			out.close();
+		}
+	}
+	
+	/**
+	 * Writes every frame in the ring buffer, oldest first, as CSV. Phases are in 
+	 * nanoseconds.
+	 * @return the number of frames written.
+	 */
+	public int dumpCsv(Writer writer) {
+		PrintWriter out = new PrintWriter(writer);
+		out.print("frame");
+		for(Phase p : PHASES) { out.print("," + p.name().toLowerCase() + "_ns"); }
+		out.print(",frame_ns");
+		for(Counter c : COUNTERS) { out.print("," + c.name().toLowerCase()); }
+		out.println();
+		
+		long frame = frames.get();
+		int n = (int) Math.min(frame, HISTORY);
+		for(long f = frame - n; f < frame; f++) {
+			int slot = (int) (f & MASK);
+			out.print(f);
+			for(int i = 0; i < PHASES.length; i++) { out.print("," + phaseNanos[i][slot]); }
+			out.print("," + frameNanos[slot]);
+			for(int i = 0; i < COUNTERS.length; i++) { out.print("," + counts[i][slot]); }
+			out.println();
+		}
+		out.flush();
+		return n;
+	}
+}
@@ -0,0 +1,37 @@
+package devforrest.mario.core.profile;
+
+/**
+ * The management interface of a FrameProfiler. Times are averages in microseconds
+ * and counts are averages per frame, both over the frames still held in the profiler's
+ * ring buffer.
+ */
+
+public interface FrameProfilerMBean {
+	
+	public long getFrameCount();
+	public int getHistorySize();
+	
+	public long getCreatureUpdateMicros();
+	public long getCollisionMicros();
+	public long getTileAnimationMicros();
+	public long getMarioUpdateMicros();
+	public long getSnapshotMicros();
+	public long getRenderMicros();
+	public long getPresentMicros();
+	public long getFrameMicros();
+	public long getMaxFrameMicros();
+	
+	public long getRelevantCreatures();
+	public long getDrawCalls();
+	public long getAllocatedBytes();
+	public long getInputLatencyMicros();
+	
+	public boolean isEnabled();
+	public void setEnabled(boolean enabled);
+	
+	/**
+	 * Writes every frame in the ring buffer to a CSV file.
+	 * @return the number of frames written.
+	 */
+	public int dumpCsv(String filename) throws java.io.IOException;
+}
@@ -0,0 +1,80 @@
+package devforrest.mario.core.profile;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+
+import devforrest.mario.core.profile.FrameProfiler.Counter;
+import devforrest.mario.core.profile.FrameProfiler.Phase;
+
+/**
+ * Draws a FrameProfiler's averages in the corner of the screen. The text is only rebuilt
+ * every REFRESH_FRAMES frames so the overlay doesn't skew the numbers it shows.
+ */
+
+public class ProfilerOverlay {
+	
+	private static final int REFRESH_FRAMES = 25;
+	private static final int LINE_HEIGHT = 11;
+	private static final int WIDTH = 150;
+	private static final Color BACKGROUND = new Color(0, 0, 0, 150);
+	
+	private FrameProfiler profiler;
+	private String[] lines;
+	private long lastRefresh = -REFRESH_FRAMES;
+	
+	public ProfilerOverlay(FrameProfiler profiler) {
+		this.profiler = profiler;
+		lines = new String[0];
+	}
+	
+	/**
+	 * Draws the overlay with its top left corner at (x, y) if the profiler's overlay is shown.
+	 */
+	public void draw(Graphics2D g, int x, int y) {
+		if(!profiler.isOverlayShown()) { return; }
+		long frame = profiler.getFrameCount();
+		if(frame - lastRefresh >= REFRESH_FRAMES) {
+			refresh();
+			lastRefresh = frame;
+		}
+		g.setColor(BACKGROUND);
+		g.fillRect(x, y, WIDTH, getHeight());
+		g.setColor(Color.WHITE);
+		for(int i = 0; i < lines.length; i++) {
+			g.drawString(lines[i], x + 3, y + (i + 1) * LINE_HEIGHT);
+		}
+	}
+	
+	public int getWidth() {
+		return WIDTH;
+	}
+	
+	/**
+	 * @return the height of the overlay, as it was last drawn.
+	 */
+	public int getHeight() {
+		return lines.length * LINE_HEIGHT + 4;
+	}
+	
+	private void refresh() {
+		Phase[] phases = Phase.values();
+		Counter[] counters = Counter.values();
+		lines = new String[phases.length + counters.length + 2];
+		lines[0] = "frame " + millis(profiler.averageFrameNanos()) + " ms (max " 
+				+ millis(profiler.getMaxFrameMicros() * 1000) + ")";
+		for(int i = 0; i < phases.length; i++) {
+			lines[i + 1] = phases[i].name().toLowerCase() + " " + millis(profiler.averageNanos(phases[i])) + " ms";
+		}
+		for(int i = 0; i < counters.length; i++) {
+			lines[phases.length + i + 1] = counters[i].name().toLowerCase() + " " + profiler.average(counters[i]);
+		}
+		lines[lines.length - 1] = "input to screen " + millis(profiler.averageInputLatencyNanos()) + " ms";
+	}
+	
+	// formats nanoseconds as milliseconds with two decimals
+	private static String millis(long nanos) {
+		long hundredths = nanos / 10000;
+		long fraction = hundredths % 100;
+		return (hundredths / 100) + "." + (fraction < 10 ? "0" : "") + fraction;
+	}
+}
@@ -0,0 +1,81 @@
+package devforrest.mario.core.sound;
+
+/**
+    The EchoFilter class is a SoundFilter that emulates an echo.
+    The delay is given in milliseconds, so the same filter works
+    for any sample rate.
+    @see FilteredSoundStream
+*/
+public class EchoFilter extends SoundFilter {
+
+    // an echo is considered inaudible below this level
+    private static final float FINAL_DECAY = .01f;
+
+    private int delayMillis;
+    private float decay;
+    private float[] delayBuffer;
+    private int delayBufferPos;
+
+    /**
+        Creates an EchoFilter with the specified delay in
+        milliseconds and the volume of each echo, relative to
+        the previous one (0 to 1).
+    */
+    public EchoFilter(int delayMillis, float decay) {
+        this.delayMillis = delayMillis;
+        this.decay = decay;
+        reset();
+    }
+
+
+    /**
+        Clears this EchoFilter's internal delay buffer, sizing it
+        for the current format.
+    */
+    public void reset() {
+        int numSamples = Math.max(1,
+            Math.round(sampleRate * delayMillis / 1000f)) * channels;
+        if (delayBuffer == null || delayBuffer.length != numSamples) {
+            delayBuffer = new float[numSamples];
+        }
+        else {
+            for (int i=0; i<delayBuffer.length; i++) {
+                delayBuffer[i] = 0;
+            }
+        }
+        delayBufferPos = 0;
+    }
+
+
+    /**
+        Gets the remaining size, in samples, of the echoes.
+    */
+    public int getRemainingSize() {
+        if (decay <= 0) {
+            return 0;
+        }
+        if (decay >= 1) {
+            // an echo that never fades; stop after one repeat
+            return delayBuffer.length;
+        }
+        int numRepeats = (int)Math.ceil(
+            Math.log(FINAL_DECAY) / Math.log(decay));
+        return delayBuffer.length * numRepeats;
+    }
+
+
+    public void filter(float[] samples, int offset, int length) {
+        for (int i=offset; i<offset+length; i++) {
+            float newSample = samples[i] +
+                decay * delayBuffer[delayBufferPos];
+            samples[i] = newSample;
+            delayBuffer[delayBufferPos] = newSample;
+
+            delayBufferPos++;
+            if (delayBufferPos == delayBuffer.length) {
+                delayBufferPos = 0;
+            }
+        }
+    }
+
+}
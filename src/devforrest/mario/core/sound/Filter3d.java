@@ -0,0 +1,116 @@
+package devforrest.mario.core.sound;
+
+import devforrest.mario.core.animation.Sprite;
+
+/**
+    The Filter3d class is a SoundFilter that makes a sound quieter
+    the further its source is from the listener, and, for stereo
+    formats, pans it toward the side the source is on. The
+    positions are read once per block, and the gains are ramped
+    across the block so moving sprites don't click.
+    @see FilteredSoundStream
+*/
+public class Filter3d extends SoundFilter {
+
+    private Sprite source;
+    private Sprite listener;
+    private int maxDistance;
+    private float lastLeft;
+    private float lastRight;
+
+    /**
+        Creates a new Filter3d object with the specified source
+        and listener Sprites. The Sprite's position can be
+        changed while this filter is running. The maxDistance
+        parameter is the distance, in pixels, at which the sound
+        can no longer be heard.
+    */
+    public Filter3d(Sprite source, Sprite listener, int maxDistance) {
+        this.source = source;
+        this.listener = listener;
+        this.maxDistance = maxDistance;
+        reset();
+    }
+
+
+    public void reset() {
+        lastLeft = getVolume() * getLeftGain();
+        lastRight = getVolume() * getRightGain();
+    }
+
+
+    public void filter(float[] samples, int offset, int length) {
+        if (source == null || listener == null) {
+            // nothing to filter - return
+            return;
+        }
+
+        float volume = getVolume();
+        float left = volume * getLeftGain();
+        float right = volume * getRightGain();
+
+        int numFrames = length / channels;
+        if (numFrames == 0) {
+            return;
+        }
+        float leftStep = (left - lastLeft) / numFrames;
+        float rightStep = (right - lastRight) / numFrames;
+        float leftGain = lastLeft;
+        float rightGain = lastRight;
+
+        int i = offset;
+        for (int frame=0; frame<numFrames; frame++) {
+            leftGain+=leftStep;
+            rightGain+=rightStep;
+            if (channels == 1) {
+                samples[i++]*=leftGain;
+            }
+            else {
+                samples[i++]*=leftGain;
+                samples[i++]*=rightGain;
+                // any other channels follow the centre volume
+                for (int c=2; c<channels; c++) {
+                    samples[i++]*=(leftGain + rightGain) / 2;
+                }
+            }
+        }
+        lastLeft = left;
+        lastRight = right;
+    }
+
+
+    // gets the volume (0 to 1) for the current distance
+    private float getVolume() {
+        if (source == null || listener == null) {
+            return 1;
+        }
+        float dx = source.getX() - listener.getX();
+        float dy = source.getY() - listener.getY();
+        float distance = (float)Math.sqrt(dx * dx + dy * dy);
+        if (distance >= maxDistance) {
+            return 0;
+        }
+        return 1 - distance / maxDistance;
+    }
+
+
+    // mono sounds are only attenuated; stereo sounds also pan
+    private float getPan() {
+        if (channels == 1 || source == null || listener == null) {
+            return 0;
+        }
+        float pan = (source.getX() - listener.getX()) / maxDistance;
+        return Math.max(-1, Math.min(1, pan));
+    }
+
+
+    private float getLeftGain() {
+        return channels == 1 ? 1 : Math.min(1, 1 - getPan());
+    }
+
+
+    private float getRightGain() {
+        return channels == 1 ? 1 : Math.min(1, 1 + getPan());
+    }
+
+}
@@ -5,10 +5,14 @@ import java.io.FilterInputStream;
 import java.io.InputStream;
 import java.io.IOException;
 
+import javax.sound.sampled.AudioFormat;
+
 
 /**
     The FilteredSoundStream class is a FilterInputStream that
     applies a SoundFilter to the underlying input stream.
+    <p>Bytes are decoded to float samples once per read, filtered,
+    and encoded back to the stream's AudioFormat.
     @see SoundFilter
 */
 public class FilteredSoundStream extends FilterInputStream {
@@ -16,18 +20,26 @@ public class FilteredSoundStream extends FilterInputStream {
     private static final int REMAINING_SIZE_UNKNOWN = -1;
 
     private SoundFilter soundFilter;
+    private SampleConverter converter;
+    private int frameSize;
     private int remainingSize;
+    private float[] floatBuffer;
 
     /**
         Creates a new FilteredSoundStream object with the
-        specified InputStream and SoundFilter.
+        specified InputStream, AudioFormat and SoundFilter.
     */
-    public FilteredSoundStream(InputStream in,
+    public FilteredSoundStream(InputStream in, AudioFormat format,
         SoundFilter soundFilter)
     {
         super(in);
         this.soundFilter = soundFilter;
+        converter = new SampleConverter(format);
+        frameSize = Math.max(format.getFrameSize(),
+            converter.getBytesPerSample());
+        soundFilter.setFormat(format);
         remainingSize = REMAINING_SIZE_UNKNOWN;
+        floatBuffer = new float[0];
     }
 
 
@@ -38,20 +50,26 @@ public class FilteredSoundStream extends FilterInputStream {
     public int read(byte[] samples, int offset, int length)
         throws IOException
     {
+        // only filter whole frames
+        length = length / frameSize * frameSize;
+        if (length == 0) {
+            return super.read(samples, offset, 0);
+        }
+
         // read and filter the sound samples in the stream
-        int bytesRead = super.read(samples, offset, length);
+        int bytesRead = readFrames(samples, offset, length);
         if (bytesRead > 0) {
-            soundFilter.filter(samples, offset, bytesRead);
+            filter(samples, offset, bytesRead);
             return bytesRead;
         }
 
         // if there are no remaining bytes in the sound stream,
         // check if the filter has any remaining bytes ("echoes").
         if (remainingSize == REMAINING_SIZE_UNKNOWN) {
-            remainingSize = soundFilter.getRemainingSize();
-            // round down to nearest multiple of 4
-            // (typical frame size)
-            remainingSize = remainingSize / 4 * 4;
+            remainingSize = soundFilter.getRemainingSize() *
+                converter.getBytesPerSample();
+            // round down to a whole frame
+            remainingSize = remainingSize / frameSize * frameSize;
         }
         if (remainingSize > 0) {
             length = Math.min(length, remainingSize);
@@ -62,7 +80,7 @@ public class FilteredSoundStream extends FilterInputStream {
             }
 
             // filter the remaining bytes
-            soundFilter.filter(samples, offset, length);
+            filter(samples, offset, length);
             remainingSize-=length;
 
             // return
@@ -74,4 +92,38 @@ public class FilteredSoundStream extends FilterInputStream {
         }
     }
 
+
+    // reads up to length bytes, never ending in the middle of a frame
+    private int readFrames(byte[] samples, int offset, int length)
+        throws IOException
+    {
+        int total = super.read(samples, offset, length);
+        if (total <= 0) {
+            return total;
+        }
+        while (total % frameSize != 0) {
+            int numBytesRead = super.read(samples, offset + total,
+                frameSize - total % frameSize);
+            if (numBytesRead == -1) {
+                // drop the incomplete frame
+                total -= total % frameSize;
+                break;
+            }
+            total += numBytesRead;
+        }
+        return total;
+    }
+
+
+    // decodes, filters and encodes length bytes in place
+    private void filter(byte[] samples, int offset, int length) {
+        int numSamples = length / converter.getBytesPerSample();
+        if (floatBuffer.length < numSamples) {
+            floatBuffer = new float[numSamples];
+        }
+        converter.decode(samples, offset, floatBuffer, 0, numSamples);
+        soundFilter.filter(floatBuffer, 0, numSamples);
+        converter.encode(floatBuffer, 0, samples, offset, numSamples);
+    }
+
 }
@@ -21,6 +21,8 @@ package devforrest.mario.core.sound;
  * Sequence, you need to be notified when the music is done playing and start over.
  * This is done with a MetaEventListener.
  * 
+ * Each MidiPlayer plays through its own Synthesizer, so players can be faded
+ * against each other with setVolume(). See MusicManager.
  */
 
 import java.io.*;
@@ -32,8 +34,10 @@ public class MidiPlayer implements MetaEventListener {
     public static final int END_OF_TRACK_MESSAGE = 47;
 
     private Sequencer sequencer; // play through this sequencer
-    private boolean loop;
-    private boolean paused;
+    private Synthesizer synthesizer; // the sequencer plays into this synthesizer
+    private volatile boolean loop;
+    private volatile boolean paused;
+    private float volume;
 
     // Creates a new MidiPlayer object.
     // Gets the sequencer to play a sequence
@@ -41,13 +45,19 @@ public class MidiPlayer implements MetaEventListener {
         try {
         	// MidiSystem is a lot like AudioSystem, in that it allows you to
         	// get the proper materials needed to begin.
-            sequencer = MidiSystem.getSequencer();
+            sequencer = MidiSystem.getSequencer(false);
+            synthesizer = MidiSystem.getSynthesizer();
+            synthesizer.open();
             sequencer.open();
+            sequencer.getTransmitter().setReceiver(synthesizer.getReceiver());
             sequencer.addMetaEventListener(this);
         }
         catch (MidiUnavailableException ex) {
+            close();
             sequencer = null;
+            synthesizer = null;
         }
+        volume = 1;
     }
     
     // Loads a sequence from the file system. Returns null if an error occurs.
@@ -110,25 +120,64 @@ public class MidiPlayer implements MetaEventListener {
             	// tick postion required to reset the sequencer
             	sequencer.setTickPosition(0);
                 sequencer.start();
-            } else {
-            	System.exit(0);
             }
+            // otherwise the sequencer has stopped by itself
         }
     }
 
-    // Stops the sequencer and resets its position to 0.
+    // Stops the sequencer and resets its position to 0. A stopped
+    // player is not paused.
     public void stop() {
          if (sequencer != null && sequencer.isOpen()) {
              sequencer.stop();
              sequencer.setMicrosecondPosition(0);
          }
+         paused = false;
     }
 
-    // Closes the sequencer
+    // Closes the sequencer and its synthesizer
     public void close() {
          if (sequencer != null && sequencer.isOpen()) {
              sequencer.close();
          }
+         if (synthesizer != null && synthesizer.isOpen()) {
+             synthesizer.close();
+         }
+    }
+
+    // Returns true if a sequence is playing
+    public boolean isPlaying() {
+        return sequencer != null && sequencer.isOpen() && sequencer.isRunning();
+    }
+
+    // Sets the master volume of this player's synthesizer, from 0 to 1.
+    // Uses the universal real-time master volume system exclusive message,
+    // which tracks can't override with their own channel volumes.
+    public void setVolume(float volume) {
+        volume = Math.max(0, Math.min(1, volume));
+        this.volume = volume;
+        if (synthesizer == null || !synthesizer.isOpen()) {
+            return;
+        }
+        int value = Math.round(volume * 0x3fff);
+        byte[] data = { (byte) 0xf0, 0x7f, 0x7f, 0x04, 0x01,
+        		(byte) (value & 0x7f), (byte) ((value >> 7) & 0x7f), (byte) 0xf7 };
+        try {
+            SysexMessage message = new SysexMessage();
+            message.setMessage(data, data.length);
+            synthesizer.getReceiver().send(message, -1);
+        }
+        catch (InvalidMidiDataException ex) {
+            ex.printStackTrace();
+        }
+        catch (MidiUnavailableException ex) {
+            ex.printStackTrace();
+        }
+    }
+
+    // Returns the master volume of this player
+    public float getVolume() {
+        return volume;
     }
 
     // Gets the sequencer
@@ -0,0 +1,264 @@
+package devforrest.mario.core.sound;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.sound.midi.Sequence;
+
+/**
+    The MusicManager class plays the game's MIDI music. It is a
+    ThreadPool: MIDI files are parsed in the background and cached,
+    and track switches run on the pool's threads, so none of the
+    methods here block the game loop.
+    <p>Two MidiPlayers take turns. A new track starts on the idle
+    player before the old one is stopped, either at once with
+    play() or with crossfadeTo(). Only the latest request wins; a
+    request for a track that is still loading starts it as soon
+    as it is parsed.
+    <p>Tracks are named by their file name, for example
+    "music/smb_hammerbros.mid".
+*/
+public class MusicManager extends ThreadPool {
+
+    // directories scanned by preloadAll()
+    public static final String[] MUSIC_DIRECTORIES = { "music", "sounds" };
+    // the time between volume steps of a crossfade
+    private static final int FADE_STEP = 20;
+
+    private ConcurrentHashMap<String, Sequence> cache;
+    private MidiPlayer[] players;
+    private int current; // index of the player of the current track
+    private Object switchLock;
+    private AtomicInteger lastRequest; // id of the latest switch request
+    private volatile String currentTrack;
+    private volatile boolean paused;
+
+    /**
+        Creates a new MusicManager. Nothing is loaded until
+        preloadAll(), preload() or play() is called.
+    */
+    public MusicManager() {
+        // one thread parses while the other switches tracks
+        super(2, DEFAULT_QUEUE_CAPACITY, SaturationPolicy.DISCARD);
+        cache = new ConcurrentHashMap<String, Sequence>();
+        players = new MidiPlayer[] { new MidiPlayer(), new MidiPlayer() };
+        current = 0;
+        switchLock = new Object();
+        lastRequest = new AtomicInteger();
+    }
+
+    /**
+        Returns the file names of all MIDI files in the music
+        directories, sorted.
+    */
+    public static List<String> findTracks() {
+        List<String> tracks = new ArrayList<String>();
+        for (String directory : MUSIC_DIRECTORIES) {
+            File[] files = new File(directory).listFiles();
+            if (files == null) {
+                continue;
+            }
+            for (File file : files) {
+                if (file.isFile() && file.getName().toLowerCase().endsWith(".mid")) {
+                    tracks.add(directory + "/" + file.getName());
+                }
+            }
+        }
+        Collections.sort(tracks);
+        return tracks;
+    }
+
+    /**
+        Parses and caches every MIDI file in the music directories
+        in the background. Returns immediately.
+    */
+    public void preloadAll() {
+        for (String track : findTracks()) {
+            preload(track);
+        }
+    }
+
+    /**
+        Parses and caches a MIDI file in the background. Returns
+        immediately.
+    */
+    public void preload(final String track) {
+        if (cache.containsKey(track)) {
+            return;
+        }
+        runTask(new Runnable() {
+            public void run() {
+                load(track);
+            }
+        });
+    }
+
+    /**
+        Returns true if the track has been parsed and cached.
+    */
+    public boolean isLoaded(String track) {
+        return cache.containsKey(track);
+    }
+
+    /**
+        Gets the name of the track that is playing, or was last
+        requested, or null.
+    */
+    public String getCurrentTrack() {
+        return currentTrack;
+    }
+
+    /**
+        Switches to a track, looping, without a fade. The new
+        track starts before the old one stops. Returns immediately.
+    */
+    public void play(String track) {
+        crossfadeTo(track, 0);
+    }
+
+    /**
+        Crossfades from the current track to a new one, looping,
+        over the specified number of milliseconds. Requesting the
+        track that is already playing does nothing. Returns
+        immediately.
+    */
+    public void crossfadeTo(final String track, final int millis) {
+        if (track == null || track.equals(currentTrack)) {
+            return;
+        }
+        currentTrack = track;
+        final int request = lastRequest.incrementAndGet();
+        runTask(new Runnable() {
+            public void run() {
+                switchTo(track, millis, request);
+            }
+        });
+    }
+
+    /**
+        Stops the music. Returns immediately.
+    */
+    public void stop() {
+        currentTrack = null;
+        final int request = lastRequest.incrementAndGet();
+        runTask(new Runnable() {
+            public void run() {
+                synchronized (switchLock) {
+                    if (request == lastRequest.get()) {
+                        for (MidiPlayer player : players) {
+                            player.stop();
+                        }
+                    }
+                }
+            }
+        });
+    }
+
+    /**
+        Sets the paused state of the current track. Returns
+        immediately.
+    */
+    public void setPaused(final boolean paused) {
+        this.paused = paused;
+        runTask(new Runnable() {
+            public void run() {
+                synchronized (switchLock) {
+                    players[current].setPaused(MusicManager.this.paused);
+                }
+            }
+        });
+    }
+
+    /**
+        Returns the paused state.
+    */
+    public boolean isPaused() {
+        return paused;
+    }
+
+    /**
+        Stops the music and closes the players and the pool.
+    */
+    public void close() {
+        super.close();
+        synchronized (switchLock) {
+            for (MidiPlayer player : players) {
+                player.stop();
+                player.close();
+            }
+        }
+    }
+
+    // parses a track, or gets it from the cache
+    private Sequence load(String track) {
+        Sequence sequence = cache.get(track);
+        if (sequence == null) {
+            sequence = players[0].getSequence(track);
+            if (sequence != null) {
+                cache.putIfAbsent(track, sequence);
+            }
+        }
+        return sequence;
+    }
+
+    // runs on a pool thread. All changes to the players are made
+    // while holding switchLock, but the fade sleeps without it, so
+    // a newer switch never waits for an older one to finish. A
+    // switch that is no longer the latest request stops touching
+    // the players, and the newer one takes them over.
+    private void switchTo(String track, int millis, int request) {
+        if (request != lastRequest.get()) {
+            return;
+        }
+        Sequence sequence = load(track);
+        MidiPlayer oldPlayer;
+        MidiPlayer newPlayer;
+        float oldVolume;
+        synchronized (switchLock) {
+            if (request != lastRequest.get() || sequence == null) {
+                // a newer request was made while this one waited
+                return;
+            }
+            oldPlayer = players[current];
+            current = 1 - current;
+            newPlayer = players[current];
+
+            newPlayer.setVolume(millis > 0 ? 0 : 1);
+            newPlayer.play(sequence, true);
+            if (paused) {
+                newPlayer.setPaused(true);
+            }
+            oldVolume = oldPlayer.getVolume();
+        }
+
+        // fade in steps, giving up if a newer request is made
+        for (int time = FADE_STEP; time < millis; time+=FADE_STEP) {
+            try {
+                Thread.sleep(FADE_STEP);
+            }
+            catch (InterruptedException ex) {
+                break;
+            }
+            synchronized (switchLock) {
+                if (request != lastRequest.get()) {
+                    return;
+                }
+                float t = (float) time / millis;
+                newPlayer.setVolume(t);
+                oldPlayer.setVolume(oldVolume * (1 - t));
+            }
+        }
+        synchronized (switchLock) {
+            if (request != lastRequest.get()) {
+                return;
+            }
+            newPlayer.setVolume(1);
+            oldPlayer.stop();
+            oldPlayer.setVolume(1);
+        }
+    }
+}
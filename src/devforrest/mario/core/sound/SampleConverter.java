@@ -0,0 +1,165 @@
+package devforrest.mario.core.sound;
+
+import javax.sound.sampled.AudioFormat;
+
+/**
+    The SampleConverter class converts raw PCM bytes of a given
+    AudioFormat to normalized float samples (-1.0 to 1.0) and back.
+    It supports signed and unsigned integer PCM of 8, 16, 24 and
+    32 bits in either byte order, and 32-bit float PCM.
+    <p>Samples are interleaved by channel, so a frame of a stereo
+    format is two consecutive floats.
+    @see FilteredSoundStream
+*/
+public final class SampleConverter {
+
+    private final int bytesPerSample;
+    private final boolean bigEndian;
+    private final boolean signed;
+    private final boolean floating;
+    private final float maxValue;
+
+    /**
+        Creates a new SampleConverter for the specified format.
+        @throws IllegalArgumentException if the format's encoding
+        or sample size is not supported.
+    */
+    public SampleConverter(AudioFormat format) {
+        AudioFormat.Encoding encoding = format.getEncoding();
+        int bits = format.getSampleSizeInBits();
+        if (bits % 8 != 0 || bits < 8 || bits > 32) {
+            throw new IllegalArgumentException(
+                "Unsupported sample size: " + bits);
+        }
+        if (AudioFormat.Encoding.PCM_FLOAT.equals(encoding)) {
+            if (bits != 32) {
+                throw new IllegalArgumentException(
+                    "Unsupported float sample size: " + bits);
+            }
+            floating = true;
+            signed = true;
+        }
+        else if (AudioFormat.Encoding.PCM_SIGNED.equals(encoding)) {
+            floating = false;
+            signed = true;
+        }
+        else if (AudioFormat.Encoding.PCM_UNSIGNED.equals(encoding)) {
+            floating = false;
+            signed = false;
+        }
+        else {
+            throw new IllegalArgumentException(
+                "Unsupported encoding: " + encoding);
+        }
+        bytesPerSample = bits / 8;
+        // 8-bit samples have no byte order
+        bigEndian = format.isBigEndian() || bytesPerSample == 1;
+        maxValue = (float)((1L << (bits - 1)) - 1);
+    }
+
+
+    /**
+        Gets the number of bytes used by a single sample of a
+        single channel.
+    */
+    public int getBytesPerSample() {
+        return bytesPerSample;
+    }
+
+
+    /**
+        Decodes numSamples samples from the byte array into
+        normalized floats.
+    */
+    public void decode(byte[] src, int srcOffset,
+        float[] dst, int dstOffset, int numSamples)
+    {
+        int pos = srcOffset;
+        for (int i=0; i<numSamples; i++) {
+            int value = readInt(src, pos);
+            pos+=bytesPerSample;
+            if (floating) {
+                dst[dstOffset + i] = Float.intBitsToFloat(value);
+            }
+            else {
+                dst[dstOffset + i] = value / maxValue;
+            }
+        }
+    }
+
+
+    /**
+        Encodes numSamples normalized floats into the byte array.
+        Samples outside of -1.0 to 1.0 are clipped.
+    */
+    public void encode(float[] src, int srcOffset,
+        byte[] dst, int dstOffset, int numSamples)
+    {
+        int pos = dstOffset;
+        for (int i=0; i<numSamples; i++) {
+            float sample = src[srcOffset + i];
+            if (sample > 1) {
+                sample = 1;
+            }
+            else if (sample < -1) {
+                sample = -1;
+            }
+            int value;
+            if (floating) {
+                value = Float.floatToRawIntBits(sample);
+            }
+            else {
+                value = Math.round(sample * maxValue);
+            }
+            writeInt(dst, pos, value);
+            pos+=bytesPerSample;
+        }
+    }
+
+
+    // reads one sample as a sign-extended (or re-centered) int
+    private int readInt(byte[] buffer, int position) {
+        int value = 0;
+        if (bigEndian) {
+            for (int i=0; i<bytesPerSample; i++) {
+                value = (value << 8) | (buffer[position + i] & 0xff);
+            }
+        }
+        else {
+            for (int i=bytesPerSample-1; i>=0; i--) {
+                value = (value << 8) | (buffer[position + i] & 0xff);
+            }
+        }
+        if (floating || bytesPerSample == 4) {
+            return signed ? value : value ^ 0x80000000;
+        }
+        int shift = 32 - bytesPerSample * 8;
+        if (signed) {
+            // sign-extend
+            return (value << shift) >> shift;
+        }
+        // move the unsigned midpoint to zero
+        return value - (1 << (bytesPerSample * 8 - 1));
+    }
+
+
+    // writes one sample from an int produced by encode()
+    private void writeInt(byte[] buffer, int position, int value) {
+        if (!signed) {
+            value ^= 1 << (bytesPerSample * 8 - 1);
+        }
+        if (bigEndian) {
+            for (int i=bytesPerSample-1; i>=0; i--) {
+                buffer[position + i] = (byte)value;
+                value >>= 8;
+            }
+        }
+        else {
+            for (int i=0; i<bytesPerSample; i++) {
+                buffer[position + i] = (byte)value;
+                value >>= 8;
+            }
+        }
+    }
+
+}
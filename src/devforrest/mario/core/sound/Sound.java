@@ -1,8 +1,12 @@
 package devforrest.mario.core.sound;
 
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+
 /**
     The Sound class is a container for sound samples. The sound
     samples are format-agnostic and are stored as a byte array.
+    @see StreamedSound
 */
 public class Sound {
 
@@ -19,9 +23,33 @@ public class Sound {
 
     /**
         Returns this Sound's objects samples as a byte array.
+        Returns null if the samples are not held in memory.
     */
     public byte[] getSamples() {
         return samples;
     }
 
+
+    /**
+        Returns true if this Sound is decoded while it plays
+        instead of being held in memory.
+    */
+    public boolean isStreamed() {
+        return false;
+    }
+
+
+    /**
+        Opens a new stream over this Sound's samples, optionally
+        looping. Returns null if the stream can't be opened.
+    */
+    public InputStream openStream(boolean loop) {
+        if (loop) {
+            return new LoopingByteInputStream(samples);
+        }
+        else {
+            return new ByteArrayInputStream(samples);
+        }
+    }
+
 }
@@ -1,16 +1,37 @@
 package devforrest.mario.core.sound;
 
+import javax.sound.sampled.AudioFormat;
+
 /**
     A abstract class designed to filter sound samples.
     Since SoundFilters may use internal buffering of samples,
     a new SoundFilter object should be created for every sound
     played. However, SoundFilters can be reused after they are
     finished by called the reset() method.
-    <p>Assumes all samples are 16-bit, signed, little-endian
+    <p>Filters work on blocks of normalized float samples
+    (-1.0 to 1.0), interleaved by channel. The conversion from
+    and to the playback AudioFormat is done once, by the
+    FilteredSoundStream, so a filter works the same for any
     format.
     @see FilteredSoundStream
+    @see SampleConverter
 */
-public abstract class SoundFilter{
+public abstract class SoundFilter {
+
+    protected int channels = 1;
+    protected float sampleRate = 22050;
+
+    /**
+        Sets the format of the samples this filter receives and
+        resets the filter. Called by the FilteredSoundStream
+        before any samples are filtered.
+    */
+    public void setFormat(AudioFormat format) {
+        channels = Math.max(1, format.getChannels());
+        sampleRate = format.getSampleRate();
+        reset();
+    }
+
 
     /**
         Resets this SoundFilter. Does nothing by default.
@@ -21,7 +42,7 @@ public abstract class SoundFilter{
 
 
     /**
-        Gets the remaining size, in bytes, that this filter
+        Gets the remaining size, in samples, that this filter
         plays after the sound is finished. An example would
         be an echo that plays longer than it's original sound.
         This method returns 0 by default.
@@ -32,45 +53,19 @@ public abstract class SoundFilter{
 
 
     /**
-        Filters an array of samples. Samples should be in
-        16-bit, signed, little-endian format.
+        Filters an array of samples.
     */
-    public void filter(byte[] samples) {
+    public void filter(float[] samples) {
         filter(samples, 0, samples.length);
     }
 
 
     /**
-        Filters an array of samples. Samples should be in
-        16-bit, signed, little-endian format. This method
-        should be implemented by subclasses.
+        Filters an array of samples. The length is always a whole
+        number of frames. This method should be implemented by
+        subclasses.
     */
     public abstract void filter(
-        byte[] samples, int offset, int length);
-
-
-    /**
-        Convenience method for getting a 16-bit sample from a
-        byte array. Samples should be in 16-bit, signed,
-        little-endian format.
-    */
-    public static short getSample(byte[] buffer, int position) {
-        return (short)(
-            ((buffer[position+1] & 0xff) << 8) |
-            (buffer[position] & 0xff));
-    }
-
-
-    /**
-        Convenience method for setting a 16-bit sample in a
-        byte array. Samples should be in 16-bit, signed,
-        little-endian format.
-    */
-    public static void setSample(byte[] buffer, int position,
-        short sample)
-    {
-        buffer[position] = (byte)(sample & 0xff);
-        buffer[position+1] = (byte)((sample >> 8) & 0xff);
-    }
+        float[] samples, int offset, int length);
 
 }
@@ -0,0 +1,76 @@
+package devforrest.mario.core.sound;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.sound.sampled.AudioFormat;
+
+/**
+    A SoundFilterChain is a SoundFilter that runs a list of
+    SoundFilters, in order, over the same block of samples.
+    Like any SoundFilter, a chain should be created for every
+    sound played.
+*/
+public class SoundFilterChain extends SoundFilter {
+
+    private List<SoundFilter> filters;
+
+    /**
+        Creates a new SoundFilterChain with the specified filters.
+    */
+    public SoundFilterChain(SoundFilter... filters) {
+        this.filters = new ArrayList<SoundFilter>();
+        for (SoundFilter filter : filters) {
+            add(filter);
+        }
+    }
+
+
+    /**
+        Adds a filter to the end of this chain.
+        @return this SoundFilterChain.
+    */
+    public SoundFilterChain add(SoundFilter filter) {
+        if (filter != null) {
+            filters.add(filter);
+        }
+        return this;
+    }
+
+
+    public void setFormat(AudioFormat format) {
+        super.setFormat(format);
+        for (SoundFilter filter : filters) {
+            filter.setFormat(format);
+        }
+    }
+
+
+    public void reset() {
+        for (SoundFilter filter : filters) {
+            filter.reset();
+        }
+    }
+
+
+    /**
+        Gets the remaining size of all the filters. Tails of
+        filters later in the chain are fed by the tails of the
+        earlier ones, so the sizes add up.
+    */
+    public int getRemainingSize() {
+        int remainingSize = 0;
+        for (SoundFilter filter : filters) {
+            remainingSize+=filter.getRemainingSize();
+        }
+        return remainingSize;
+    }
+
+
+    public void filter(float[] samples, int offset, int length) {
+        for (SoundFilter filter : filters) {
+            filter.filter(samples, offset, length);
+        }
+    }
+
+}
@@ -1,6 +1,7 @@
 package devforrest.mario.core.sound;
 
 import java.io.*;
+import java.util.Arrays;
 import javax.sound.sampled.*;
 
 /**
@@ -19,11 +20,17 @@ import javax.sound.sampled.*;
 
 public class SoundManager extends ThreadPool {
 
+    // the number of sounds that may wait for each line
+    private static final int QUEUED_SOUNDS_PER_LINE = 4;
+    // clips longer than this are streamed from disk by default
+    public static final int DEFAULT_STREAMING_THRESHOLD = 5000;
+
     private AudioFormat playbackFormat;
     private ThreadLocal<SourceDataLine> localLine;
     private ThreadLocal<byte[]> localBuffer;
     private Object pausedLock;
-    private boolean paused;
+    private volatile boolean paused;
+    private int streamingThreshold;
 
     /**
         Creates a new SoundManager using the maximum number of
@@ -39,25 +46,45 @@ public class SoundManager extends ThreadPool {
     */
     
     public SoundManager(AudioFormat playbackFormat, int maxSimultaneousSounds) {
-        super(Math.min(maxSimultaneousSounds, getMaxSimultaneousSounds(playbackFormat)));
+        this(playbackFormat, maxSimultaneousSounds, null);
+    }
+
+    /**
+        Creates a new SoundManager with the specified maximum
+        number of simultaneous sounds, whose threads are named
+        after name.
+    */
+    public SoundManager(AudioFormat playbackFormat, int maxSimultaneousSounds, String name) {
+        // a sound that has waited for a free line is stale, so
+        // drop the oldest waiting sound when too many are queued
+        super(name, Math.min(maxSimultaneousSounds, getMaxSimultaneousSounds(playbackFormat)),
+            Math.max(1, maxSimultaneousSounds) * QUEUED_SOUNDS_PER_LINE,
+            SaturationPolicy.DISCARD_OLDEST);
         this.playbackFormat = playbackFormat;
         localLine = new ThreadLocal<SourceDataLine>();
         localBuffer = new ThreadLocal<byte[]>();
         pausedLock = new Object();
-        
-        // notify threads in pool it's ok to start
-        synchronized (this) {
-            notifyAll();
-        }
+        streamingThreshold = DEFAULT_STREAMING_THRESHOLD;
+
+        // the thread locals are ready, open a line for each thread
+        startThreads();
     }
 
     /**
         Gets the maximum number of simultaneous sounds with the
         specified AudioFormat that the default mixer can play.
+        Returns 0 if there is no mixer, for example on a headless
+        machine; sounds are then dropped instead of played.
     */
     public static int getMaxSimultaneousSounds(AudioFormat playbackFormat) {
         DataLine.Info lineInfo = new DataLine.Info( SourceDataLine.class, playbackFormat);
-        Mixer mixer = AudioSystem.getMixer(null);
+        Mixer mixer;
+        try {
+            mixer = AudioSystem.getMixer(null);
+        }
+        catch (IllegalArgumentException ex) {
+            return 0;
+        }
         int maxLines = mixer.getMaxLines(lineInfo);
         if (maxLines == AudioSystem.NOT_SPECIFIED) {
             maxLines = 32;
@@ -74,9 +101,14 @@ public class SoundManager extends ThreadPool {
         setPaused(false);
 
         // close the mixer (stops any running sounds)
-        Mixer mixer = AudioSystem.getMixer(null);
-        if (mixer.isOpen()) {
-            mixer.close();
+        try {
+            Mixer mixer = AudioSystem.getMixer(null);
+            if (mixer.isOpen()) {
+                mixer.close();
+            }
+        }
+        catch (IllegalArgumentException ex) {
+            // no mixer, nothing is playing
         }
     }
 
@@ -113,12 +145,88 @@ public class SoundManager extends ThreadPool {
         return paused;
     }
 
+    /**
+        Sets the length, in milliseconds, above which sounds
+        loaded from the file system are streamed instead of held
+        in memory.
+    */
+    public void setStreamingThreshold(int millis) {
+        this.streamingThreshold = millis;
+    }
+
+    /**
+        Gets the length, in milliseconds, above which sounds
+        loaded from the file system are streamed.
+    */
+    public int getStreamingThreshold() {
+        return streamingThreshold;
+    }
+
+    /**
+        Gets the size, in bytes, of the chunks streamed sounds are
+        decoded in. This is the size of a line's buffer.
+    */
+    public int getStreamingChunkSize() {
+        return getLineBufferSize();
+    }
+
     /**
         Loads a Sound from the file system. Returns null if an
-        error occurs.
+        error occurs. Sounds longer than the streaming threshold
+        are returned as a StreamedSound that is decoded from the
+        file every time it plays. A sound whose length the
+        converted stream doesn't report is read up to the
+        threshold to find out if it is longer.
     */
     public Sound getSound(String filename) {
-        return getSound(getAudioInputStream(filename));
+        AudioInputStream audioStream = getAudioInputStream(filename);
+        if (audioStream == null) {
+            return null;
+        }
+        AudioFormat format = audioStream.getFormat();
+        long frameLength = audioStream.getFrameLength();
+        long thresholdBytes = (long)(streamingThreshold * (double)format.getFrameRate() / 1000) *
+            format.getFrameSize();
+        if (frameLength != AudioSystem.NOT_SPECIFIED) {
+            if (frameLength * format.getFrameSize() <= thresholdBytes) {
+                return getSound(audioStream);
+            }
+            closeQuietly(audioStream);
+            return new StreamedSound(this, filename, frameLength * format.getFrameSize());
+        }
+
+        // unknown length - read one byte past the threshold
+        byte[] samples = new byte[(int)Math.min(thresholdBytes + 1, Integer.MAX_VALUE)];
+        int total = 0;
+        try {
+            int numBytesRead = 0;
+            while (total < samples.length && numBytesRead != -1) {
+                numBytesRead = audioStream.read(samples, total, samples.length - total);
+                if (numBytesRead > 0) {
+                    total += numBytesRead;
+                }
+            }
+        }
+        catch (IOException ex) {
+            ex.printStackTrace();
+            closeQuietly(audioStream);
+            return null;
+        }
+        closeQuietly(audioStream);
+        if (total > thresholdBytes) {
+            return new StreamedSound(this, filename, -1);
+        }
+        return new Sound(Arrays.copyOf(samples, total));
+    }
+
+    // closes a stream that is done with
+    private static void closeQuietly(AudioInputStream audioStream) {
+        try {
+            audioStream.close();
+        }
+        catch (IOException ex) {
+            ex.printStackTrace();
+        }
     }
 
     /**
@@ -138,17 +246,29 @@ public class SoundManager extends ThreadPool {
         }
 
         // get the number of bytes to read
-        int length = (int)(audioStream.getFrameLength() * audioStream.getFormat().getFrameSize());
-
-        // read the entire stream
-        byte[] samples = new byte[length];
-        DataInputStream is = new DataInputStream(audioStream);
+        long frameLength = audioStream.getFrameLength();
+        byte[] samples;
         try {
-            is.readFully(samples);
-            is.close();
+            if (frameLength == AudioSystem.NOT_SPECIFIED) {
+                // unknown length - read until the end of the stream
+                ByteArrayOutputStream out = new ByteArrayOutputStream();
+                byte[] buffer = new byte[getLineBufferSize()];
+                int numBytesRead;
+                while ((numBytesRead = audioStream.read(buffer)) != -1) {
+                    out.write(buffer, 0, numBytesRead);
+                }
+                samples = out.toByteArray();
+            }
+            else {
+                // read the entire stream
+                samples = new byte[(int)(frameLength * audioStream.getFormat().getFrameSize())];
+                new DataInputStream(audioStream).readFully(samples);
+            }
+            audioStream.close();
         }
         catch (IOException ex) {
             ex.printStackTrace();
+            return null;
         }
 
         // return the samples
@@ -210,16 +330,8 @@ public class SoundManager extends ThreadPool {
         looping. This method returns immediately.
     */
     public InputStream play(Sound sound, SoundFilter filter, boolean loop) {
-        InputStream is;
         if (sound != null) {
-            if (loop) {
-                is = new LoopingByteInputStream(sound.getSamples());
-            }
-            else {
-                is = new ByteArrayInputStream(sound.getSamples());
-            }
-
-            return play(is, filter);
+            return play(sound.openStream(loop), filter);
         }
         return null;
     }
@@ -239,30 +351,28 @@ public class SoundManager extends ThreadPool {
     public InputStream play(InputStream is, SoundFilter filter) {
         if (is != null) {
             if (filter != null) {
-            	System.out.println("hellO");
-                is = new FilteredSoundStream(is, filter);
+                is = new FilteredSoundStream(is, playbackFormat, filter);
             }
             runTask(new SoundPlayer(is));
         }
         return is;
     }
 
+    /**
+        Gets the size, in bytes, of each thread's line and buffer.
+        Uses a short, 100ms (1/10th sec) buffer for filters that
+        change in real-time.
+    */
+    protected int getLineBufferSize() {
+        return playbackFormat.getFrameSize() * Math.round(playbackFormat.getSampleRate() / 10);
+    }
+
     /**
         Signals that a PooledThread has started. Creates the
         Thread's line and buffer.
     */
     protected void threadStarted() {
-        // wait for the SoundManager constructor to finish
-        synchronized (this) {
-            try {
-                wait();
-            }
-            catch (InterruptedException ex) { }
-        }
-
-        // use a short, 100ms (1/10th sec) buffer for filters that
-        // change in real-time
-        int bufferSize = playbackFormat.getFrameSize() * Math.round(playbackFormat.getSampleRate() / 10);
+        int bufferSize = getLineBufferSize();
 
         // create, open, and start the line
         SourceDataLine line;
@@ -272,8 +382,8 @@ public class SoundManager extends ThreadPool {
             line.open(playbackFormat, bufferSize);
         }
         catch (LineUnavailableException ex) {
-            // the line is unavailable - signal to end this thread
-            Thread.currentThread().interrupt();
+            // the line is unavailable - this thread's SoundPlayers
+            // will return without playing
             return;
         }
 
@@ -305,8 +415,10 @@ public class SoundManager extends ThreadPool {
         the ThreadLocal variables and plays a sound from an
         InputStream.
         <p>This class only works when called from a PooledThread.
+        The stream is closed when the sound ends, or when the
+        task is dropped without playing.
     */
-    protected class SoundPlayer implements Runnable {
+    protected class SoundPlayer implements Runnable, Closeable {
 
         private InputStream source;
 
@@ -320,6 +432,7 @@ public class SoundManager extends ThreadPool {
             byte[] buffer = (byte[])localBuffer.get();
             if (line == null || buffer == null) {
                 // the line is unavailable
+                close();
                 return;
             }
 
@@ -329,7 +442,7 @@ public class SoundManager extends ThreadPool {
                 while (numBytesRead != -1) {
                     // if paused, wait until unpaused
                     synchronized (pausedLock) {
-                        if (paused) {
+                        while (paused) {
                             try {
                                 pausedLock.wait();
                             }
@@ -348,7 +461,18 @@ public class SoundManager extends ThreadPool {
             catch (IOException ex) {
                 ex.printStackTrace();
             }
+            finally {
+                close();
+            }
+        }
 
+        public void close() {
+            try {
+                source.close();
+            }
+            catch (IOException ex) {
+                // the stream is done with either way
+            }
         }
     }
 
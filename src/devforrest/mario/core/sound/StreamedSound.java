@@ -0,0 +1,174 @@
+package devforrest.mario.core.sound;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+import javax.sound.sampled.AudioInputStream;
+
+/**
+    A StreamedSound is a Sound that is not held in memory. Every
+    time it is played, it is decoded from the file system in small
+    chunks by the thread playing it. The SoundManager returns a
+    StreamedSound for clips that are longer than its streaming
+    threshold.
+    @see SoundManager#setStreamingThreshold(int)
+*/
+public class StreamedSound extends Sound {
+
+    private SoundManager soundManager;
+    private String filename;
+    private long length;
+
+    /**
+        Creates a new StreamedSound for the specified file. The
+        length, in bytes of the playback format, is informational.
+    */
+    StreamedSound(SoundManager soundManager, String filename, long length) {
+        super(null);
+        this.soundManager = soundManager;
+        this.filename = filename;
+        this.length = length;
+    }
+
+
+    /**
+        Gets the name of the file this Sound is decoded from.
+    */
+    public String getFilename() {
+        return filename;
+    }
+
+
+    /**
+        Gets the length of this Sound in bytes of the playback
+        format, or -1 if it is unknown.
+    */
+    public long getLength() {
+        return length;
+    }
+
+
+    public boolean isStreamed() {
+        return true;
+    }
+
+
+    public InputStream openStream(boolean loop) {
+        AudioInputStream source = soundManager.getAudioInputStream(filename);
+        if (source == null) {
+            return null;
+        }
+        return new StreamingSoundStream(source,
+            soundManager.getStreamingChunkSize(), loop);
+    }
+
+
+    /**
+        The StreamingSoundStream decodes its source into a small
+        ring buffer one chunk at a time, whenever a chunk of the
+        buffer is free. Decoding happens on the thread that reads
+        the stream, which is the thread playing the sound. When
+        looping, the file is reopened at the end of the stream.
+    */
+    private class StreamingSoundStream extends InputStream {
+
+        // the number of chunks in the ring buffer
+        private static final int NUM_CHUNKS = 4;
+
+        private AudioInputStream source;
+        private boolean loop;
+        private boolean closed;
+        private boolean endOfSource;
+        private boolean sourceHadData;
+        private byte[] ring;
+        private int chunkSize;
+        private int frameSize;
+        private int readPos;
+        private int available;
+
+        public StreamingSoundStream(AudioInputStream source, int chunkSize, boolean loop) {
+            this.source = source;
+            this.chunkSize = chunkSize;
+            this.loop = loop;
+            frameSize = Math.max(1, source.getFormat().getFrameSize());
+            ring = new byte[chunkSize * NUM_CHUNKS];
+        }
+
+        public int read() throws IOException {
+            if (closed) {
+                return -1;
+            }
+            fill();
+            if (available == 0) {
+                return -1;
+            }
+            int b = ring[readPos] & 0xff;
+            readPos = (readPos + 1) % ring.length;
+            available--;
+            return b;
+        }
+
+        public int read(byte[] buffer, int offset, int length)
+            throws IOException
+        {
+            if (closed) {
+                return -1;
+            }
+            // lines only accept whole frames
+            length-=length % frameSize;
+            if (length == 0) {
+                return 0;
+            }
+            fill();
+            if (available == 0) {
+                return -1;
+            }
+            int totalBytesRead = 0;
+            while (totalBytesRead < length && available > 0) {
+                int n = Math.min(length - totalBytesRead,
+                    Math.min(available, ring.length - readPos));
+                System.arraycopy(ring, readPos, buffer, offset + totalBytesRead, n);
+                readPos = (readPos + n) % ring.length;
+                available-=n;
+                totalBytesRead+=n;
+                fill();
+            }
+            return totalBytesRead;
+        }
+
+        // decodes chunks until the ring buffer is full or the source ends
+        private void fill() throws IOException {
+            while (!endOfSource && ring.length - available >= chunkSize) {
+                int writePos = (readPos + available) % ring.length;
+                int n = Math.min(chunkSize, ring.length - writePos);
+                int numBytesRead = source.read(ring, writePos, n);
+                if (numBytesRead > 0) {
+                    available+=numBytesRead;
+                    sourceHadData = true;
+                }
+                else if (numBytesRead == -1) {
+                    source.close();
+                    // a file with no samples would be reopened forever
+                    source = (loop && sourceHadData) ?
+                        soundManager.getAudioInputStream(filename) : null;
+                    sourceHadData = false;
+                    if (source == null) {
+                        endOfSource = true;
+                    }
+                }
+                else {
+                    // nothing decoded this time; try again on the next read
+                    return;
+                }
+            }
+        }
+
+        public void close() throws IOException {
+            closed = true;
+            if (source != null) {
+                source.close();
+            }
+        }
+    }
+
+}
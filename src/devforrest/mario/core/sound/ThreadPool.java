@@ -1,35 +1,114 @@
 package devforrest.mario.core.sound;
 
-import java.util.LinkedList;
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
     A thread pool is a group of a limited number of threads that
     are used to execute tasks.
-    
-    Forrest's comments: still a little unclear about how this whole thing works,
-    basically my understanding is that it is a group of threads that run through a
-    linked list of tasks sent to the object, the threads execute each task as the threads
-    finish up with other tasks. 
+    <p>Tasks wait in a bounded queue. When the queue is full, the
+    pool's SaturationPolicy decides what happens to the new task.
+    Tasks that are dropped without running are passed to
+    taskDropped(), which closes the Closeable ones.
+    All threads are daemon threads, so a pool never keeps the
+    game from exiting.
+    <p>Threads are created when the first tasks are run, or all
+    at once by startThreads(). Subclasses that set up per-thread
+    state in threadStarted() should call startThreads() at the
+    end of their constructor, once that state is ready.
 */
-public class ThreadPool extends ThreadGroup {
+public class ThreadPool {
 
-    private boolean isAlive; // tracks if this ThreadPool is still running
-    private LinkedList<Runnable> taskQueue;
-    private int threadID; // give a number to each thread in a ThreadPool
-    private static int threadPoolID = 0; // give a number to seperate ThreadPool
     /**
-        Creates a new ThreadPool.
+        What to do with a task when the queue is full.
+    */
+    public enum SaturationPolicy {
+        /** Throw an IllegalStateException from runTask(). */
+        ABORT,
+        /** Silently drop the new task. */
+        DISCARD,
+        /** Drop the oldest waiting task and queue the new one. */
+        DISCARD_OLDEST,
+        /** Run the new task on the thread that called runTask(). */
+        CALLER_RUNS
+    }
+
+    public static final int DEFAULT_QUEUE_CAPACITY = 256;
+
+    private static final AtomicInteger threadPoolID = new AtomicInteger(); // give a number to seperate ThreadPool
+
+    private final String name;
+    private final AtomicInteger threadID = new AtomicInteger(); // give a number to each thread in a ThreadPool
+    private final ThreadPoolExecutor executor;
+    private final SaturationPolicy policy;
+    private final int queueCapacity;
+    private volatile boolean isAlive; // tracks if this ThreadPool is still running
+
+    // metrics
+    private final AtomicLong completedTasks = new AtomicLong();
+    private final AtomicLong rejectedTasks = new AtomicLong();
+    private final AtomicLong totalQueueNanos = new AtomicLong();
+    private final AtomicLong maxQueueNanos = new AtomicLong();
+    private final AtomicLong totalRunNanos = new AtomicLong();
+
+    /**
+        Creates a new ThreadPool with the default queue capacity.
+        When the queue is full, runTask() runs the task on the
+        calling thread, so no task is refused.
         @param numThreads The number of threads in the pool.
     */
     public ThreadPool(int numThreads) {
-        super("ThreadPool-" + (threadPoolID++));
-        this.setDaemon(true); // ??
+        this(numThreads, DEFAULT_QUEUE_CAPACITY, SaturationPolicy.CALLER_RUNS);
+    }
 
+    /**
+        Creates a new ThreadPool named "ThreadPool-" and a number.
+        @param numThreads The number of threads in the pool. A pool
+        with no threads rejects every task through its policy.
+        @param queueCapacity The number of tasks that can wait for
+        a thread.
+        @param policy What to do with a task when the queue is full.
+    */
+    public ThreadPool(int numThreads, int queueCapacity, SaturationPolicy policy) {
+        this(null, numThreads, queueCapacity, policy);
+    }
+
+    /**
+        Creates a new ThreadPool with the specified name, which
+        its threads are named after. A null name gives the pool
+        the default name.
+    */
+    public ThreadPool(String name, int numThreads, int queueCapacity, SaturationPolicy policy) {
+        this.name = (name != null) ? name : "ThreadPool-" + threadPoolID.getAndIncrement();
+        this.policy = policy;
+        this.queueCapacity = Math.max(1, queueCapacity);
         isAlive = true;
 
-        taskQueue = new LinkedList<Runnable>();
-        for (int i=0; i< numThreads; i++) {
-            new PooledThread().start();
+        if (numThreads > 0) {
+            executor = new ThreadPoolExecutor(numThreads, numThreads,
+                0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<Runnable>(this.queueCapacity),
+                new PooledThreadFactory(), new SaturationHandler());
+        }
+        else {
+            executor = null;
+        }
+    }
+
+    /**
+        Starts all of this pool's threads now instead of when the
+        first tasks are run.
+    */
+    protected void startThreads() {
+        if (executor != null) {
+            executor.prestartAllCoreThreads();
         }
     }
 
@@ -40,44 +119,37 @@ public class ThreadPool extends ThreadGroup {
         <p>Tasks start execution in the order they are received.
         @param task The task to run. If null, no action is taken.
         @throws IllegalStateException if this ThreadPool is
-        already closed.
+        already closed, or if it is saturated and its policy
+        is ABORT.
     */
-    public synchronized void runTask(Runnable task) {
+    public void runTask(Runnable task) {
         if (!isAlive) {
-            throw new IllegalStateException();
+            throw new IllegalStateException(name + " is closed");
         }
-        if (task != null) {
-            taskQueue.add(task);
-            notify();
+        if (task == null) {
+            return;
         }
-
-    }
-
-    protected synchronized Runnable getTask()
-        throws InterruptedException
-    {
-    	// if there are no tasks to run, just wait
-        while (taskQueue.size() == 0) {
-            if (!isAlive) {
-                return null;
-            }
-            wait();
+        TimedTask timedTask = new TimedTask(task);
+        if (executor == null) {
+            saturated(timedTask, null);
+        }
+        else {
+            executor.execute(timedTask);
         }
-        return (Runnable)taskQueue.removeFirst();
     }
 
-
     /**
         Closes this ThreadPool and returns immediately. All
         threads are stopped, and any waiting tasks are not
-        executed. Once a ThreadPool is closed, no more tasks can
-        be run on this ThreadPool.
+        executed but dropped, see taskDropped(). Once a ThreadPool
+        is closed, no more tasks can be run on this ThreadPool.
     */
-    public synchronized void close() {
-        if (isAlive) {
-            isAlive = false;
-            taskQueue.clear();
-            interrupt();
+    public void close() {
+        isAlive = false;
+        if (executor != null) {
+            for (Runnable task : executor.shutdownNow()) {
+                dropped(task);
+            }
         }
     }
 
@@ -86,80 +158,234 @@ public class ThreadPool extends ThreadGroup {
         to finish. Any waiting tasks are executed.
     */
     public void join() {
-        // notify all waiting threads that this ThreadPool is no longer alive
-        synchronized (this) {
-            isAlive = false;
-            notifyAll();
+        isAlive = false;
+        if (executor == null) {
+            return;
         }
-
-        // wait for all threads to finish
-        Thread[] threads = new Thread[activeCount()];
-        int count = enumerate(threads);
-        for (int i=0; i<count; i++) {
+        executor.shutdown();
+        boolean interrupted = false;
+        while (!executor.isTerminated()) {
             try {
-                threads[i].join();
+                executor.awaitTermination(1, TimeUnit.SECONDS);
             }
-            catch (InterruptedException ex) { }
+            catch (InterruptedException ex) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
         }
     }
-    
-	/**
-	 * Signals that a PooledThread has started. This method does nothing by
-	 * default; subclasses should override to do any thread-specific startup
-	 * tasks.
-	 */
-	protected void threadStarted() {
-		// do nothing
-	}
 
-	/**
-	 * Signals that a PooledThread has stopped. This method does nothing by
-	 * default; subclasses should override to do any thread-specific cleanup
-	 * tasks.
-	 */
-	protected void threadStopped() {
-		// do nothing
-	}
+    /**
+        Gets the name of this ThreadPool. Its threads are named
+        after it.
+    */
+    public String getName() {
+        return name;
+    }
+
+    /**
+        Gets the number of tasks waiting for a thread.
+    */
+    public int getQueueDepth() {
+        return (executor == null) ? 0 : executor.getQueue().size();
+    }
+
+    /**
+        Gets the number of tasks that can wait for a thread.
+    */
+    public int getQueueCapacity() {
+        return queueCapacity;
+    }
+
+    /**
+        Gets the number of threads currently running a task.
+    */
+    public int getActiveCount() {
+        return (executor == null) ? 0 : executor.getActiveCount();
+    }
+
+    /**
+        Gets the number of tasks that have finished running.
+    */
+    public long getCompletedTaskCount() {
+        return completedTasks.get();
+    }
+
+    /**
+        Gets the number of tasks dropped, refused or run on the
+        caller because the queue was full.
+    */
+    public long getRejectedTaskCount() {
+        return rejectedTasks.get();
+    }
+
+    /**
+        Gets the average time, in nanoseconds, a finished task
+        waited in the queue before it started.
+    */
+    public long getAverageQueueLatencyNanos() {
+        long completed = completedTasks.get();
+        return (completed == 0) ? 0 : totalQueueNanos.get() / completed;
+    }
+
+    /**
+        Gets the longest time, in nanoseconds, a task waited in
+        the queue before it started.
+    */
+    public long getMaxQueueLatencyNanos() {
+        return maxQueueNanos.get();
+    }
+
+    /**
+        Gets the average time, in nanoseconds, a task took to run.
+    */
+    public long getAverageTaskTimeNanos() {
+        long completed = completedTasks.get();
+        return (completed == 0) ? 0 : totalRunNanos.get() / completed;
+    }
+
+    /**
+        Signals that a PooledThread has started. This method does
+        nothing by default; subclasses should override to do any
+        thread-specific startup tasks.
+    */
+    protected void threadStarted() {
+        // do nothing
+    }
 
     /**
-        A PooledThread is a Thread in a ThreadPool group, designed
-        to run tasks (Runnables).
+        Signals that a PooledThread has stopped. This method does
+        nothing by default; subclasses should override to do any
+        thread-specific cleanup tasks.
     */
-    private class PooledThread extends Thread {
+    protected void threadStopped() {
+        // do nothing
+    }
+
+    /**
+        Signals that a task was dropped without running, because
+        the queue was full or the pool was closed. Closes the task
+        if it is Closeable, so the resources it holds, such as a
+        sound stream, are released. Subclasses can override to
+        clean up other tasks.
+    */
+    protected void taskDropped(Runnable task) {
+        if (task instanceof Closeable) {
+            try {
+                ((Closeable)task).close();
+            }
+            catch (IOException ex) {
+                // nothing more can be done with a dropped task
+            }
+        }
+    }
+
+    // unwraps a task queued by runTask() and signals it was dropped
+    private void dropped(Runnable task) {
+        if (task instanceof TimedTask) {
+            task = ((TimedTask)task).task;
+        }
+        if (task != null) {
+            taskDropped(task);
+        }
+    }
+
+    // applies the SaturationPolicy to a task that didn't fit in the queue
+    private void saturated(Runnable task, ThreadPoolExecutor e) {
+        if (e != null && e.isShutdown()) {
+            throw new IllegalStateException(name + " is closed");
+        }
+        rejectedTasks.incrementAndGet();
+        switch (policy) {
+        case ABORT:
+            throw new IllegalStateException(name + " is saturated");
+        case DISCARD_OLDEST:
+            if (e != null) {
+                dropped(e.getQueue().poll());
+                e.execute(task);
+            }
+            else {
+                dropped(task);
+            }
+            break;
+        case CALLER_RUNS:
+            task.run();
+            break;
+        case DISCARD:
+        default:
+            dropped(task);
+            break;
+        }
+    }
 
-        public PooledThread() {
-            super(ThreadPool.this,
-                "PooledThread-" + (threadID++));
+    private void recordQueueLatency(long nanos) {
+        totalQueueNanos.addAndGet(nanos);
+        long max = maxQueueNanos.get();
+        while (nanos > max && !maxQueueNanos.compareAndSet(max, nanos)) {
+            max = maxQueueNanos.get();
         }
+    }
+
+    /**
+        A task wrapper that records how long the task waited and
+        ran, and eats any exceptions it throws.
+    */
+    private class TimedTask implements Runnable {
 
+        private final Runnable task;
+        private final long queuedTime;
+
+        public TimedTask(Runnable task) {
+            this.task = task;
+            this.queuedTime = System.nanoTime();
+        }
 
         public void run() {
-        	ThreadPool.this.threadStarted();
-            while (!isInterrupted()) {
+            long startTime = System.nanoTime();
+            recordQueueLatency(startTime - queuedTime);
+            try {
+                task.run();
+            }
+            catch (Throwable t) {
+                Thread thread = Thread.currentThread();
+                thread.getUncaughtExceptionHandler().uncaughtException(thread, t);
+            }
+            finally {
+                totalRunNanos.addAndGet(System.nanoTime() - startTime);
+                completedTasks.incrementAndGet();
+            }
+        }
+    }
 
-                // get a task to run
-                Runnable task = null;
-                try {
-                    task = getTask();
-                }
-                catch (InterruptedException ex) { }
+    /**
+        Creates the daemon threads of this pool, signaling
+        threadStarted() and threadStopped() around each one's life.
+    */
+    private class PooledThreadFactory implements ThreadFactory {
 
-                // if getTask() returned null or was interrupted,
-                // close this thread by returning.
-                // if null, there are no tasks to run, so kill this thread.
-                if (task == null) {
-                    return;
+        public Thread newThread(final Runnable worker) {
+            Thread thread = new Thread(new Runnable() {
+                public void run() {
+                    threadStarted();
+                    try {
+                        worker.run();
+                    }
+                    finally {
+                        threadStopped();
+                    }
                 }
+            }, name + "-PooledThread-" + threadID.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
 
-                // run the task, and eat any exceptions it throws
-                try {
-                    task.run();
-                }
-                catch (Throwable t) {
-                    uncaughtException(this, t);
-                }
-            }
-            ThreadPool.this.threadStopped();
+    private class SaturationHandler implements RejectedExecutionHandler {
+
+        public void rejectedExecution(Runnable task, ThreadPoolExecutor e) {
+            saturated(task, e);
         }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,60 @@
+package devforrest.mario.core.sound;
+
+/**
+    The VolumeFilter class scales the samples of a sound. The
+    volume can be changed while the sound plays; the change is
+    ramped over one block to avoid clicks.
+*/
+public class VolumeFilter extends SoundFilter {
+
+    private volatile float volume;
+    private float lastVolume;
+
+    /**
+        Creates a new VolumeFilter. A volume of 1 leaves the sound
+        unchanged, 0 silences it.
+    */
+    public VolumeFilter(float volume) {
+        this.volume = volume;
+        this.lastVolume = volume;
+    }
+
+
+    /**
+        Sets the volume. Can be called from any thread.
+    */
+    public void setVolume(float volume) {
+        this.volume = volume;
+    }
+
+
+    public float getVolume() {
+        return volume;
+    }
+
+
+    public void reset() {
+        lastVolume = volume;
+    }
+
+
+    public void filter(float[] samples, int offset, int length) {
+        float target = volume;
+        int numFrames = length / channels;
+        if (numFrames == 0) {
+            return;
+        }
+        float step = (target - lastVolume) / numFrames;
+        float gain = lastVolume;
+        int i = offset;
+        for (int frame=0; frame<numFrames; frame++) {
+            gain+=step;
+            for (int c=0; c<channels; c++) {
+                samples[i]*=gain;
+                i++;
+            }
+        }
+        lastVolume = target;
+    }
+
+}
@@ -1,18 +1,29 @@
 package devforrest.mario.core.sound.specific;
-import java.util.Random;
-
 import javax.sound.sampled.AudioFormat;
 
 import devforrest.mario.core.sound.Sound;
 import devforrest.mario.core.sound.SoundManager;
+import devforrest.mario.util.GameRandom;
 
 
 public class MarioSoundManager10512Hz extends SoundManager {
 	
 	private Sound hurt1, hurt2, yahoo1, yahoo2;
+	private GameRandom r; // Picks the voice clips. Kept apart from the map's generator since it doesn't change the game.
 
 	public MarioSoundManager10512Hz(AudioFormat format) {
-		super(format);
+		this(format, getMaxSimultaneousSounds(format), System.nanoTime());
+	}
+	
+	// Use a maxSimultaneousSounds of 0 to load the sounds without ever playing them.
+	public MarioSoundManager10512Hz(AudioFormat format, int maxSimultaneousSounds, long seed) {
+		this(format, maxSimultaneousSounds, seed, null);
+	}
+	
+	// Names the threads after poolName, see World.newPoolName().
+	public MarioSoundManager10512Hz(AudioFormat format, int maxSimultaneousSounds, long seed, String poolName) {
+		super(format, maxSimultaneousSounds, poolName);
+		r = new GameRandom(seed);
  		hurt1 = getSound("sounds/mario_ooh.wav");
  		hurt2 = getSound("sounds/mario_oh.wav");
  		yahoo1 = getSound("sounds/mario_waha.wav");
@@ -20,7 +31,6 @@ public class MarioSoundManager10512Hz extends SoundManager {
 	}
 	
 	public void playHurt() {
-		Random r = new Random();
 		int rNum = r.nextInt(2);
 		if(rNum == 0) {
 			play(hurt1);
@@ -30,7 +40,6 @@ public class MarioSoundManager10512Hz extends SoundManager {
 	}
 	
 	public void playCelebrate() {
-		Random r = new Random();
 		int rNum = r.nextInt(2);
 		if(rNum == 0) {
 			play(yahoo1);
@@ -10,7 +10,17 @@ public class MarioSoundManager22050Hz extends SoundManager {
 	private Sound bump, kick, coin, jump, pause, itemSprout, bonusPoints, healthUp, healthDown;
 
 	public MarioSoundManager22050Hz(AudioFormat format) {
-		super(format);
+		this(format, getMaxSimultaneousSounds(format));
+	}
+	
+	// Use a maxSimultaneousSounds of 0 to load the sounds without ever playing them.
+	public MarioSoundManager22050Hz(AudioFormat format, int maxSimultaneousSounds) {
+		this(format, maxSimultaneousSounds, null);
+	}
+	
+	// Names the threads after poolName, see World.newPoolName().
+	public MarioSoundManager22050Hz(AudioFormat format, int maxSimultaneousSounds, String poolName) {
+		super(format, maxSimultaneousSounds, poolName);
  		bump = getSound("sounds/bump.wav");
  		kick = getSound("sounds/kick.wav");
  		coin = getSound("sounds/coin.wav");
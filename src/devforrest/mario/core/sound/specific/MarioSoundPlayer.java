@@ -0,0 +1,41 @@
+package devforrest.mario.core.sound.specific;
+
+import devforrest.mario.core.event.GameEvents;
+
+/**
+ * Plays the sounds of the game. It listens to the GameEvents of a World, so the sounds of a 
+ * tick are played once the tick is over, each at most once. A game without a MarioSoundPlayer
+ * is silent and loads no sounds.
+ */
+
+public class MarioSoundPlayer implements GameEvents.Listener {
+	
+	private MarioSoundManager22050Hz effects;
+	private MarioSoundManager10512Hz voice;
+	
+	/**
+	 * Creates a MarioSoundPlayer that plays the effects with one sound manager and Mario's
+	 * voice with the other.
+	 */
+	public MarioSoundPlayer(MarioSoundManager22050Hz effects, MarioSoundManager10512Hz voice) {
+		this.effects = effects;
+		this.voice = voice;
+	}
+	
+	public void event(int type, int a, int b) {
+		if(type != GameEvents.SOUND) { return; }
+		switch(a) {
+			case GameEvents.BUMP: effects.playBump(); break;
+			case GameEvents.KICK: effects.playKick(); break;
+			case GameEvents.COIN: effects.playCoin(); break;
+			case GameEvents.JUMP: effects.playJump(); break;
+			case GameEvents.ITEM_SPROUT: effects.playItemSprout(); break;
+			case GameEvents.BONUS_POINTS: effects.playBonusPoints(); break;
+			case GameEvents.HEALTH_UP: effects.playHealthUp(); break;
+			case GameEvents.HEALTH_DOWN: effects.playHealthDown(); break;
+			case GameEvents.HURT: voice.playHurt(); break;
+			case GameEvents.CELEBRATE: voice.playCelebrate(); break;
+			default: break;
+		}
+	}
+}
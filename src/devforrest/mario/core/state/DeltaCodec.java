@@ -0,0 +1,148 @@
+package devforrest.mario.core.state;
+
+import java.nio.ByteBuffer;
+
+/**
+ * DeltaCodec encodes the difference between two snapshots, A and B, as the run-length
+ * encoded XOR of their bytes. Consecutive snapshots of a game differ in a few bytes, so 
+ * a delta is usually a small fraction of a snapshot.
+ * 
+ * A delta works both ways, since XOR is its own inverse: applied to A it gives B, and 
+ * applied to B it gives A. A history of deltas can be walked back from the newest
+ * snapshot as well as forward from the oldest.
+ * 
+ * Format: varint length of A, varint length of B, then tokens up to the longer length.
+ * A token is a varint count of unchanged bytes, a varint count of changed bytes and the 
+ * XOR of those bytes. The shorter snapshot counts as padded with zeros.
+ */
+
+public final class DeltaCodec {
+	
+	// unchanged bytes shorter than this are kept inside a run of changed bytes
+	private static final int MIN_ZERO_RUN = 4;
+	
+	private DeltaCodec() { }
+	
+	/**
+	 * @return the largest possible size of the delta of two snapshots no longer than length.
+	 */
+	public static int maxEncodedLength(int length) {
+		return 10 + length + (length / MIN_ZERO_RUN + 1) * 10;
+	}
+	
+	/**
+	 * Writes the delta between the first aLen bytes of a and the first bLen bytes of b at 
+	 * the position of out, which must have maxEncodedLength() bytes remaining.
+	 * @return the size of the delta in bytes.
+	 */
+	public static int encode(byte[] a, int aLen, byte[] b, int bLen, ByteBuffer out) {
+		int start = out.position();
+		int n = Math.max(aLen, bLen);
+		int common = Math.min(aLen, bLen);
+		writeVarInt(out, aLen);
+		writeVarInt(out, bLen);
+		int i = 0;
+		while(i < n) {
+			int zeroStart = i;
+			while(i < common && a[i] == b[i]) { // most bytes are unchanged, skip them quickly
+				i++;
+			}
+			while(i < n && xor(a, aLen, b, bLen, i) == 0) {
+				i++;
+			}
+			int zeros = i - zeroStart;
+			
+			// extend the changed run until MIN_ZERO_RUN unchanged bytes or the end
+			int literalStart = i;
+			int literalEnd;
+			int run = 0;
+			while(true) {
+				if(i == n) {
+					literalEnd = n - run;
+					break;
+				}
+				if(xor(a, aLen, b, bLen, i) == 0) {
+					run++;
+					if(run == MIN_ZERO_RUN) {
+						literalEnd = i - MIN_ZERO_RUN + 1;
+						break;
+					}
+				} else {
+					run = 0;
+				}
+				i++;
+			}
+			i = literalEnd;
+			
+			writeVarInt(out, zeros);
+			writeVarInt(out, literalEnd - literalStart);
+			for(int j = literalStart; j < literalEnd; j++) {
+				out.put((byte) xor(a, aLen, b, bLen, j));
+			}
+		}
+		return out.position() - start;
+	}
+	
+	/**
+	 * Applies the delta at the position of delta to the first baseLen bytes of base and
+	 * writes the result to out, which can be base itself. baseLen must be the length of 
+	 * one of the two snapshots of the delta, and out must fit the other.
+	 * @return the length of the result.
+	 * @throws IllegalArgumentException if base isn't one of the snapshots of the delta.
+	 */
+	public static int apply(byte[] base, int baseLen, ByteBuffer delta, byte[] out) {
+		int aLen = readVarInt(delta);
+		int bLen = readVarInt(delta);
+		int outLen;
+		if(baseLen == aLen) {
+			outLen = bLen;
+		} else if(baseLen == bLen) {
+			outLen = aLen;
+		} else {
+			throw new IllegalArgumentException("Delta of " + aLen + " and " + bLen + " bytes applied to " + baseLen);
+		}
+		int n = Math.max(aLen, bLen);
+		int i = 0;
+		while(i < n) {
+			int zeros = readVarInt(delta);
+			int end = Math.min(i + zeros, outLen);
+			for(int j = i; j < end; j++) {
+				out[j] = (j < baseLen) ? base[j] : 0;
+			}
+			i += zeros;
+			int literals = readVarInt(delta);
+			for(int j = i; j < i + literals; j++) {
+				byte x = delta.get();
+				if(j < outLen) {
+					out[j] = (byte) (((j < baseLen) ? base[j] : 0) ^ x);
+				}
+			}
+			i += literals;
+		}
+		return outLen;
+	}
+	
+	private static int xor(byte[] a, int aLen, byte[] b, int bLen, int i) {
+		return ((i < aLen) ? a[i] : 0) ^ ((i < bLen) ? b[i] : 0);
+	}
+	
+	private static void writeVarInt(ByteBuffer out, int value) {
+		while((value & ~0x7F) != 0) {
+			out.put((byte) ((value & 0x7F) | 0x80));
+			value >>>= 7;
+		}
+		out.put((byte) value);
+	}
+	
+	private static int readVarInt(ByteBuffer in) {
+		int value = 0;
+		for(int shift = 0; shift < 32; shift += 7) {
+			int b = in.get();
+			value |= (b & 0x7F) << shift;
+			if((b & 0x80) == 0) {
+				return value;
+			}
+		}
+		throw new IllegalArgumentException("Corrupt delta: varint too long");
+	}
+}
@@ -0,0 +1,185 @@
+package devforrest.mario.core.state;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * A RewindBuffer keeps the recent history of a Stateful object so it can be played backwards.
+ * 
+ * Only the newest snapshot is kept whole. Every older tick is a DeltaCodec delta to the tick 
+ * after it, stored in a fixed size ring buffer outside of the Java heap. When the ring is full
+ * the oldest deltas are dropped, so the history is as long as fits in the buffer and memory
+ * never grows. A delta of a tick of the game is a few hundred bytes, so a few MB hold minutes.
+ * 
+ * A frame in the ring is [int length][delta][int length]. The length at the end lets stepBack() 
+ * find the newest frame, the one at the start lets record() drop the oldest.
+ */
+
+public class RewindBuffer {
+	
+	public static final int DEFAULT_CAPACITY = 4 * 1024 * 1024;
+	private static final int FRAME_OVERHEAD = 8;
+	
+	private final ByteBuffer ring;
+	private final int capacity;
+	private int head; // where the next frame is written
+	private int tail; // where the oldest frame starts
+	private int used; // bytes of the ring in use
+	private int frames; // number of frames in the ring
+	
+	private final StateBuffer capture = new StateBuffer();
+	private byte[] current = new byte[0]; // the newest snapshot, sized for the largest one recorded
+	private int currentLength = -1; // -1 until the first snapshot
+	private ByteBuffer delta = ByteBuffer.allocate(0);
+	
+	public RewindBuffer() {
+		this(DEFAULT_CAPACITY);
+	}
+	
+	/**
+	 * Creates a RewindBuffer that stores its history in capacity bytes.
+	 */
+	public RewindBuffer(int capacity) {
+		this.capacity = capacity;
+		ring = ByteBuffer.allocateDirect(capacity);
+	}
+	
+	/**
+	 * Forgets the history. The next call to record() starts a new one.
+	 */
+	public void clear() {
+		head = 0;
+		tail = 0;
+		used = 0;
+		frames = 0;
+		currentLength = -1;
+	}
+	
+	/**
+	 * Takes a snapshot of state and adds the tick before it to the history. Must be called 
+	 * once after every tick, and after clear() whenever the state jumps, as on a load.
+	 */
+	public void record(Stateful state) {
+		int size = capture.capture(state);
+		byte[] next = capture.array();
+		if(currentLength >= 0) {
+			int maxLength = DeltaCodec.maxEncodedLength(Math.max(size, currentLength));
+			if(delta.capacity() < maxLength) {
+				delta = ByteBuffer.allocate(maxLength);
+			}
+			delta.clear();
+			int length = DeltaCodec.encode(current, currentLength, next, size, delta);
+			if(length + FRAME_OVERHEAD > capacity) {
+				clear(); // a single tick doesn't fit, start over from this one
+			} else {
+				while(used + length + FRAME_OVERHEAD > capacity) {
+					dropOldest();
+				}
+				putInt(head, length);
+				put(head + 4, delta.array(), length);
+				putInt(head + 4 + length, length);
+				head = (head + length + FRAME_OVERHEAD) % capacity;
+				used += length + FRAME_OVERHEAD;
+				frames++;
+			}
+		}
+		if(current.length < size) {
+			current = new byte[Math.max(size, current.length * 2)];
+		}
+		System.arraycopy(next, 0, current, 0, size);
+		currentLength = size;
+	}
+	
+	/**
+	 * Puts state back one tick and removes that tick from the history.
+	 * @return false if there is no history left, in which case state is unchanged.
+	 * @throws IOException if state can't read the snapshot.
+	 */
+	public boolean stepBack(Stateful state) throws IOException {
+		if(frames == 0) {
+			return false;
+		}
+		int end = (head - 4 + capacity) % capacity;
+		int length = getInt(end);
+		int start = (end - length - 4 + capacity) % capacity;
+		if(delta.capacity() < length) {
+			delta = ByteBuffer.allocate(length);
+		}
+		delta.clear();
+		get(start + 4, delta.array(), length);
+		delta.limit(length);
+		
+		// Every older snapshot was once the newest, so it fits in current.
+		currentLength = DeltaCodec.apply(current, currentLength, delta, current);
+		head = start;
+		used -= length + FRAME_OVERHEAD;
+		frames--;
+		state.readState(new DataInputStream(new ByteArrayInputStream(current, 0, currentLength)));
+		return true;
+	}
+	
+	/**
+	 * @return the number of ticks stepBack() can go back.
+	 */
+	public int getFrames() {
+		return frames;
+	}
+	
+	/**
+	 * @return the number of bytes of the ring in use.
+	 */
+	public int getBytesUsed() {
+		return used;
+	}
+	
+	public int getCapacity() {
+		return capacity;
+	}
+	
+	private void dropOldest() {
+		int length = getInt(tail);
+		tail = (tail + length + FRAME_OVERHEAD) % capacity;
+		used -= length + FRAME_OVERHEAD;
+		frames--;
+	}
+	
+	// the ring is addressed modulo capacity, a frame may wrap around its end
+	
+	private void put(int position, byte[] src, int length) {
+		position %= capacity;
+		int first = Math.min(length, capacity - position);
+		ring.position(position);
+		ring.put(src, 0, first);
+		if(first < length) {
+			ring.position(0);
+			ring.put(src, first, length - first);
+		}
+	}
+	
+	private void get(int position, byte[] dst, int length) {
+		position %= capacity;
+		int first = Math.min(length, capacity - position);
+		ring.position(position);
+		ring.get(dst, 0, first);
+		if(first < length) {
+			ring.position(0);
+			ring.get(dst, first, length - first);
+		}
+	}
+	
+	private void putInt(int position, int value) {
+		for(int i = 0; i < 4; i++) {
+			ring.put((position + i) % capacity, (byte) (value >>> (24 - i * 8)));
+		}
+	}
+	
+	private int getInt(int position) {
+		int value = 0;
+		for(int i = 0; i < 4; i++) {
+			value = (value << 8) | (ring.get((position + i) % capacity) & 0xFF);
+		}
+		return value;
+	}
+}
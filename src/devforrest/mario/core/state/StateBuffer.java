@@ -0,0 +1,109 @@
+package devforrest.mario.core.state;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+
+/**
+ * A StateBuffer holds one snapshot of a Stateful object. The buffer is reused by every
+ * capture, so taking a snapshot every tick allocates nothing once the buffer has grown
+ * to the size of the state.
+ */
+
+public class StateBuffer {
+	
+	private final Output bytes = new Output();
+	private final DataOutputStream out = new DataOutputStream(bytes);
+	
+	/**
+	 * Replaces the contents of this buffer with the state of the object.
+	 * @return the size of the snapshot in bytes.
+	 */
+	public int capture(Stateful state) {
+		bytes.reset();
+		try {
+			state.writeState(out);
+			out.flush();
+		} catch (IOException e) {
+			// the Output never throws
+			throw new IllegalStateException(e);
+		}
+		return bytes.size();
+	}
+	
+	/**
+	 * Restores the object to the state held by this buffer.
+	 * @throws IOException if the buffer doesn't hold a snapshot the object can read.
+	 */
+	public void restore(Stateful state) throws IOException {
+		state.readState(new DataInputStream(new ByteArrayInputStream(bytes.array(), 0, bytes.size())));
+	}
+	
+	/**
+	 * Replaces the contents of this buffer with length bytes of data.
+	 */
+	public void set(byte[] data, int length) {
+		bytes.reset();
+		bytes.write(data, 0, length);
+	}
+	
+	/**
+	 * @return the array backing this buffer. Only the first size() bytes are the snapshot, and 
+	 * the array is replaced when the buffer grows.
+	 */
+	public byte[] array() {
+		return bytes.array();
+	}
+	
+	/**
+	 * @return the size of the snapshot in bytes.
+	 */
+	public int size() {
+		return bytes.size();
+	}
+	
+	/**
+	 * @return a copy of the snapshot.
+	 */
+	public byte[] toByteArray() {
+		return Arrays.copyOf(bytes.array(), bytes.size());
+	}
+	
+	// Like a ByteArrayOutputStream, without its locking, which costs more than the writes
+	// since a DataOutputStream writes an int as four single bytes.
+	private static class Output extends OutputStream {
+		
+		private byte[] buf = new byte[4096];
+		private int count;
+		
+		public void write(int b) {
+			if(count == buf.length) {
+				buf = Arrays.copyOf(buf, buf.length * 2);
+			}
+			buf[count++] = (byte) b;
+		}
+		
+		public void write(byte[] b, int off, int len) {
+			if(count + len > buf.length) {
+				buf = Arrays.copyOf(buf, Math.max(buf.length * 2, count + len));
+			}
+			System.arraycopy(b, off, buf, count, len);
+			count += len;
+		}
+		
+		public void reset() {
+			count = 0;
+		}
+		
+		public int size() {
+			return count;
+		}
+		
+		public byte[] array() {
+			return buf;
+		}
+	}
+}
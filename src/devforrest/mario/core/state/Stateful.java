@@ -0,0 +1,25 @@
+package devforrest.mario.core.state;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * A Stateful object can write its mutable state to a snapshot and read it back. 
+ * readState() must read exactly what writeState() wrote, in the same order. Constant
+ * state, like images and positions of plain tiles, is not written; a snapshot is only 
+ * restored into a game loaded from the same map.
+ */
+
+public interface Stateful {
+	
+	/**
+	 * Writes the mutable state of this object.
+	 */
+	public void writeState(DataOutput out) throws IOException;
+	
+	/**
+	 * Replaces the mutable state of this object with the state written by writeState().
+	 */
+	public void readState(DataInput in) throws IOException;
+}
@@ -0,0 +1,117 @@
+package devforrest.mario.core.tile;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import devforrest.mario.core.GameRenderer;
+import devforrest.mario.objects.base.Creature;
+
+/**
+ * A CreatureIndex buckets the creatures of a TileMap by the tile column they are in, so the
+ * creatures near the camera can be found by looking at a few columns instead of at every
+ * creature of the map. Creatures left or right of the map are kept in its first or last column.
+ * 
+ * Creatures that are always relevant are also kept in a list of their own, since they have to 
+ * be updated wherever they are.
+ * 
+ * The index doesn't see creatures move: whoever moves a creature must call move() with it
+ * before the next query. Creatures are looked up by their id.
+ */
+
+public class CreatureIndex {
+	
+	private List<List<Creature>> columns;
+	private List<Creature> alwaysRelevant;
+	private int[] columnOf; // the column of each creature id, -1 if it isn't in the index
+	
+	/**
+	 * Creates an empty index of a map that is width tiles wide.
+	 */
+	public CreatureIndex(int width) {
+		columns = new ArrayList<List<Creature>>(width);
+		for(int i = 0; i < width; i++) {
+			columns.add(new ArrayList<Creature>(2));
+		}
+		alwaysRelevant = new ArrayList<Creature>();
+		columnOf = new int[64];
+		Arrays.fill(columnOf, -1);
+	}
+	
+	/**
+	 * Adds c, which must have an id, to the column it is in.
+	 */
+	public void add(Creature c) {
+		int id = c.getId();
+		if(id >= columnOf.length) {
+			int length = columnOf.length;
+			columnOf = Arrays.copyOf(columnOf, Math.max(id + 1, length * 2));
+			Arrays.fill(columnOf, length, columnOf.length, -1);
+		}
+		int column = columnOf(c);
+		columnOf[id] = column;
+		columns.get(column).add(c);
+		if(c.isAlwaysRelevant()) { alwaysRelevant.add(c); }
+	}
+	
+	/**
+	 * Removes c from this index. Does nothing if it isn't in it.
+	 */
+	public void remove(Creature c) {
+		int id = c.getId();
+		if(id >= columnOf.length || columnOf[id] < 0) { return; }
+		columns.get(columnOf[id]).remove(c);
+		columnOf[id] = -1;
+		if(c.isAlwaysRelevant()) { alwaysRelevant.remove(c); }
+	}
+	
+	/**
+	 * Moves c to the column it is in now, if that has changed since it was added or last moved.
+	 */
+	public void move(Creature c) {
+		int id = c.getId();
+		if(id >= columnOf.length || columnOf[id] < 0) { return; }
+		int column = columnOf(c);
+		if(column != columnOf[id]) {
+			columns.get(columnOf[id]).remove(c);
+			columns.get(column).add(c);
+			columnOf[id] = column;
+		}
+	}
+	
+	/**
+	 * Empties this index.
+	 */
+	public void clear() {
+		for(List<Creature> column : columns) {
+			column.clear();
+		}
+		alwaysRelevant.clear();
+		Arrays.fill(columnOf, -1);
+	}
+	
+	/**
+	 * Adds the creatures of the columns firstColumn to lastColumn to out, in no particular order.
+	 * Columns outside of the map are ignored.
+	 */
+	public void collect(int firstColumn, int lastColumn, List<Creature> out) {
+		int first = Math.max(0, firstColumn);
+		int last = Math.min(columns.size() - 1, lastColumn);
+		for(int i = first; i <= last; i++) {
+			out.addAll(columns.get(i));
+		}
+	}
+	
+	/**
+	 * @return the creatures that are always relevant. Don't modify the list.
+	 */
+	public List<Creature> alwaysRelevant() {
+		return alwaysRelevant;
+	}
+	
+	// the column of the pixel c is drawn from, clamped to the map
+	private int columnOf(Creature c) {
+		int column = GameRenderer.pixelsToTiles(Math.round(c.getX()));
+		return Math.max(0, Math.min(columns.size() - 1, column));
+	}
+}
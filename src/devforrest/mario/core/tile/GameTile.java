@@ -2,6 +2,9 @@ package devforrest.mario.core.tile;
 
 
 import java.awt.image.BufferedImage;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 import java.util.LinkedList;
 import java.util.List;
 
@@ -14,8 +17,9 @@ public class GameTile extends Tile {
 	
 	// fields
 	private boolean isCollidable = true;
-	private boolean isSloped = false;
+	private SlopeType slope; // null if this tile is a box
 	private List<Creature> collidingCreatures;
+	boolean isListedActive; // whether this tile is in the active tiles of its TileMap
 	
 	/**
 	 * Constructs a new GameTile at the pixel (x,y) position with the Animation anim
@@ -39,6 +43,25 @@ public class GameTile extends Tile {
 	 */
 	public void doAction() { }
 	
+	/**
+	 * Override to say when this GameTile has an effect, like a bump or a turn, that update() 
+	 * has to play. A TileMap only updates its tiles while they are active.
+	 * @return false by default.
+	 */
+	public boolean isActive() {
+		return false;
+	}
+	
+	public void writeState(DataOutput out) throws IOException {
+		super.writeState(out);
+		out.writeBoolean(isCollidable);
+	}
+	
+	public void readState(DataInput in) throws IOException {
+		super.readState(in);
+		isCollidable = in.readBoolean();
+	}
+	
 	/**
 	 * @return true if this GameTile is collidable, else false.
 	 */
@@ -54,11 +77,18 @@ public class GameTile extends Tile {
 	}
 	
 	public boolean isSloped() {
-		return isSloped;
+		return slope != null;
+	}
+	
+	/**
+	 * @return the shape of this GameTile if it is sloped, else null.
+	 */
+	public SlopeType getSlope() {
+		return slope;
 	}
 	
-	public void setIsSloped(boolean isSloped) {
-		this.isSloped = isSloped;
+	public void setSlope(SlopeType slope) {
+		this.slope = slope;
 	}
 
 	/**
@@ -0,0 +1,148 @@
+package devforrest.mario.core.tile;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import devforrest.mario.objects.creatures.Platform;
+
+/**
+ * A PlatformIndex keeps the platforms of a TileMap sorted by their left edge, so the platforms
+ * a sprite can touch are found with a binary search instead of by looking at every platform.
+ * A platform spans its left edge to its left edge plus its width, and no platform is wider
+ * than the widest one added, so the platforms over a span of x start at most that width 
+ * left of it.
+ * 
+ * Platforms that move must call move() with themselves. They only move a little each tick, 
+ * so a move only swaps a platform with a neighbour or two. Platforms are looked up by their id.
+ */
+
+public class PlatformIndex {
+	
+	private List<Platform> sorted;
+	private int[] slotOf; // the place of each platform id in sorted, -1 if it isn't in the index
+	private float maxWidth;
+	
+	public PlatformIndex() {
+		sorted = new ArrayList<Platform>();
+		slotOf = new int[16];
+		Arrays.fill(slotOf, -1);
+	}
+	
+	/**
+	 * Adds p, which must have an id, to this index.
+	 */
+	public void add(Platform p) {
+		int id = p.getId();
+		if(id >= slotOf.length) {
+			int length = slotOf.length;
+			slotOf = Arrays.copyOf(slotOf, Math.max(id + 1, length * 2));
+			Arrays.fill(slotOf, length, slotOf.length, -1);
+		}
+		maxWidth = Math.max(maxWidth, p.getWidth());
+		sorted.add(p);
+		slotOf[id] = sorted.size() - 1;
+		move(p);
+	}
+	
+	/**
+	 * Removes p from this index. Does nothing if it isn't in it.
+	 */
+	public void remove(Platform p) {
+		int id = p.getId();
+		if(id >= slotOf.length || slotOf[id] < 0) { return; }
+		int slot = slotOf[id];
+		sorted.remove(slot);
+		slotOf[id] = -1;
+		for(int i = slot; i < sorted.size(); i++) {
+			slotOf[sorted.get(i).getId()] = i;
+		}
+	}
+	
+	/**
+	 * Puts p back in order after it moved.
+	 */
+	public void move(Platform p) {
+		int id = p.getId();
+		if(id >= slotOf.length || slotOf[id] < 0) { return; }
+		int slot = slotOf[id];
+		while(slot > 0 && isBefore(p, sorted.get(slot - 1))) {
+			swap(slot - 1, slot);
+			slot--;
+		}
+		while(slot < sorted.size() - 1 && isBefore(sorted.get(slot + 1), p)) {
+			swap(slot, slot + 1);
+			slot++;
+		}
+	}
+	
+	/**
+	 * Empties this index.
+	 */
+	public void clear() {
+		sorted.clear();
+		Arrays.fill(slotOf, -1);
+		maxWidth = 0;
+	}
+	
+	/**
+	 * Adds the platforms that overlap the pixels from left to right in x to out, from left 
+	 * to right.
+	 */
+	public void collect(float left, float right, List<Platform> out) {
+		for(int i = first(left); i < sorted.size(); i++) {
+			Platform p = sorted.get(i);
+			if(p.getX() > right) { break; }
+			if(p.getX() + p.getWidth() >= left) { out.add(p); }
+		}
+	}
+	
+	/**
+	 * @return the place of the first platform that may reach left. The platforms that overlap
+	 * a span of x from left on are among the ones from there on, up to the first one that 
+	 * starts right of the span. Used with get() to look at them without a list.
+	 */
+	public int first(float left) {
+		float from = left - maxWidth;
+		int low = 0;
+		int high = sorted.size();
+		while(low < high) {
+			int mid = (low + high) >>> 1;
+			if(sorted.get(mid).getX() < from) {
+				low = mid + 1;
+			} else {
+				high = mid;
+			}
+		}
+		return low;
+	}
+	
+	/**
+	 * @return the platform at place i, from left to right.
+	 */
+	public Platform get(int i) {
+		return sorted.get(i);
+	}
+	
+	/**
+	 * @return the number of platforms in this index.
+	 */
+	public int size() {
+		return sorted.size();
+	}
+	
+	// Platforms at the same x are kept in the order of their ids, so the order doesn't depend
+	// on the order they were added in.
+	private static boolean isBefore(Platform a, Platform b) {
+		return a.getX() < b.getX() || (a.getX() == b.getX() && a.getId() < b.getId());
+	}
+	
+	private void swap(int i, int j) {
+		Platform a = sorted.get(i);
+		Platform b = sorted.get(j);
+		sorted.set(i, b);
+		sorted.set(j, a);
+		slotOf[b.getId()] = i;
+		slotOf[a.getId()] = j;
+	}
+}
@@ -0,0 +1,71 @@
+package devforrest.mario.core.tile;
+
+/**
+ * The shapes a sloped tile can have. Each one carries a table of the height of its solid part 
+ * at every pixel column of the tile, so the surface under or over a sprite is found with a 
+ * lookup instead of line math.
+ * 
+ * Floor slopes are solid from the bottom of the tile up, ceiling slopes from the top down. 
+ * UP and DOWN tell which way the surface goes from left to right. A 22.5 degree slope takes 
+ * two tiles, a LOW one and a HIGH one.
+ * 
+ * Every table is monotonic, so the highest part of a slope under a span of columns is always 
+ * at one of the two ends of the span.
+ */
+
+public enum SlopeType {
+	
+	UP_45(false, 1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12, 13, 14, 15, 16),
+	DOWN_45(false, 16, 15, 14, 13, 12, 11, 10, 9, 8, 7, 6, 5, 4, 3, 2, 1),
+	UP_22_LOW(false, 1, 1, 2, 2, 3, 3, 4, 4, 5, 5, 6, 6, 7, 7, 8, 8),
+	UP_22_HIGH(false, 9, 9, 10, 10, 11, 11, 12, 12, 13, 13, 14, 14, 15, 15, 16, 16),
+	DOWN_22_HIGH(false, 16, 16, 15, 15, 14, 14, 13, 13, 12, 12, 11, 11, 10, 10, 9, 9),
+	DOWN_22_LOW(false, 8, 8, 7, 7, 6, 6, 5, 5, 4, 4, 3, 3, 2, 2, 1, 1),
+	CEILING_UP_45(true, 16, 15, 14, 13, 12, 11, 10, 9, 8, 7, 6, 5, 4, 3, 2, 1),
+	CEILING_DOWN_45(true, 1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12, 13, 14, 15, 16);
+	
+	public static final int SIZE = 16; // the width and height of a tile, in pixels
+	
+	private final boolean isCeiling;
+	private final byte[] heights; // pixels of solid from the floor or ceiling side, per column
+	
+	private SlopeType(boolean isCeiling, int... heights) {
+		this.isCeiling = isCeiling;
+		this.heights = new byte[SIZE];
+		for(int i = 0; i < SIZE; i++) {
+			this.heights[i] = (byte) heights[i];
+		}
+	}
+	
+	/**
+	 * @return true if this slope hangs from the top of its tile.
+	 */
+	public boolean isCeiling() {
+		return isCeiling;
+	}
+	
+	/**
+	 * @return the height of the solid part of the tile at column localX, 0 to 15.
+	 */
+	public int height(int localX) {
+		return heights[localX];
+	}
+	
+	/**
+	 * @return the greatest height of the solid part of the tile over the columns from
+	 * firstX to lastX, both in 0 to 15.
+	 */
+	public int maxHeight(int firstX, int lastX) {
+		return Math.max(heights[firstX], heights[lastX]);
+	}
+	
+	/**
+	 * @return the y of the surface over the columns from firstX to lastX that a sprite 
+	 * touches, relative to the top of the tile: the highest point of a floor or the lowest 
+	 * point of a ceiling.
+	 */
+	public int surfaceY(int firstX, int lastX) {
+		int height = maxHeight(firstX, lastX);
+		return isCeiling ? height : SIZE - height;
+	}
+}
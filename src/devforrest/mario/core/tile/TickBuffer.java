@@ -0,0 +1,95 @@
+package devforrest.mario.core.tile;
+
+import java.util.Arrays;
+
+import devforrest.mario.core.event.GameEvents;
+import devforrest.mario.objects.base.Creature;
+import devforrest.mario.objects.creatures.Platform;
+
+/**
+ * A TickBuffer holds the changes a group of creatures makes during a tick to what other
+ * groups share: the events they publish, the tiles they land on and the platforms they get 
+ * on and off. Groups that each have a buffer can be updated on separate threads, and their 
+ * changes applied afterwards in a fixed order, so the game doesn't depend on the threads.
+ * 
+ * A creature uses the buffer given to it with Creature.setTickBuffer(), and publishes to 
+ * events() while it does.
+ */
+
+public class TickBuffer {
+	
+	private final GameEvents events;
+	private GameTile[] tiles; // the tiles landed on, and by whom
+	private Creature[] landed;
+	private int landings;
+	private Creature[] riders; // the riders that got off from and on to
+	private Platform[] from;
+	private Platform[] to;
+	private int rides;
+	
+	public TickBuffer() {
+		events = new GameEvents();
+		tiles = new GameTile[16];
+		landed = new Creature[16];
+		riders = new Creature[4];
+		from = new Platform[4];
+		to = new Platform[4];
+	}
+	
+	/**
+	 * @return the events the creatures using this buffer publish to.
+	 */
+	public GameEvents events() {
+		return events;
+	}
+	
+	/**
+	 * Adds c to the colliding creatures of tile when this buffer is applied.
+	 */
+	public void land(GameTile tile, Creature c) {
+		if(landings == tiles.length) {
+			tiles = Arrays.copyOf(tiles, landings * 2);
+			landed = Arrays.copyOf(landed, landings * 2);
+		}
+		tiles[landings] = tile;
+		landed[landings] = c;
+		landings++;
+	}
+	
+	/**
+	 * Makes c a rider of to instead of from when this buffer is applied. Either can be null.
+	 */
+	public void ride(Creature c, Platform from, Platform to) {
+		if(rides == riders.length) {
+			riders = Arrays.copyOf(riders, rides * 2);
+			this.from = Arrays.copyOf(this.from, rides * 2);
+			this.to = Arrays.copyOf(this.to, rides * 2);
+		}
+		riders[rides] = c;
+		this.from[rides] = from;
+		this.to[rides] = to;
+		rides++;
+	}
+	
+	/**
+	 * Makes the changes held here to map, in the order they were made, publishes the events 
+	 * to shared and empties this buffer.
+	 */
+	public void applyTo(TileMap map, GameEvents shared) {
+		for(int i = 0; i < landings; i++) {
+			map.land(tiles[i], landed[i]);
+			tiles[i] = null;
+			landed[i] = null;
+		}
+		landings = 0;
+		for(int i = 0; i < rides; i++) {
+			if(from[i] != null) { from[i].removeRider(riders[i]); }
+			if(to[i] != null) { to[i].addRider(riders[i]); }
+			riders[i] = null;
+			from[i] = null;
+			to[i] = null;
+		}
+		rides = 0;
+		events.drainTo(shared);
+	}
+}
@@ -24,6 +24,7 @@ public class Tile extends Animatible {
 		this.pixelX = pixelX;
 		this.pixelY = pixelY;
 		this.img = img;
+		if(anim != null) { setAnimations(anim); }
 		setAnimation(anim);
 	}
 	
@@ -43,6 +44,14 @@ public class Tile extends Animatible {
 		return (currentAnimation() == null) ? img : currentAnimation().getImage();
 	}
 	
+	public int getTileX() {
+		return tileX;
+	}
+	
+	public int getTileY() {
+		return tileY;
+	}
+	
 	public int getPixelX() {
 		return pixelX;
 	}
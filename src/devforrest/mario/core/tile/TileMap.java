@@ -1,44 +1,80 @@
 package devforrest.mario.core.tile;
 
 import java.awt.image.BufferedImage;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 
+import devforrest.mario.core.World;
+import devforrest.mario.core.state.Stateful;
 import devforrest.mario.objects.base.Creature;
+import devforrest.mario.objects.base.CreatureFactory;
+import devforrest.mario.objects.base.CreatureStore;
 import devforrest.mario.objects.creatures.Platform;
 import devforrest.mario.objects.mario.Mario;
 import devforrest.mario.objects.tiles.SlopedTile;
+import devforrest.mario.util.GameRandom;
 
 /**
  * The TileMap class contains all data for a tile-based map. 
+ * 
+ * Its state is everything that changes while the map is played: the creatures, the animated
+ * tiles, the player and the random number generator. The layout of the tiles never changes,
+ * so a state can only be read back into a TileMap loaded from the same map file.
  */
 
-public class TileMap {
+public class TileMap implements Stateful {
 	
 	// fields
 	private GameTile[][] tiles; 
-	private List<Platform> platforms; // List of Platforms on the current screen.
+	private PlatformIndex platformIndex; // The platforms by x.
 	private List<Creature> creatures; // Starts containing every Creature and decreases as they die.
 	private List<Creature> relevantCreatures; // List of relevant Creatures to the current frame.
 											  // This is a subset of creatures.
 	private List<Creature> creaturesToAdd; // List of Creatures to be added inbetween frames.
+	private CreatureIndex creatureIndex; // The creatures by tile column.
+	private CreatureStore creatureStore; // The position, speed and flags of the creatures.
 	private List<GameTile> animatedTiles;
+	private List<GameTile> activeTiles; // The animated tiles that have something to update.
+	private List<GameTile> landedTiles; // The tiles creatures landed on since the last clearLandings().
 	private List<SlopedTile> slopedTiles;
 	private Mario player; 
+	private GameRandom random; // The source of all randomness in the game state of this map.
+	private int nextCreatureId; // The id given to the next Creature added to this map.
+	private World world; // The tuning and shared objects of the game this map is in.
 	
 	/**
 	 * Constructs a new TileMap with the specified width and height (in number of tiles)
-	 * of the map.
+	 * of the map, whose random numbers are the sequence of seed, in a World of its own.
 	 */
-	public TileMap(int width, int height) {
+	public TileMap(int width, int height, long seed) {
+		this(width, height, seed, new World());
+	}
+	
+	/**
+	 * Constructs a new TileMap with the specified width and height (in number of tiles)
+	 * of the map, whose random numbers are the sequence of seed, in the given World.
+	 */
+	public TileMap(int width, int height, long seed, World world) {
+		this.world = world;
+		random = new GameRandom(seed);
 		tiles = new GameTile[width][height];
 		creatures = new LinkedList<Creature>();
 		relevantCreatures = new ArrayList<Creature>();
 		creaturesToAdd = new ArrayList<Creature>();
-		platforms = new ArrayList<Platform>();
+		creatureIndex = new CreatureIndex(width);
+		creatureStore = new CreatureStore();
+		platformIndex = new PlatformIndex();
 		animatedTiles = new ArrayList<GameTile>();
+		activeTiles = new ArrayList<GameTile>();
+		landedTiles = new ArrayList<GameTile>();
 		slopedTiles = new ArrayList<SlopedTile>();
+		nextCreatureId = 1;
 	}
 	
 	public GameTile[][] getTiles() {
@@ -119,14 +155,31 @@ public class TileMap {
 	 */
 	public void setPlayer(Mario player) {
 		this.player = player;
+		player.setEvents(world.getEvents());
 	}
 	
 	
 	/**
-	 * @return a List containing every Platform in this map.
+	 * @return the random number generator of this map. Everything that changes the game
+	 * state must use it, so that a game can be replayed from its seed.
+	 */
+	public GameRandom random() {
+		return random;
+	}
+	
+	/**
+	 * @return the World this map is played in.
+	 */
+	public World getWorld() {
+		return world;
+	}
+	
+	/**
+	 * @return the index of the Platforms of this map by x. A platform that moves has to be 
+	 * moved in the index as well, see PlatformIndex.move().
 	 */
-	public List<Platform> platforms() {
-		return platforms;
+	public PlatformIndex platformIndex() {
+		return platformIndex;
 	}
 	
 	/**
@@ -136,6 +189,35 @@ public class TileMap {
 		return creatures;
 	}
 	
+	/**
+	 * @return the store that holds the position, speed and flags of the creatures of this map. 
+	 * Creatures that die are removed from it with CreatureStore.removeDead().
+	 */
+	public CreatureStore creatureStore() {
+		return creatureStore;
+	}
+	
+	/**
+	 * Adds c to the creatures of this map, to its store and to its index, and gives it the 
+	 * next creature id.
+	 */
+	public void addCreature(Creature c) {
+		c.setId(nextCreatureId++);
+		c.setEvents(world.getEvents());
+		creatures.add(c);
+		creatureStore.add(c);
+		creatureIndex.add(c);
+		if(c instanceof Platform) { platformIndex.add((Platform) c); }
+	}
+	
+	/**
+	 * @return the index of the creatures of this map by tile column. A creature that moves 
+	 * has to be moved in the index as well, see CreatureIndex.move().
+	 */
+	public CreatureIndex creatureIndex() {
+		return creatureIndex;
+	}
+	
 	/**
 	 * @return a List containing Creatures to add to this map after the next game update.
 	 */
@@ -150,6 +232,62 @@ public class TileMap {
 		return animatedTiles;
 	}
 	
+	/**
+	 * @return a List containing the animated tiles that are active, in the order they became so.
+	 */
+	public List<GameTile> activeTiles() {
+		return activeTiles;
+	}
+	
+	/**
+	 * Adds tile to the active tiles if it is active and isn't already. Called after 
+	 * something was done to a tile.
+	 * @modifies activeTiles()
+	 */
+	public void activate(GameTile tile) {
+		if(!tile.isListedActive && tile.isActive()) {
+			tile.isListedActive = true;
+			activeTiles.add(tile);
+		}
+	}
+	
+	/**
+	 * Updates the active tiles by time milliseconds, and drops the ones that are no longer 
+	 * active. Idle tiles aren't looked at: their animations follow the World's clock.
+	 * @modifies activeTiles()
+	 */
+	public void updateActiveTiles(int time) {
+		int kept = 0;
+		for(int i = 0; i < activeTiles.size(); i++) {
+			GameTile tile = activeTiles.get(i);
+			tile.update(time);
+			if(tile.isActive()) {
+				activeTiles.set(kept++, tile);
+			} else {
+				tile.isListedActive = false;
+			}
+		}
+		activeTiles.subList(kept, activeTiles.size()).clear();
+	}
+	
+	/**
+	 * Adds c to the creatures colliding with tile until the next clearLandings().
+	 */
+	public void land(GameTile tile, Creature c) {
+		if(tile.collidingCreatures().isEmpty()) { landedTiles.add(tile); }
+		tile.collidingCreatures().add(c);
+	}
+	
+	/**
+	 * Clears the colliding creatures of every tile creatures landed on since the last call.
+	 */
+	public void clearLandings() {
+		for(GameTile tile : landedTiles) {
+			tile.collidingCreatures().clear();
+		}
+		landedTiles.clear();
+	}
+	
 	/**
 	 * @return a List containing every SlopedTile in this map.
 	 */
@@ -166,4 +304,168 @@ public class TileMap {
 	public List<Creature> relevantCreatures() {
 		return relevantCreatures;
 	}
-}
+	
+	/**
+	 * Writes the state of this map. Creatures are written with their type and id, and the
+	 * lists that share them (relevant creatures, creatures colliding with a tile and the 
+	 * platforms of the creatures and the player) are written as ids. The riders of the 
+	 * platforms follow from the platforms of the creatures and the player.
+	 */
+	public void writeState(DataOutput out) throws IOException {
+		out.writeLong(random.getState());
+		out.writeInt(nextCreatureId);
+		world.writeState(out);
+		
+		out.writeInt(creatures.size());
+		for(Creature c : creatures) {
+			out.writeByte(CreatureFactory.typeOf(c));
+			out.writeInt(c.getId());
+			c.writeState(out);
+			out.writeInt((c.getPlatform() == null) ? 0 : c.getPlatform().getId());
+		}
+		out.writeInt(creaturesToAdd.size());
+		for(Creature c : creaturesToAdd) {
+			out.writeByte(CreatureFactory.typeOf(c));
+			c.writeState(out);
+		}
+		writeIds(out, relevantCreatures);
+		
+		out.writeInt(animatedTiles.size());
+		for(GameTile tile : animatedTiles) {
+			tile.writeState(out);
+		}
+		// Tiles keep the creatures that landed on them until they are cleared. Creatures that
+		// died since are no longer in this map and are left out.
+		for(GameTile tile : landedTiles) {
+			int count = 0;
+			for(Creature c : tile.collidingCreatures()) {
+				if(isSaved(c)) { count++; }
+			}
+			if(count > 0) {
+				out.writeShort(tile.getTileX());
+				out.writeShort(tile.getTileY());
+				out.writeInt(count);
+				for(Creature c : tile.collidingCreatures()) {
+					if(isSaved(c)) { out.writeInt(c.getId()); }
+				}
+			}
+		}
+		out.writeShort(-1);
+		
+		player.writeState(out);
+		out.writeInt((player.getPlatform() == null) ? 0 : player.getPlatform().getId());
+	}
+	
+	/**
+	 * Reads a state written by writeState() of a TileMap of the same map file. Creatures
+	 * that still exist are reused, the others are created again.
+	 * @throws IOException if the state doesn't match this map.
+	 */
+	public void readState(DataInput in) throws IOException {
+		long randomState = in.readLong();
+		nextCreatureId = in.readInt();
+		world.readState(in);
+		world.getEvents().clear();
+		
+		Map<Integer, Creature> existing = new HashMap<Integer, Creature>();
+		for(Creature c : creatures) {
+			existing.put(c.getId(), c);
+		}
+		Map<Integer, Creature> byId = new HashMap<Integer, Creature>();
+		creatures.clear();
+		creatureStore.clear(); // the reused creatures read their state back before they are added
+		creatureIndex.clear();
+		platformIndex.clear();
+		int count = in.readInt();
+		int[] platformIds = new int[count];
+		for(int i = 0; i < count; i++) {
+			int type = in.readByte();
+			int id = in.readInt();
+			Creature c = existing.get(id);
+			if(c == null || CreatureFactory.typeOf(c) != type) {
+				c = CreatureFactory.create(type, 0, 0, this);
+				c.setId(id);
+			}
+			c.readState(in);
+			platformIds[i] = in.readInt();
+			creatures.add(c);
+			creatureStore.add(c);
+			creatureIndex.add(c);
+			if(c instanceof Platform) { 
+				platformIndex.add((Platform) c);
+				((Platform) c).riders().clear();
+			}
+			byId.put(id, c);
+		}
+		int n = 0;
+		for(Creature c : creatures) {
+			int id = platformIds[n++];
+			c.setPlatform((id == 0) ? null : (Platform) find(byId, id));
+			if(c.getPlatform() != null) { c.getPlatform().addRider(c); }
+		}
+		creaturesToAdd.clear();
+		count = in.readInt();
+		for(int i = 0; i < count; i++) {
+			Creature c = CreatureFactory.create(in.readByte(), 0, 0, this);
+			c.readState(in);
+			creaturesToAdd.add(c);
+		}
+		relevantCreatures.clear();
+		for(int id : readIds(in)) {
+			relevantCreatures.add(find(byId, id));
+		}
+		
+		if(in.readInt() != animatedTiles.size()) {
+			throw new IOException("The state is of another map");
+		}
+		for(GameTile tile : activeTiles) {
+			tile.isListedActive = false;
+		}
+		activeTiles.clear();
+		for(GameTile tile : animatedTiles) {
+			tile.readState(in);
+			activate(tile);
+		}
+		clearLandings();
+		for(int x = in.readShort(); x >= 0; x = in.readShort()) {
+			GameTile tile = getTile(x, in.readShort());
+			for(int id : readIds(in)) {
+				land(tile, find(byId, id));
+			}
+		}
+		
+		player.readState(in);
+		int platformId = in.readInt();
+		player.setPlatform((platformId == 0) ? null : (Platform) find(byId, platformId));
+		if(player.getPlatform() != null) { player.getPlatform().addRider(player); }
+		
+		// Creating creatures can draw random numbers, so the generator is restored last.
+		random.setState(randomState);
+	}
+	
+	// Whether c is still in this map, so it can be written as an id.
+	private static boolean isSaved(Creature c) {
+		return c.isAlive() && c.getId() != 0;
+	}
+	
+	private static void writeIds(DataOutput out, List<? extends Creature> list) throws IOException {
+		out.writeInt(list.size());
+		for(Creature c : list) {
+			out.writeInt(c.getId());
+		}
+	}
+	
+	private static int[] readIds(DataInput in) throws IOException {
+		int[] ids = new int[in.readInt()];
+		for(int i = 0; i < ids.length; i++) {
+			ids[i] = in.readInt();
+		}
+		return ids;
+	}
+	
+	private static Creature find(Map<Integer, Creature> byId, int id) throws IOException {
+		Creature c = byId.get(id);
+		if(c == null) { throw new IOException("The state refers to a missing creature " + id); }
+		return c;
+	}
+}
\ No newline at end of file
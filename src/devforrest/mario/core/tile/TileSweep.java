@@ -0,0 +1,316 @@
+package devforrest.mario.core.tile;
+
+import java.util.Arrays;
+
+import devforrest.mario.core.GameRenderer;
+
+/**
+ * TileSweep moves a box through the collidable tiles of a TileMap without ever passing 
+ * through one, however far it moves in one step.
+ * 
+ * A move is swept: the time of impact with every tile the box could reach is computed, and 
+ * the box stops at the first one, flush against the face it hit. What is left of the move
+ * then slides along that face, and is swept again, so a diagonal move into a corner or along
+ * the ground is resolved in one call, in X and Y together. A box that starts inside tiles, 
+ * because it was spawned or grew there, is first pushed out the shortest way.
+ * 
+ * Sloped tiles are not boxes. Once the box has moved, it is stood on the highest point of the
+ * floor slopes under it, or hung from the lowest point of the ceiling slopes over it, from the
+ * height tables of their SlopeTypes.
+ * 
+ * The result of the last move is kept in the TileSweep, which is meant to be reused, so a 
+ * move allocates nothing. A TileSweep may only be used by one thread at a time.
+ */
+
+public class TileSweep {
+	
+	// Contact flags: the sides of the box that ended up against a tile.
+	public static final int LEFT = 1;
+	public static final int RIGHT = 2;
+	public static final int FLOOR = 4; // the bottom of the box
+	public static final int CEILING = 8; // the top of the box
+	
+	private static final int TILE_SIZE = GameRenderer.tilesToPixels(1);
+	private static final int MAX_SLIDES = 3;
+	private static final int MAX_PUSHES = 4;
+	private static final int STEP_HEIGHT = 2; // a tile side this close below the top of a tile is stepped onto
+	
+	private float x;
+	private float y;
+	private int contacts;
+	private int wallTileX;
+	private int wallTileY;
+	private int[] touched = new int[8]; // x, y pairs of the tiles of the last floor or ceiling contact
+	private int touchedCount;
+	private boolean onSlope;
+	
+	// the first hit of the last sweep()
+	private float hitTime;
+	private int hitTileX;
+	private int hitTileY;
+	private boolean hitX; // the hit was on a vertical face
+	
+	/**
+	 * Moves the box at (x, y) of the given size by (moveX, moveY) pixels through the tiles of 
+	 * map. The results are read with the getters.
+	 * @return the contact flags of the move.
+	 */
+	public int move(TileMap map, float x, float y, int width, int height, float moveX, float moveY) {
+		this.x = x;
+		this.y = y;
+		contacts = 0;
+		touchedCount = 0;
+		onSlope = false;
+		pushOut(map, width, height);
+		float startY = this.y;
+		boolean falling = moveY >= 0;
+		
+		for(int slide = 0; slide < MAX_SLIDES && (moveX != 0 || moveY != 0); slide++) {
+			if(!sweep(map, width, height, moveX, moveY)) {
+				this.x += moveX;
+				this.y += moveY;
+				break;
+			}
+			this.x += moveX * hitTime;
+			this.y += moveY * hitTime;
+			if(hitX) {
+				if(moveX > 0) {
+					this.x = GameRenderer.tilesToPixels(hitTileX) - width;
+					contacts |= RIGHT;
+				} else {
+					this.x = GameRenderer.tilesToPixels(hitTileX + 1);
+					contacts |= LEFT;
+				}
+				wallTileX = hitTileX;
+				wallTileY = hitTileY;
+				moveX = 0;
+				moveY = moveY * (1 - hitTime);
+			} else {
+				if(moveY > 0) {
+					this.y = GameRenderer.tilesToPixels(hitTileY) - height;
+					contacts |= FLOOR;
+				} else {
+					this.y = GameRenderer.tilesToPixels(hitTileY + 1);
+					contacts |= CEILING;
+				}
+				collectTouched(map, width, hitTileY);
+				moveX = moveX * (1 - hitTime);
+				moveY = 0;
+			}
+		}
+		followSlopes(map, width, height, startY, falling);
+		return contacts;
+	}
+	
+	public float getX() { return x; }
+	
+	public float getY() { return y; }
+	
+	/**
+	 * @return the contact flags of the last move.
+	 */
+	public int getContacts() { return contacts; }
+	
+	/**
+	 * @return the column of the tile the last move hit with the LEFT or RIGHT side of the box.
+	 */
+	public int getWallTileX() { return wallTileX; }
+	
+	public int getWallTileY() { return wallTileY; }
+	
+	/**
+	 * @return the number of tiles the box ended up standing on, or touching with its top.
+	 */
+	public int getTouchedCount() { return touchedCount; }
+	
+	public int getTouchedX(int i) { return touched[2 * i]; }
+	
+	public int getTouchedY(int i) { return touched[2 * i + 1]; }
+	
+	/**
+	 * @return true if the last move left the box standing on a sloped tile.
+	 */
+	public boolean isOnSlope() { return onSlope; }
+	
+	// Finds the first tile the box hits while it moves by (moveX, moveY), if any.
+	private boolean sweep(TileMap map, int width, int height, float moveX, float moveY) {
+		int firstX = GameRenderer.pixelsToTiles((int) Math.floor(Math.min(x, x + moveX)));
+		int lastX = GameRenderer.pixelsToTiles((int) Math.ceil(Math.max(x, x + moveX) + width) - 1);
+		int firstY = GameRenderer.pixelsToTiles((int) Math.floor(Math.min(y, y + moveY)));
+		int lastY = GameRenderer.pixelsToTiles((int) Math.ceil(Math.max(y, y + moveY) + height) - 1);
+		
+		hitTime = 2;
+		for(int tx = firstX; tx <= lastX; tx++) {
+			for(int ty = firstY; ty <= lastY; ty++) {
+				if(!isSolid(map, tx, ty)) { continue; }
+				float left = GameRenderer.tilesToPixels(tx);
+				float top = GameRenderer.tilesToPixels(ty);
+				
+				float entryX, exitX, entryY, exitY;
+				if(moveX > 0) {
+					entryX = (left - (x + width)) / moveX;
+					exitX = (left + TILE_SIZE - x) / moveX;
+				} else if(moveX < 0) {
+					entryX = (left + TILE_SIZE - x) / moveX;
+					exitX = (left - (x + width)) / moveX;
+				} else if(x < left + TILE_SIZE && x + width > left) {
+					entryX = Float.NEGATIVE_INFINITY;
+					exitX = Float.POSITIVE_INFINITY;
+				} else {
+					continue;
+				}
+				if(moveY > 0) {
+					entryY = (top - (y + height)) / moveY;
+					exitY = (top + TILE_SIZE - y) / moveY;
+				} else if(moveY < 0) {
+					entryY = (top + TILE_SIZE - y) / moveY;
+					exitY = (top - (y + height)) / moveY;
+				} else if(y < top + TILE_SIZE && y + height > top) {
+					entryY = Float.NEGATIVE_INFINITY;
+					exitY = Float.POSITIVE_INFINITY;
+				} else {
+					continue;
+				}
+				
+				float entry = Math.max(entryX, entryY);
+				float exit = Math.min(exitX, exitY);
+				if(entry >= exit || entry < 0 || entry >= 1) { continue; }
+				// The earliest hit wins. On a tie a floor or ceiling wins over a wall, so 
+				// sliding over the seam between two tiles doesn't stop the box.
+				boolean onX = entryX > entryY;
+				if(onX && moveY >= 0 && top >= y + height - STEP_HEIGHT) {
+					// the box only catches the top corner, as at the end of a slope: step onto it
+					onX = false;
+				}
+				if(entry < hitTime || (entry == hitTime && hitX && !onX)) {
+					hitTime = entry;
+					hitTileX = tx;
+					hitTileY = ty;
+					hitX = onX;
+				}
+			}
+		}
+		return hitTime <= 1;
+	}
+	
+	// Pushes the box out of the tiles it overlaps, the one it overlaps most first, along the
+	// axis it is least deep in.
+	private void pushOut(TileMap map, int width, int height) {
+		for(int push = 0; push < MAX_PUSHES; push++) {
+			int firstX = GameRenderer.pixelsToTiles((int) Math.floor(x));
+			int lastX = GameRenderer.pixelsToTiles((int) Math.ceil(x + width) - 1);
+			int firstY = GameRenderer.pixelsToTiles((int) Math.floor(y));
+			int lastY = GameRenderer.pixelsToTiles((int) Math.ceil(y + height) - 1);
+			float bestArea = 0;
+			float pushX = 0;
+			float pushY = 0;
+			for(int tx = firstX; tx <= lastX; tx++) {
+				for(int ty = firstY; ty <= lastY; ty++) {
+					if(!isSolid(map, tx, ty)) { continue; }
+					float left = GameRenderer.tilesToPixels(tx);
+					float top = GameRenderer.tilesToPixels(ty);
+					float overlapX = Math.min(x + width, left + TILE_SIZE) - Math.max(x, left);
+					float overlapY = Math.min(y + height, top + TILE_SIZE) - Math.max(y, top);
+					if(overlapX <= 0 || overlapY <= 0 || overlapX * overlapY <= bestArea) { continue; }
+					bestArea = overlapX * overlapY;
+					float outLeft = left - (x + width); // negative
+					float outRight = left + TILE_SIZE - x;
+					float outUp = top - (y + height); // negative
+					float outDown = top + TILE_SIZE - y;
+					float outX = (-outLeft < outRight) ? outLeft : outRight;
+					float outY = (-outUp <= outDown) ? outUp : outDown;
+					if(Math.abs(outY) <= Math.abs(outX)) {
+						pushX = 0;
+						pushY = outY;
+					} else {
+						pushX = outX;
+						pushY = 0;
+					}
+				}
+			}
+			if(bestArea == 0) { return; }
+			x += pushX;
+			y += pushY;
+			if(pushY < 0) {
+				contacts |= FLOOR;
+				collectTouched(map, width, GameRenderer.pixelsToTiles(Math.round(y + height)));
+			} else if(pushY > 0) {
+				contacts |= CEILING;
+				collectTouched(map, width, GameRenderer.pixelsToTiles(Math.round(y)) - 1);
+			} else {
+				contacts |= (pushX < 0) ? RIGHT : LEFT;
+				wallTileX = GameRenderer.pixelsToTiles(Math.round((pushX < 0) ? x + width : x - 1));
+				wallTileY = GameRenderer.pixelsToTiles((int) Math.floor(y));
+			}
+		}
+	}
+	
+	// Moves the box out of the sloped tiles it ended up in: up onto floor slopes while it falls
+	// or walks, down from ceiling slopes while it rises. The box is only moved if it was no more
+	// than a tile past the surface when the move started.
+	private void followSlopes(TileMap map, int width, int height, float startY, boolean falling) {
+		int left = (int) Math.floor(x);
+		int right = (int) Math.ceil(x + width) - 1;
+		int firstX = GameRenderer.pixelsToTiles(left);
+		int lastX = GameRenderer.pixelsToTiles(right);
+		int edge = falling ? (int) Math.ceil(y + height) : (int) Math.floor(y);
+		int firstY = GameRenderer.pixelsToTiles(falling ? edge - TILE_SIZE : edge);
+		int lastY = GameRenderer.pixelsToTiles(falling ? edge - 1 : edge + TILE_SIZE - 1);
+		
+		int best = falling ? Integer.MAX_VALUE : Integer.MIN_VALUE;
+		int bestX = 0;
+		int bestY = 0;
+		for(int tx = firstX; tx <= lastX; tx++) {
+			for(int ty = firstY; ty <= lastY; ty++) {
+				GameTile tile = map.getTile(tx, ty);
+				if(tile == null || !tile.isCollidable() || !tile.isSloped() || tile.getSlope().isCeiling() == falling) { 
+					continue; 
+				}
+				int tileLeft = GameRenderer.tilesToPixels(tx);
+				int surface = GameRenderer.tilesToPixels(ty) + tile.getSlope().surfaceY(
+						Math.max(left, tileLeft) - tileLeft, Math.min(right, tileLeft + TILE_SIZE - 1) - tileLeft);
+				if(falling ? surface < best : surface > best) {
+					best = surface;
+					bestX = tx;
+					bestY = ty;
+				}
+			}
+		}
+		
+		if(falling) {
+			if(best >= y + height || startY + height - best > TILE_SIZE) { return; }
+			y = best - height;
+			contacts = (contacts & ~CEILING) | FLOOR;
+			onSlope = true;
+		} else {
+			if(best <= y || best - startY > TILE_SIZE) { return; }
+			y = best;
+			contacts = (contacts & ~FLOOR) | CEILING;
+		}
+		touched[0] = bestX;
+		touched[1] = bestY;
+		touchedCount = 1;
+	}
+	
+	// Keeps the solid tiles of row tileY the box covers in X.
+	private void collectTouched(TileMap map, int width, int tileY) {
+		touchedCount = 0;
+		int firstX = GameRenderer.pixelsToTiles((int) Math.floor(x));
+		int lastX = GameRenderer.pixelsToTiles((int) Math.ceil(x + width) - 1);
+		for(int tx = firstX; tx <= lastX; tx++) {
+			if(!isSolid(map, tx, tileY)) { continue; }
+			if(2 * touchedCount + 2 > touched.length) {
+				touched = Arrays.copyOf(touched, touched.length * 2);
+			}
+			touched[2 * touchedCount] = tx;
+			touched[2 * touchedCount + 1] = tileY;
+			touchedCount++;
+		}
+	}
+	
+	// Sloped tiles are left to followSlopes().
+	private static boolean isSolid(TileMap map, int tileX, int tileY) {
+		GameTile tile = map.getTile(tileX, tileY);
+		return tile != null && tile.isCollidable() && !tile.isSloped();
+	}
+}
@@ -2,13 +2,18 @@ package devforrest.mario.objects.base;
 
 
 import java.awt.Point;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 
-import devforrest.mario.core.GameRenderer;
 import devforrest.mario.core.animation.CollidableObject;
-import devforrest.mario.core.animation.Sprite;
-import devforrest.mario.core.sound.specific.MarioSoundManager22050Hz;
+import devforrest.mario.core.event.GameEvents;
 import devforrest.mario.core.tile.GameTile;
+import devforrest.mario.core.tile.PlatformIndex;
+import devforrest.mario.core.tile.TickBuffer;
 import devforrest.mario.core.tile.TileMap;
+import devforrest.mario.core.tile.TileSweep;
+import devforrest.mario.objects.creatures.Platform;
 import devforrest.mario.objects.creatures.RedShell;
 
 
@@ -17,16 +22,10 @@ import devforrest.mario.objects.creatures.RedShell;
 
 public class Creature extends CollidableObject {
 	
-	protected static int xCollideOffset = 2; 
-	protected static int offMapOffset = 15;
-	protected static float GRAVITY = .0008f;
-	protected static float gravityEffect = .22f; 
-	
-	// Wake up values are constants based on the number of tiles on the screen
-	// that are used to determine when mario comes within range of a creature.
-	// Used exclusively within GameRender.java.
-	public static int WAKE_UP_VALUE_DOWN_RIGHT = 24;
-	public static int WAKE_UP_VALUE_UP_LEFT = -3;
+	// Gravity and the wake up values belong to the World of the creature's map.
+	protected static final int xCollideOffset = 2; 
+	protected static final int offMapOffset = 15;
+	protected static final int maxUpdateTicks = 4; // the most ticks a body makes up for in one update
 	
 	/* 
 	 * Creature Attributes:
@@ -43,138 +42,286 @@ public class Creature extends CollidableObject {
 	 * Platform:  A creature is a platform if it is a non-aligned moving object the player
 	 * 			  and creatures can interact with. 
 	 * Invisible: When a creature is invisible, it isn't drawn.
+	 * Body:      A body is moved and pulled down by the CreatureStore of its map before its update.
+	 * 
+	 * The attributes are packed in a word of CreatureStore flags. Once the creature is added to a
+	 * map, they are kept in the map's CreatureStore together with its position and speed, and this 
+	 * creature is a view of its slot there.
 	 */
-	private boolean isAlwaysRelevant; 
-	private boolean isAlive; 
-	private boolean isSleeping; 
-	private boolean isFlipped;
-	private boolean isItem;
-	private boolean isPlatform;
-	private boolean isInvisible;
+	private int flags;
+	private CreatureStore store; // the store of the map this creature is in, or null
+	private int slot = -1; // the slot of this creature in store
+	private int id; // Given by the TileMap when the creature is added, 0 until then.
+	private final TileSweep sweep = new TileSweep(); // moves this creature through the tiles
+	private Platform platform; // the platform this creature stands on, or null
+	private TickBuffer buffer; // where the changes to shared things go during an update, or null
+	private long updatedTick = -1; // the tick this creature was last updated on, -1 before its first
 	
 	public Creature() { 
-		this(0, 0, null);
-	}
-	
-	public Creature(int pixelX, int pixelY) {
-		this(pixelX, pixelY, null);
+		this(0, 0);
 	}
 	
 	/**
-	 * @effects Creates a new Creature at the given pixelX, pixelY position that is capable
-	 * of producing sounds from the soundManager. 
+	 * @effects Creates a new Creature at the given pixelX, pixelY position. It publishes
+	 * its sounds to the GameEvents of the map it is added to.
 	 * 
 	 * True: Collidable, Alive, Sleeping, Flipped.
 	 * False: OnScreen, Item, Platform, Relevant.
 	 */
-	public Creature(int pixelX, int pixelY, MarioSoundManager22050Hz soundManager) {
-		super(pixelX, pixelY, soundManager);	
+	public Creature(int pixelX, int pixelY) {
+		super(pixelX, pixelY);	
 		setIsCollidable(true);
-		isAlive = true;
-		isSleeping = true;
-		isFlipped = false;
+		flags = CreatureStore.ALIVE | CreatureStore.SLEEPING | CreatureStore.BODY;
 		setIsOnScreen(false);
-		isItem = false;
-		isPlatform = false;
-		isAlwaysRelevant = false;
+	}
+	
+	/**
+	 * @return the slot of this creature in the CreatureStore of its map, or -1 if it isn't in one.
+	 */
+	public int getSlot() {
+		return slot;
+	}
+	
+	// Moves the position, speed and flags of this creature to slot of store.
+	void attach(CreatureStore store, int slot) {
+		store.x[slot] = x;
+		store.y[slot] = y;
+		store.dx[slot] = dx;
+		store.dy[slot] = dy;
+		store.flags[slot] = flags & ~CreatureStore.MOVED;
+		this.store = store;
+		this.slot = slot;
+	}
+	
+	// Takes the position, speed and flags of this creature back from its store.
+	void detach() {
+		x = store.x[slot];
+		y = store.y[slot];
+		dx = store.dx[slot];
+		dy = store.dy[slot];
+		flags = store.flags[slot];
+		store = null;
+		slot = -1;
+	}
+	
+	// Called by the store when it moved this creature to another slot.
+	void moveTo(int slot) {
+		this.slot = slot;
+	}
+	
+	public float getX() {
+		return (store == null) ? x : store.x[slot];
+	}
+	
+	public void setX(float x) {
+		if(store == null) { this.x = x; } else { store.x[slot] = x; }
+	}
+	
+	public float getY() {
+		return (store == null) ? y : store.y[slot];
+	}
+	
+	public void setY(float y) {
+		if(store == null) { this.y = y; } else { store.y[slot] = y; }
+	}
+	
+	public float getdX() {
+		return (store == null) ? dx : store.dx[slot];
+	}
+	
+	public void setdX(float dx) {
+		if(store == null) { this.dx = dx; } else { store.dx[slot] = dx; }
+	}
+	
+	public float getdY() {
+		return (store == null) ? dy : store.dy[slot];
+	}
+	
+	public void setdY(float dy) {
+		if(store == null) { this.dy = dy; } else { store.dy[slot] = dy; }
+	}
+	
+	private int flags() {
+		return (store == null) ? flags : store.flags[slot];
+	}
+	
+	private void setFlags(int flags) {
+		if(store == null) { this.flags = flags; } else { store.flags[slot] = flags; }
+	}
+	
+	private boolean hasFlag(int flag) {
+		return (flags() & flag) != 0;
+	}
+	
+	private void setFlag(int flag, boolean on) {
+		setFlags(on ? (flags() | flag) : (flags() & ~flag));
+	}
+	
+	/**
+	 * @return the id of this creature in its TileMap, or 0 if it hasn't been added to one.
+	 */
+	public int getId() {
+		return id;
+	}
+	
+	/**
+	 * @modifies the id of this Creature. Only a TileMap should set it.
+	 */
+	public void setId(int id) {
+		this.id = id;
+	}
+	
+	/**
+	 * @return the Platform this creature stands on, or null.
+	 */
+	public Platform getPlatform() {
+		return platform;
+	}
+	
+	/**
+	 * @modifies the Platform this creature stands on. Only the creature itself, or a TileMap
+	 * restoring a state, should set it; the riders of the platform aren't changed.
+	 */
+	public void setPlatform(Platform platform) {
+		this.platform = platform;
+	}
+	
+	/**
+	 * @modifies the TickBuffer that the tiles this creature lands on and the platforms it gets
+	 * on and off are put in while it is updated, instead of being changed at once. Null changes
+	 * them at once. The caller also points the events of this creature at the buffer's.
+	 */
+	public void setTickBuffer(TickBuffer buffer) {
+		this.buffer = buffer;
+	}
+	
+	/**
+	 * Writes the position, speed, animations and status of this creature. The id and the 
+	 * platform it stands on are written by the TileMap.
+	 */
+	public void writeState(DataOutput out) throws IOException {
+		super.writeState(out);
+		out.writeByte(flags() & CreatureStore.SAVED_FLAGS);
+		out.writeLong(updatedTick);
+	}
+	
+	public void readState(DataInput in) throws IOException {
+		super.readState(in);
+		setFlags((flags() & ~CreatureStore.SAVED_FLAGS) | (in.readByte() & CreatureStore.SAVED_FLAGS));
+		updatedTick = in.readLong();
 	}
 	
 	/**
 	 * @return true if this creature is a Platform, false otherwise.
 	 */
 	public boolean isPlatform() {
-		return isPlatform;
+		return hasFlag(CreatureStore.PLATFORM);
 	}
 	
 	/**
 	 * @modifies the platform status of this Creature.
 	 */
 	public void setIsPlatform(boolean isPlatform) {
-		this.isPlatform = isPlatform;
+		setFlag(CreatureStore.PLATFORM, isPlatform);
 	}
 	
 	/**
 	 * @return true if this creature is an Item, false otherwise.
 	 */
 	public boolean isItem() {
-		return isItem;
+		return hasFlag(CreatureStore.ITEM);
 	}
 	
 	/**
 	 * @modifies the item status of this Creature.
 	 */
 	public void setIsItem(boolean isItem) {
-		this.isItem = isItem;
+		setFlag(CreatureStore.ITEM, isItem);
 	}
 	
 	/**
 	 * @return true if this creature is flipped, false otherwise.
 	 */
 	public boolean isFlipped() {
-		return isFlipped;
+		return hasFlag(CreatureStore.FLIPPED);
 	}
 	
 	/**
 	 * @modifies the flipped status of this Creature.
 	 */
 	public void setIsFlipped(boolean isFlipped) {
-		this.isFlipped = isFlipped;
+		setFlag(CreatureStore.FLIPPED, isFlipped);
 	}
 	
 	/**
 	 * @return true if this creature is sleeping, false otherwise.
 	 */
 	public boolean isSleeping() {
-		return isSleeping;
+		return hasFlag(CreatureStore.SLEEPING);
 	}
 	
 	/**
 	 * @modifies the sleeping status of this creature to false.
 	 */
 	public void wakeUp() { 
-		isSleeping = false;
+		setFlag(CreatureStore.SLEEPING, false);
 	}
 	
 	/**
 	 * @return true if this creature is alive, false otherwise.
 	 */
 	public boolean isAlive() {
-		return isAlive;
+		return hasFlag(CreatureStore.ALIVE);
 	}
 	
 	/**
 	 * @modifies the life state of this creature (alive or dead) to dead.
 	 */
     public void kill() {
-    	isAlive = false;
+    	setFlag(CreatureStore.ALIVE, false);
     }
 	
 	/**
 	 * @return true if this creature is a Platform, false otherwise.
 	 */
 	public boolean isAlwaysRelevant() {
-		return isAlwaysRelevant;
+		return hasFlag(CreatureStore.ALWAYS_RELEVANT);
 	}
 	
 	/**
 	 * @modifies the platform status of this Creature.
 	 */
 	public void setIsAlwaysRelevant(boolean isAlwaysRelevant) {
-		this.isAlwaysRelevant = isAlwaysRelevant;
+		setFlag(CreatureStore.ALWAYS_RELEVANT, isAlwaysRelevant);
 	}
 	
 	/**
 	 * @return true if this creature is invisible, false otherwise.
 	 */
 	public boolean isInvisible() {
-		return isInvisible;
+		return hasFlag(CreatureStore.INVISIBLE);
 	}
 	
 	/**
 	 * @modifies the invisible status of this Creature.
 	 */
 	public void setIsInvisible(boolean isInvisible) {
-		this.isInvisible = isInvisible;
+		setFlag(CreatureStore.INVISIBLE, isInvisible);
+	}
+	
+	/**
+	 * @return true if this creature is a body, false otherwise.
+	 */
+	public boolean isBody() {
+		return hasFlag(CreatureStore.BODY);
+	}
+	
+	/**
+	 * @modifies the body status of this Creature. A creature that moves itself instead of 
+	 * calling updateCreature() of Creature must not be a body.
+	 */
+	protected void setIsBody(boolean isBody) {
+		setFlag(CreatureStore.BODY, isBody);
 	}
     
 	
@@ -183,134 +330,139 @@ public class Creature extends CollidableObject {
 	
 	// for tile collisions
 	public void xCollide(Point p) {
-		if(dx > 0) {
-			x = x - xCollideOffset;
-		} else {
-			x = x + xCollideOffset;
-		}
-		dx = -dx;
+		creatureXCollide();
 	}
 	
 	// for creature collisions
 	public void creatureXCollide() {
+		float dx = getdX();
 		if(dx > 0) {
-			x = x - xCollideOffset;
+			setX(getX() - xCollideOffset);
 		} else {
-			x = x + xCollideOffset;
+			setX(getX() + xCollideOffset);
 		}
-		dx = -dx;
+		setdX(-dx);
 	}
 	
 	/**
-	 * Calculates the type of collision in the X direction between a Tile 
-	 * and a Sprite given the Sprite is currentely colliding with the tile. 
-	 * This method relies on the general heuristic that if two 
-	 * rectangular objects are colliding, then one object is not completely
-	 * contained in the other. Because the colliding objects stick out, we
-	 * know the direction of the collision. 
-	 * 
-	 * pre-condition: sprite is colliding with tile.
-	 * @return Collision.WEST if sprite is colliding with the tile from the west or
-	 * Collision.EAST if sprite is colliding with the tile from the east.
+	 * @return the tick this creature was last updated on, or -1 if it never was.
 	 */
-	public static Collision tileCollisionX(GameTile tile, Sprite s) {
-		if(s.getX() > tile.getPixelX()) {
-			return Collision.WEST;
-		} else {
-			return Collision.EAST;
-		}
+	public long getUpdatedTick() {
+		return updatedTick;
 	}
 	
 	/**
-	 * Calculates the type of collision in the Y direction between a Tile 
-	 * and a Sprite given the Sprite is currentely colliding with the tile. 
-	 * This method relies on the general heuristic that if two 
-	 * rectangular objects are colliding, that one object is not completely
-	 * contained in the other. Because the colliding objects stick out, we
-	 * know the direction of the collision. 
-	 * 
-	 * pre-condition: sprite is colliding with tile.
-	 * @return Collision.NORTH if sprite is colliding with the tile from the north or
-	 * Collision.SOUTH if sprite is colliding with the tile from the south.
+	 * Updates this creature on tick, for the ticks of period milliseconds since it was last 
+	 * updated. That is one tick for a creature that is updated every tick, as the creatures 
+	 * near the camera are; a Simulation updates the always relevant ones far from it less 
+	 * often, or not at all. Other creatures stand still while they aren't relevant, so they 
+	 * are only ever updated for one tick.
 	 */
-	public static Collision tileCollisionY(GameTile tile, Sprite s) {
-		if(s.getY() < tile.getPixelY()) {
-			return Collision.NORTH;
+	public void updateTo(TileMap map, int period, long tick) {
+		long ticks = (updatedTick < 0 || !isAlwaysRelevant()) ? 1 : tick - updatedTick;
+		updatedTick = tick;
+		if(ticks <= 1) {
+			updateCreature(map, period);
 		} else {
-			return Collision.SOUTH;
+			updateCreature(map, period, (int) Math.min(ticks, Integer.MAX_VALUE));
 		}
 	}
 	
+	/**
+	 * Updates this creature for ticks ticks of period milliseconds in one step. A creature 
+	 * moved by physics only makes up for maxUpdateTicks ticks: it stood still for the others,
+	 * as if it had been frozen.
+	 */
+	public void updateCreature(TileMap map, int period, int ticks) {
+		updateCreature(map, period * Math.min(ticks, maxUpdateTicks));
+	}
+	
+	/**
+	 * Moves this creature as far as the CreatureStore of map found it has to move this tick, 
+	 * through the tiles, and onto the platforms it lands on. The store integrates the creatures
+	 * a Simulation is about to update all at once; a creature it skipped is integrated here.
+	 */
 	public void updateCreature(TileMap map, int time) {
+		if((store.flags[slot] & CreatureStore.MOVED) == 0) { store.integrate(this, map, time); }
+		store.flags[slot] &= ~CreatureStore.MOVED;
 		
-		if(dy < gravityEffect) { // apply gravity...this must be done first
-			dy = dy + GRAVITY * time;
-		}
-		
-		float dx = this.dx;
-		float oldX = this.x;
-		float newX = oldX + dx * time;
-		
-		float dy = this.dy;
-		float oldY = this.y;
-		float newY = oldY + dy * time; 
-		
-		if(!isFlipped) {
-			Point xTile = GameRenderer.getTileCollision(map, this, x, y, newX, y);
-			Point yTile = GameRenderer.getTileCollision(map, this, x, y, x, newY);
+		if(!isFlipped()) {
+			// Sweep through the tiles in X and Y at once, so no step is long enough to pass through one.
+			float oldX = getX();
+			float oldY = getY();
+			int width = getWidth();
+			int height = getHeight();
+			int contacts = sweep.move(map, oldX, oldY, width, height, store.moveX[slot], store.moveY[slot]);
 			
 			this.update(time);
 			
-			// Update collisions in the x-direction.
-			if(oldX < -offMapOffset || oldX > GameRenderer.tilesToPixels(map.getWidth()) + offMapOffset) { // offscreen
-				kill();
-			} else {
-				if(xTile == null) {
-					x = newX;
-				} else {
-					if(!xTile.equals(yTile)) { // Only manage x-collisions that are not y-collisions
-						this.xCollide(xTile);
-						if(dx > 0) {
-							x = GameRenderer.tilesToPixels(xTile.x) - this.getWidth();
-						} else if (dx < 0) {
-							x = GameRenderer.tilesToPixels(xTile.x + 1);
-						}
-					}
+			// A new animation frame may be of another size: keep the creature against what it hit.
+			setX(sweep.getX());
+			setY(sweep.getY());
+			if((contacts & (TileSweep.LEFT | TileSweep.RIGHT)) != 0) {
+				this.xCollide(new Point(sweep.getWallTileX(), sweep.getWallTileY()));
+				// the sweep already left the creature against the tile
+				setX(sweep.getX() + (((contacts & TileSweep.RIGHT) != 0) ? width - getWidth() : 0));
+			}
+			if((contacts & TileSweep.FLOOR) != 0) {
+				setY(getY() + height - getHeight());
+				// mark this creature as colliding with the tiles it stands on
+				for(int i = 0; i < sweep.getTouchedCount(); i++) {
+					GameTile tile = map.getTile(sweep.getTouchedX(i), sweep.getTouchedY(i));
+					if(buffer == null) { map.land(tile, this); } else { buffer.land(tile, this); }
 				}
+			} else if((contacts & TileSweep.CEILING) != 0) {
+				setdY(-getdY()/4); // fall faster if a collision occured
 			}
+			if(!isPlatform()) { ridePlatforms(map, oldY); }
+		} else { // flipped, and already moved by the store
+			standOn(null); // flipped creatures fall through platforms
+			this.update(time);
+		}
+	}
 	
-			// Update collisions in the y-direction. 
-			if(oldY > GameRenderer.tilesToPixels(map.getHeight()) + offMapOffset) { // offscreen
-				kill();
-			} else {
-				if(yTile == null) {
-					y = newY;
-				} else {
-					if(dy > 0) {
-						// mark this creature as colliding with a tile
-						map.getTile(yTile.x, yTile.y).collidingCreatures().add(this); 
-						GameTile tileRight = map.getTile(((int) yTile.getX()) + 1, ((int) yTile.getY()));
-						if(tileRight != null) {
-							tileRight.collidingCreatures().add(this);
-						}
-						y = GameRenderer.tilesToPixels(yTile.y) - this.getHeight();
-					} else if (dy < 0) {
-						y = GameRenderer.tilesToPixels(yTile.y + 1);
-						this.dy = -dy/4; // fall faster if a collision occured
-					} 
+	// Lands this creature on the highest platform it fell onto since oldY, or lets go of the 
+	// platform it stood on if it left it.
+	private void ridePlatforms(TileMap map, float oldY) {
+		Platform landedOn = null;
+		if(getdY() >= 0) {
+			float x = getX();
+			float y = getY();
+			PlatformIndex platforms = map.platformIndex();
+			float right = x + getWidth();
+			float oldBottom = oldY + getHeight();
+			float bottom = y + getHeight();
+			for(int i = platforms.first(x); i < platforms.size(); i++) {
+				Platform p = platforms.get(i);
+				if(p.getX() > right) { break; }
+				// The platform may have carried this creature already this tick, or may do it later.
+				float top = p.getY();
+				if(p.getX() + p.getWidth() >= x && bottom >= top && oldBottom <= Math.max(top, p.getOldY()) + 1 
+						&& (landedOn == null || top < landedOn.getY())) {
+					landedOn = p;
 				}
 			}
-		} else { // flipped
-			x = newX;
-			y = newY;
-			this.update(time);
 		}
+		if(landedOn != null) { setY(landedOn.getY() - getHeight()); }
+		standOn(landedOn);
+	}
+	
+	// Makes this creature a rider of p, and no longer of the platform it stood on.
+	private void standOn(Platform p) {
+		if(p == platform) { return; }
+		if(buffer != null) {
+			buffer.ride(this, platform, p);
+		} else {
+			if(platform != null) { platform.removeRider(this); }
+			if(p != null) { p.addRider(this); }
+		}
+		platform = p;
 	}
 	
 	// Determines what happens when two different creatures collide.
 	// Uncommenting the onSreen condition makes this more efficient, but more buggy
 	public void creatureCollision(Creature creature) {
-		if(!this.isItem && !creature.isItem && !this.isPlatform && !creature.isPlatform &&
+		if(!this.isItem() && !creature.isItem() && !this.isPlatform() && !creature.isPlatform() &&
 				this != creature && this.isCollidable() && creature.isCollidable()) {
 			
 			boolean collision = isCollision(this, creature);
@@ -321,20 +473,20 @@ public class Creature extends CollidableObject {
 				if(this instanceof RedShell && !(creature instanceof RedShell)) {
 					if(((RedShell) this).isMoving()) {
 						creature.flip();
-						soundManager.playKick();
+						events.sound(GameEvents.KICK);
 					}
 				// creature 2 is a RedShell, creature 1 is not.
 				} else if(!(this instanceof RedShell) && creature instanceof RedShell) {
 					if(((RedShell) creature).isMoving()) {
 						this.flip();
-						soundManager.playKick();
+						events.sound(GameEvents.KICK);
 					}
 				// both creature 1 and creature 2 are RedShells
 				} else if(this instanceof RedShell && creature instanceof RedShell) {
 					//RedShell 1 is moving, RedShell 2 is not.
 					this.flip();
 					creature.flip();
-					soundManager.playKick();
+					events.sound(GameEvents.KICK);
 				// End of RedShell collision cases...
 			    //____________________________________________
 					
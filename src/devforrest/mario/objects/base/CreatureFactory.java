@@ -0,0 +1,69 @@
+package devforrest.mario.objects.base;
+
+import devforrest.mario.core.tile.TileMap;
+import devforrest.mario.objects.creatures.Coin;
+import devforrest.mario.objects.creatures.Goomba;
+import devforrest.mario.objects.creatures.Mushroom;
+import devforrest.mario.objects.creatures.Platform;
+import devforrest.mario.objects.creatures.RedKoopa;
+import devforrest.mario.objects.creatures.RedShell;
+import devforrest.mario.objects.creatures.Score;
+
+/**
+ * CreatureFactory gives every kind of Creature a type code and creates a Creature from its code.
+ * A saved state names its creatures by these codes, so a creature that was created after the 
+ * state was saved, or that died and was removed, can be created again when the state is restored.
+ * 
+ * The codes are written to saved states: never change or reuse one.
+ */
+
+public final class CreatureFactory {
+	
+	public static final int GOOMBA = 1;
+	public static final int RED_KOOPA = 2;
+	public static final int RED_SHELL = 3;
+	public static final int COIN = 4;
+	public static final int SCORE = 5;
+	public static final int MUSHROOM = 6;
+	public static final int PLATFORM = 7;
+	
+	private CreatureFactory() { }
+	
+	/**
+	 * @return the type code of creature.
+	 * @throws IllegalArgumentException if creature is of a kind that has no code.
+	 */
+	public static int typeOf(Creature creature) {
+		Class<?> type = creature.getClass();
+		if(type == Goomba.class) { return GOOMBA; }
+		if(type == RedKoopa.class) { return RED_KOOPA; }
+		if(type == RedShell.class) { return RED_SHELL; }
+		if(type == Coin.class) { return COIN; }
+		if(type == Score.class) { return SCORE; }
+		if(type == Mushroom.class) { return MUSHROOM; }
+		if(type == Platform.class) { return PLATFORM; }
+		throw new IllegalArgumentException("No type code for " + type.getName());
+	}
+	
+	/**
+	 * Creates a new Creature of the given type at (pixelX, pixelY) that publishes to the 
+	 * GameEvents of map. Creatures created for a saved state are created at (0, 0): their 
+	 * real position and status come from the state.
+	 * @throws IllegalArgumentException if type is not a known type code.
+	 */
+	public static Creature create(int type, int pixelX, int pixelY, TileMap map) {
+		Creature c;
+		switch(type) {
+			case GOOMBA: c = new Goomba(pixelX, pixelY, map.random()); break;
+			case RED_KOOPA: c = new RedKoopa(pixelX, pixelY, map.random()); break;
+			case RED_SHELL: c = new RedShell(pixelX, pixelY, map, true); break;
+			case COIN: c = new Coin(pixelX, pixelY, map.getWorld()); break;
+			case SCORE: c = new Score(pixelX, pixelY); break;
+			case MUSHROOM: c = new Mushroom(pixelX, pixelY); break;
+			case PLATFORM: c = new Platform(pixelX, pixelY); break;
+			default: throw new IllegalArgumentException("Unknown creature type " + type);
+		}
+		c.setEvents(map.getWorld().getEvents());
+		return c;
+	}
+} // CreatureFactory
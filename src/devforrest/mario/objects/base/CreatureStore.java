@@ -0,0 +1,312 @@
+package devforrest.mario.objects.base;
+
+import java.util.Arrays;
+
+import devforrest.mario.core.GameRenderer;
+import devforrest.mario.core.tile.TileMap;
+
+/**
+ * A CreatureStore keeps the position, speed, status flags and type of the creatures of a 
+ * TileMap in parallel arrays, one slot per creature. A Creature in a store is a view of its 
+ * slot: its getters and setters read and write the arrays, and its behaviour stays in its class.
+ * 
+ * Slots are given in the order creatures are added, which is the order of their ids, and 
+ * removeDead() keeps that order. Walking the relevant creatures in id order therefore walks 
+ * the arrays forward, which lets integrate() apply gravity, move and kill the creatures that 
+ * left the map in one tight loop, before their behaviour runs.
+ */
+
+public class CreatureStore {
+	
+	// The status flags of a creature. The first seven are written to saved states.
+	public static final int ALWAYS_RELEVANT = 1;
+	public static final int ALIVE = 2;
+	public static final int SLEEPING = 4;
+	public static final int FLIPPED = 8;
+	public static final int ITEM = 16;
+	public static final int PLATFORM = 32;
+	public static final int INVISIBLE = 64;
+	public static final int SAVED_FLAGS = 127;
+	public static final int BODY = 128; // moved by integrate(), see Creature.setIsBody()
+	static final int MOVED = 256; // integrated, and not yet swept through the tiles
+	private static final int BATCH_RUN = 16; // the fewest bodies integrateRange() is used for
+	
+	float[] x;
+	float[] y;
+	float[] dx;
+	float[] dy;
+	float[] moveX; // how far a creature has to move this tick, found by integrate()
+	float[] moveY;
+	int[] flags;
+	private byte[] type; // the CreatureFactory type code
+	private Creature[] views;
+	private int size;
+	
+	public CreatureStore() {
+		int length = 64;
+		x = new float[length];
+		y = new float[length];
+		dx = new float[length];
+		dy = new float[length];
+		moveX = new float[length];
+		moveY = new float[length];
+		flags = new int[length];
+		type = new byte[length];
+		views = new Creature[length];
+	}
+	
+	/**
+	 * @return the number of creatures in this store.
+	 */
+	public int size() {
+		return size;
+	}
+	
+	/**
+	 * @return the creature in slot.
+	 */
+	public Creature get(int slot) {
+		return views[slot];
+	}
+	
+	/**
+	 * @return the CreatureFactory type code of the creature in slot.
+	 */
+	public int typeOf(int slot) {
+		return type[slot];
+	}
+	
+	/**
+	 * @return how far the creature in slot moves in x this tick, as integrate() found.
+	 */
+	public float getMoveX(int slot) {
+		return moveX[slot];
+	}
+	
+	/**
+	 * @return how far the creature in slot moves in y this tick, as integrate() found.
+	 */
+	public float getMoveY(int slot) {
+		return moveY[slot];
+	}
+	
+	/**
+	 * Sets how far the creature in slot moves this tick, as if integrate() had found it.
+	 */
+	public void setMove(int slot, float moveX, float moveY) {
+		this.moveX[slot] = moveX;
+		this.moveY[slot] = moveY;
+	}
+	
+	/**
+	 * Puts c in the next slot. From now on its position, speed and flags are kept here.
+	 */
+	public void add(Creature c) {
+		if(size == views.length) { resize(size * 2); }
+		type[size] = (byte) CreatureFactory.typeOf(c);
+		views[size] = c;
+		c.attach(this, size);
+		size++;
+	}
+	
+	/**
+	 * Removes the creatures that aren't alive, keeping the others in order. Removed 
+	 * creatures keep their last position, speed and flags.
+	 */
+	public void removeDead() {
+		int kept = 0;
+		for(int i = 0; i < size; i++) {
+			Creature c = views[i];
+			if((flags[i] & ALIVE) == 0) {
+				c.detach();
+				continue;
+			}
+			if(kept != i) {
+				x[kept] = x[i];
+				y[kept] = y[i];
+				dx[kept] = dx[i];
+				dy[kept] = dy[i];
+				moveX[kept] = moveX[i];
+				moveY[kept] = moveY[i];
+				flags[kept] = flags[i];
+				type[kept] = type[i];
+				views[kept] = c;
+				c.moveTo(kept);
+			}
+			kept++;
+		}
+		Arrays.fill(views, kept, size, null);
+		size = kept;
+	}
+	
+	/**
+	 * Removes every creature, which keep their last position, speed and flags.
+	 */
+	public void clear() {
+		for(int i = 0; i < size; i++) {
+			views[i].detach();
+			views[i] = null;
+		}
+		size = 0;
+	}
+	
+	/**
+	 * Applies gravity to the BODY creatures in the first count of slots and finds how far 
+	 * they move in time milliseconds. Creatures that left the map are killed and stop moving
+	 * on that axis. Flipped creatures fall through everything, so they are moved right away;
+	 * the others are moved by Creature.updateCreature(), which sweeps them through the tiles.
+	 * 
+	 * The slots must be in increasing order. Runs of at least BATCH_RUN bodies in consecutive
+	 * slots, such as a crowd of walkers, are integrated by a batch kernel whose loops have no
+	 * branches in the common case, so the JIT can use SIMD instructions for them. The rest are
+	 * integrated one at a time, exactly like integrateEach() does.
+	 */
+	public void integrate(int[] slots, int count, TileMap map, int time) {
+		Bounds b = new Bounds(map, time);
+		int n = 0;
+		while(n < count) {
+			int from = slots[n];
+			if((flags[from] & BODY) == 0) {
+				n++;
+				continue;
+			}
+			int to = from + 1;
+			while(n + to - from < count && slots[n + to - from] == to && (flags[to] & BODY) != 0) {
+				to++;
+			}
+			if(to - from >= BATCH_RUN) {
+				integrateRange(from, to, b, time);
+			} else {
+				for(int i = from; i < to; i++) {
+					integrateSlot(i, b, time);
+				}
+			}
+			n += to - from;
+		}
+	}
+	
+	/**
+	 * Does what integrate() does, one slot at a time. It gives the same results, and is 
+	 * here to compare the two.
+	 */
+	public void integrateEach(int[] slots, int count, TileMap map, int time) {
+		Bounds b = new Bounds(map, time);
+		for(int n = 0; n < count; n++) {
+			if((flags[slots[n]] & BODY) != 0) { integrateSlot(slots[n], b, time); }
+		}
+	}
+	
+	// Integrates the body in slot i.
+	private void integrateSlot(int i, Bounds b, int time) {
+		integrateSlot(i, b.gravity, b.terminalFallDy, b.left, b.right, b.bottom, time);
+	}
+	
+	// Integrates the body in slot i, with the fields of a Bounds passed one by one.
+	private void integrateSlot(int i, float gravity, float terminalFallDy, float left, float right, float bottom, int time) {
+		int f = flags[i];
+		float vy = dy[i];
+		if(vy < terminalFallDy) { // apply gravity...this must be done first
+			vy = vy + gravity;
+			dy[i] = vy;
+		}
+		float oldX = x[i];
+		float oldY = y[i];
+		float newX = oldX + dx[i] * time;
+		float newY = oldY + vy * time;
+		if((f & FLIPPED) != 0) {
+			x[i] = newX;
+			y[i] = newY;
+			moveX[i] = 0;
+			moveY[i] = 0;
+		} else {
+			float mx = newX - oldX;
+			float my = newY - oldY;
+			if(oldX < left || oldX > right) { // offscreen
+				f &= ~ALIVE;
+				mx = 0;
+			}
+			if(oldY > bottom) { // offscreen
+				f &= ~ALIVE;
+				my = 0;
+			}
+			moveX[i] = mx;
+			moveY[i] = my;
+		}
+		flags[i] = f | MOVED;
+	}
+	
+	// Integrates the bodies in slots from to to, with the same rounding as integrateSlot(). 
+	// Each loop does one thing to every slot, and only the last one branches on the rare 
+	// creatures that are flipped or off the map.
+	private void integrateRange(int from, int to, Bounds b, int time) {
+		float gravity = b.gravity;
+		float terminalFallDy = b.terminalFallDy;
+		for(int i = from; i < to; i++) {
+			float vy = dy[i];
+			dy[i] = (vy < terminalFallDy) ? vy + gravity : vy;
+		}
+		for(int i = from; i < to; i++) {
+			moveX[i] = (x[i] + dx[i] * time) - x[i];
+		}
+		for(int i = from; i < to; i++) {
+			moveY[i] = (y[i] + dy[i] * time) - y[i];
+		}
+		for(int i = from; i < to; i++) {
+			int f = flags[i];
+			float oldX = x[i];
+			float oldY = y[i];
+			if((f & FLIPPED) != 0) {
+				x[i] = oldX + dx[i] * time;
+				y[i] = oldY + dy[i] * time;
+				moveX[i] = 0;
+				moveY[i] = 0;
+			} else if(oldX < b.left || oldX > b.right || oldY > b.bottom) { // offscreen
+				f &= ~ALIVE;
+				if(oldX < b.left || oldX > b.right) { moveX[i] = 0; }
+				if(oldY > b.bottom) { moveY[i] = 0; }
+			}
+			flags[i] = f | MOVED;
+		}
+	}
+	
+	/**
+	 * Integrates the single creature c, which must be in this store. Creatures of different 
+	 * slots can be integrated on different threads at once, and nothing is allocated.
+	 */
+	void integrate(Creature c, TileMap map, int time) {
+		int i = c.getSlot();
+		if((flags[i] & BODY) == 0) { return; }
+		float margin = Creature.offMapOffset;
+		integrateSlot(i, map.getWorld().getGravity() * time, map.getWorld().getTerminalFallDy(), -margin, 
+				GameRenderer.tilesToPixels(map.getWidth()) + margin, GameRenderer.tilesToPixels(map.getHeight()) + margin, time);
+	}
+	
+	// What integrate() needs to know of the map, for a tick of time milliseconds.
+	private static final class Bounds {
+		final float gravity; // how much faster a body falls in a tick
+		final float terminalFallDy;
+		final float left; // bodies out of left to right, or below bottom, are off the map
+		final float right;
+		final float bottom;
+		
+		Bounds(TileMap map, int time) {
+			gravity = map.getWorld().getGravity() * time;
+			terminalFallDy = map.getWorld().getTerminalFallDy();
+			left = -Creature.offMapOffset;
+			right = GameRenderer.tilesToPixels(map.getWidth()) + Creature.offMapOffset;
+			bottom = GameRenderer.tilesToPixels(map.getHeight()) + Creature.offMapOffset;
+		}
+	}
+	
+	private void resize(int length) {
+		x = Arrays.copyOf(x, length);
+		y = Arrays.copyOf(y, length);
+		dx = Arrays.copyOf(dx, length);
+		dy = Arrays.copyOf(dy, length);
+		moveX = Arrays.copyOf(moveX, length);
+		moveY = Arrays.copyOf(moveY, length);
+		flags = Arrays.copyOf(flags, length);
+		type = Arrays.copyOf(type, length);
+		views = Arrays.copyOf(views, length);
+	}
+}
@@ -3,7 +3,9 @@ package devforrest.mario.objects.creatures;
 
 import java.awt.image.BufferedImage;
 
+import devforrest.mario.core.World;
 import devforrest.mario.core.animation.Animation;
+import devforrest.mario.core.animation.AnimationClip;
 import devforrest.mario.core.tile.TileMap;
 import devforrest.mario.objects.base.Creature;
 import devforrest.mario.util.ImageManipulator;
@@ -12,32 +14,55 @@ import devforrest.mario.util.ImageManipulator;
 
 public class Coin extends Creature {
 	
-	private static BufferedImage[] c = { ImageManipulator.loadImage("items/Coin_5.png"), ImageManipulator.loadImage("items/Coin_6.png"),
-		ImageManipulator.loadImage("items/Coin_7.png"), ImageManipulator.loadImage("items/Coin_8.png") };
-	public static Animation turn = new Animation(150).addFrame(c[0]).addFrame(c[1]).addFrame(c[2]).addFrame(c[3]);
 	// Alternate Animation;
     //private static BufferedImage[] c = { loadImage("items/Coin_1.png"), loadImage("items/Coin_2.png"),
 	//	loadImage("items/Coin_3.png"), loadImage("items/Coin_4.png") };
 	
-	//private Animation turn;
+	private Animation turn;
 	private Animation shoot;
 	
-	public Coin(int pixelX, int pixelY) {
+	/**
+	 * @return the frames of a turning coin, loaded from disk. Each World loads its own.
+	 */
+	public static BufferedImage[] loadImages() {
+		BufferedImage[] c = { ImageManipulator.loadImage("items/Coin_5.png"), ImageManipulator.loadImage("items/Coin_6.png"),
+			ImageManipulator.loadImage("items/Coin_7.png"), ImageManipulator.loadImage("items/Coin_8.png") };
+		return c;
+	}
+	
+	/**
+	 * @return the clip of a coin turning through the frames c.
+	 */
+	public static AnimationClip newTurnClip(BufferedImage[] c) {
+		return new AnimationClip(150, c);
+	}
+	
+	/**
+	 * @return the clip of a coin shot out of a block, turning through the frames c.
+	 */
+	public static AnimationClip newShootClip(BufferedImage[] c) {
+		return new AnimationClip(120, c);
+	}
+	
+	/**
+	 * Creates a coin that turns with the coin Animation of world.
+	 */
+	public Coin(int pixelX, int pixelY, World world) {
 		
 		super(pixelX, pixelY);
+		this.turn = world.getCoinAnimation();
 		setIsItem(true);
+		setIsBody(false);
 		
-		final class DeadAfterAnimation extends Animation {
-			public void endOfAnimationAction() {
-				kill();
-			}
-		}
-		
-		//turn = new Animation(1000).addFrame(c[0]).addFrame(c[1]).addFrame(c[2]).addFrame(c[3]);
-		shoot = new DeadAfterAnimation().setDAL(120).addFrame(c[0]).addFrame(c[1]).addFrame(c[2]).addFrame(c[3]);
+		shoot = new Animation(world.getCoinShootClip());
+		setAnimations(turn, shoot);
 		setAnimation(turn);
 	}
 	
+	protected void endOfAnimationAction(Animation anim) {
+		if(anim == shoot) { kill(); }
+	}
+	
 //	public void draw(Graphics g, int pixelX, int pixelY) {
 //		float[] scales = { .6f, .6f, .6f, 8f};
 //		float[] offsets = new float[4];
@@ -63,9 +88,9 @@ public class Coin extends Creature {
 	public void updateCreature(TileMap map, int time) {
 		if(currentAnimation() == shoot) {
 			super.update(time);
-			y = y + dy * time;
-			if(dy < 0) {
-				dy = dy + .018f;
+			setY(getY() + getdY() * time);
+			if(getdY() < 0) {
+				setdY(getdY() + .018f);
 			} 
 		}
 	}
@@ -73,7 +98,7 @@ public class Coin extends Creature {
 	public void shoot() {
 		setIsCollidable(false);
 		setAnimation(shoot);
-		dy = -.3f;
+		setdY(-.3f);
 	}
 
 }
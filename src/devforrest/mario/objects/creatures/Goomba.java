@@ -3,11 +3,11 @@ package devforrest.mario.objects.creatures;
 
 
 import java.awt.image.BufferedImage;
-import java.util.Random;
 
 import devforrest.mario.core.animation.Animation;
-import devforrest.mario.core.sound.specific.MarioSoundManager22050Hz;
+import devforrest.mario.core.animation.AnimationClip;
 import devforrest.mario.objects.base.Creature;
+import devforrest.mario.util.GameRandom;
 import devforrest.mario.util.ImageManipulator;
 
 
@@ -16,46 +16,55 @@ import devforrest.mario.util.ImageManipulator;
 
 public class Goomba extends Creature {
 	
+	// The clips every Goomba shares, loaded with the first one.
+	private static final class Clips {
+		static final AnimationClip WADDLE, DEAD, FLIP;
+		static {
+			BufferedImage w1 = ImageManipulator.loadImage("baddies/Goomba_Normal_1.png");
+			BufferedImage w2 = ImageManipulator.loadImage("baddies/Goomba_Normal_2.png");
+			BufferedImage smashed = ImageManipulator.loadImage("baddies/Goomba_Dead.png");
+			BufferedImage flipped = ImageManipulator.loadImage("baddies/Goomba_Flip.png");
+			WADDLE = new AnimationClip(150, w1, w2);
+			DEAD = new AnimationClip.Builder(100).addFrame(smashed).setDAL(20).addFrame(smashed).build();
+			FLIP = new AnimationClip(0, flipped, flipped);
+		}
+	}
+	
 	private Animation waddle, dead, flip;
+	private GameRandom r;
 	
-	public Goomba(int x, int y, MarioSoundManager22050Hz soundManager) {
-		
-		super(x, y, soundManager);
+	public Goomba(int x, int y, GameRandom r) {
 		
-		BufferedImage w1 = ImageManipulator.loadImage("baddies/Goomba_Normal_1.png");
-		BufferedImage w2 = ImageManipulator.loadImage("baddies/Goomba_Normal_2.png");
-		BufferedImage smashed = ImageManipulator.loadImage("baddies/Goomba_Dead.png");
-		BufferedImage flipped = ImageManipulator.loadImage("baddies/Goomba_Flip.png");
+		super(x, y);
+		this.r = r;
 		
-		final class DeadAfterAnimation extends Animation {
-			public void endOfAnimationAction() {
-				kill();
-			}
-		}
-
-		waddle = new Animation(150).addFrame(w1).addFrame(w2);
-		dead = new DeadAfterAnimation().setDAL(100).addFrame(smashed).setDAL(20).addFrame(smashed);
-		flip = new Animation().addFrame(flipped).addFrame(flipped);
+		waddle = new Animation(Clips.WADDLE);
+		dead = new Animation(Clips.DEAD);
+		flip = new Animation(Clips.FLIP);
+		setAnimations(waddle, dead, flip);
 		setAnimation(waddle);
 	}
 	
+	protected void endOfAnimationAction(Animation anim) {
+		if(anim == dead) { kill(); }
+	}
+	
 	public void wakeUp() {
-		Random r = new Random();
 		super.wakeUp();
-		dx = (r.nextInt(3) == 0) ? -.03f : .03f;
+		setdX((r.nextInt(3) == 0) ? -.03f : .03f);
 	}
 	
 	public void jumpedOn() {
 		setAnimation(dead);
 		setIsCollidable(false);
-		dx = 0;
+		setdX(0);
 	}
 	
 	public void flip() {
 		setAnimation(flip);
 		setIsFlipped(true);
 		setIsCollidable(false);
-		dy = -.2f;
-		dx = 0;
+		setdY(-.2f);
+		setdX(0);
 	}
 }
@@ -1,8 +1,12 @@
 package devforrest.mario.objects.creatures;
 
 import java.awt.image.BufferedImage;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 
 import devforrest.mario.core.animation.Animation;
+import devforrest.mario.core.animation.AnimationClip;
 import devforrest.mario.core.tile.TileMap;
 import devforrest.mario.objects.base.Creature;
 import devforrest.mario.util.ImageManipulator;
@@ -12,6 +16,15 @@ import devforrest.mario.util.ImageManipulator;
 
 public class Mushroom extends Creature {
 	
+	// The clip every Mushroom shares, loaded with the first one.
+	private static final class Clips {
+		static final AnimationClip RED_MUSHROOM;
+		static {
+			BufferedImage shroom = ImageManipulator.loadImage("items/Mushroom.png");
+			RED_MUSHROOM = new AnimationClip(1000, shroom, shroom);
+		}
+	}
+	
 	private Animation redMushroom;
 	private int updateNum;
 	
@@ -19,14 +32,24 @@ public class Mushroom extends Creature {
 		super(pixelX, pixelY);
 		setIsItem(true);
 		setIsAlwaysRelevant(true);
-		BufferedImage shroom = ImageManipulator.loadImage("items/Mushroom.png");
-		redMushroom = new Animation();
-		redMushroom.addFrame(shroom, 1000);
-		redMushroom.addFrame(shroom, 1000);
+		setIsBody(false); // rises out of its block before it falls
+		redMushroom = new Animation(Clips.RED_MUSHROOM);
+		setAnimations(redMushroom);
 		setAnimation(redMushroom);
 		updateNum = 0;
-		dy = -.15f;
-		dx = .07f;
+		setdY(-.15f);
+		setdX(.07f);
+	}
+	
+	public void writeState(DataOutput out) throws IOException {
+		super.writeState(out);
+		out.writeShort(updateNum);
+	}
+	
+	public void readState(DataInput in) throws IOException {
+		super.readState(in);
+		updateNum = in.readShort();
+		setIsBody(updateNum >= 10);
 	}
 	
 	public void updateCreature(TileMap map, int time) {
@@ -46,6 +69,7 @@ public class Mushroom extends Creature {
 			kill();
 		}
 		updateNum += 1;
+		setIsBody(updateNum >= 10);
 	}
 }
 
@@ -1,139 +1,205 @@
 package devforrest.mario.objects.creatures;
 
 
-import java.awt.image.BufferedImage;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
 
 import devforrest.mario.core.animation.Animation;
+import devforrest.mario.core.animation.AnimationClip;
+import devforrest.mario.core.animation.CollidableObject;
 import devforrest.mario.core.tile.TileMap;
 import devforrest.mario.objects.base.Creature;
 import devforrest.mario.util.ImageManipulator;
 
 
 
+/**
+ * A Platform is a creature that moves along a PlatformPath and carries what stands on it. 
+ * The sprites standing on a platform are its riders: they attach themselves when they land 
+ * on it and detach themselves when they leave it, and the platform moves them as far as it 
+ * moves each tick.
+ * 
+ * A platform is always at the offset of its current tick of the path from the place it was 
+ * put at, so where it was the tick before and which way it went are read from the path too.
+ */
+
 public class Platform extends Creature {
 	
+	// The clip every Platform shares, loaded with the first one.
+	private static final class Clips {
+		static final AnimationClip MOVE = new AnimationClip(2000, ImageManipulator.loadImage("items/Red_Platform_2.png"));
+	}
+	
 	protected Animation move;
-	protected int turn;
-	protected boolean isVertical = false;
-	protected boolean isHorizontal = false;
-	protected boolean switchedVertical = false;
-	protected boolean switchedHorizontal = false;
 	protected boolean canJumpThrough = false;
-	protected float oldX;
-	protected float oldY;
-	protected float oldDx;
-	protected float oldDy;
+	private PlatformPath path;
+	private int step; // the tick of the path the platform is at
+	private float startX; // where the path starts
+	private float startY;
+	private List<CollidableObject> riders; // not saved, riders attach themselves again
 	
+	/**
+	 * Creates a Platform at pixelX, pixelY that moves along the default path.
+	 */
 	public Platform(int pixelX, int pixelY) {
+		this(pixelX, pixelY, PlatformPath.DEFAULT);
+	}
+	
+	/**
+	 * Creates a Platform at pixelX, pixelY that moves along path.
+	 */
+	public Platform(int pixelX, int pixelY, PlatformPath path) {
 		super(pixelX, pixelY);
 		setIsAlwaysRelevant(true);
 		setIsPlatform(true);
-		turn = 1;
-		dx = 0;
-		dy = 0;
-		BufferedImage red_platform = ImageManipulator.loadImage("items/Red_Platform_2.png");
-		move = new Animation(2000).addFrame(red_platform);
+		setIsBody(false);
+		this.path = path;
+		startX = pixelX;
+		startY = pixelY;
+		riders = new ArrayList<CollidableObject>(2);
+		move = new Animation(Clips.MOVE);
+		setAnimations(move);
 		setAnimation(move);
 	}
 	
-	/**
-	 * @return the oldX
-	 */
-	public float getOldX() {
-		return oldX;
+	public PlatformPath getPath() {
+		return path;
 	}
-
+	
 	/**
-	 * @param oldX the oldX to set
+	 * @return the x of this platform the tick before.
 	 */
-	public void setOldX(float oldX) {
-		this.oldX = oldX;
+	public float getOldX() {
+		return startX + path.getOffsetX(previous(step));
 	}
 
 	/**
-	 * @return the oldY
+	 * @return the y of this platform the tick before.
 	 */
 	public float getOldY() {
-		return oldY;
-	}
-
-	/**
-	 * @param oldY the oldY to set
-	 */
-	public void setOldY(float oldY) {
-		this.oldY = oldY;
+		return startY + path.getOffsetY(previous(step));
 	}
 
 	public boolean canJumpThrough() {
 		return canJumpThrough;
 	}
+	
 	public boolean isHorizontal() {
-		return isHorizontal;
+		return path.movesX();
 	}
 	
 	public boolean isVertical() {
-		return isVertical;
+		return path.movesY();
 	}
 	
+	/**
+	 * @return how far this platform moved in x the tick before the last one.
+	 */
 	public float getLastdX() {
-		return oldDx;
+		int last = previous(step);
+		return path.getOffsetX(last) - path.getOffsetX(previous(last));
 	}
 	
 	public float getLastdY() {
-		return oldDy;
+		int last = previous(step);
+		return path.getOffsetY(last) - path.getOffsetY(previous(last));
 	}
 	
+	/**
+	 * @return true if this platform turned around in y on the last tick.
+	 */
 	public boolean switchedVertical() {
-		return switchedVertical;
+		float now = getY() - getOldY();
+		float before = getLastdY();
+		return (now > 0 && before < 0) || (now < 0 && before > 0);
 	}
 	
+	/**
+	 * @return true if this platform turned around in x on the last tick.
+	 */
 	public boolean switchedHorizontal() {
-		return switchedHorizontal;
+		float now = getX() - getOldX();
+		float before = getLastdX();
+		return (now > 0 && before < 0) || (now < 0 && before > 0);
+	}
+	
+	/**
+	 * Makes rider move with this platform, if it doesn't already.
+	 */
+	public void addRider(CollidableObject rider) {
+		if(!riders.contains(rider)) { riders.add(rider); }
+	}
+	
+	public void removeRider(CollidableObject rider) {
+		riders.remove(rider);
+	}
+	
+	/**
+	 * @return the sprites standing on this platform. Don't modify the list.
+	 */
+	public List<CollidableObject> riders() {
+		return riders;
+	}
+	
+	public void writeState(DataOutput out) throws IOException {
+		super.writeState(out);
+		out.writeBoolean(canJumpThrough);
+		out.writeFloat(startX);
+		out.writeFloat(startY);
+		out.writeInt(step);
+		path.writeState(out);
 	}
 	
+	public void readState(DataInput in) throws IOException {
+		super.readState(in);
+		canJumpThrough = in.readBoolean();
+		startX = in.readFloat();
+		startY = in.readFloat();
+		step = in.readInt();
+		path = PlatformPath.readState(in, path);
+	}
+	
+	/**
+	 * Moves this platform to the next tick of its path, and its riders with it.
+	 */
 	public void updateCreature(TileMap map, int time) {
-
-		
-		if(dx != 0) {
-			isHorizontal = true;
-		}
-		if(dy != 0) {
-			isVertical = true;
-		}
-		if(turn == 801) {
-			turn = 1;
-		}
-		if(turn <= 400) {
-			oldDx = dx;
-			oldDy = dy;
-			dx = .05f;
-			dy = .025f;
-		} else if(turn > 400) {
-			oldDy = dy;
-			oldDx = dx;
-			dx = -.05f;
-			dy = -.025f;
-		} 
-		turn = turn + 1;
-		oldX = x;
-		oldY = y;
-		x = x + time*dx;
-		y = y + time*dy;
-		
-		if((oldDx > 0 && dx < 0) || (oldDx < 0 && dx > 0)) {
-			this.switchedHorizontal = true;
-		} else {
-			this.switchedHorizontal = false;
-		}
-		
-		if((oldDy > 0 && dy < 0) || (oldDy < 0 && dy > 0)) {
-			this.switchedVertical = true;
-		} else {
-			this.switchedVertical = false;
+		updateCreature(map, time, 1);
+	}
+	
+	/**
+	 * Moves this platform ticks ticks along its path, and its riders with it. The path gives 
+	 * its place on every tick, so a platform that was updated less often, or not at all, is 
+	 * exactly where it would have been.
+	 */
+	public void updateCreature(TileMap map, int period, int ticks) {
+		float fromX = getX();
+		float fromY = getY();
+		step = (int) ((step + (long) ticks) % path.getTicks());
+		setX(startX + path.getOffsetX(step));
+		setY(startY + path.getOffsetY(step));
+		setdX((getX() - getOldX()) / period);
+		setdY((getY() - getOldY()) / period);
+		map.platformIndex().move(this);
+		carryRiders(getX() - fromX, getY() - fromY);
+	}
+	
+	// Moves the riders as far as this platform moved. Riders that died are dropped.
+	protected void carryRiders(float moveX, float moveY) {
+		for(int i = riders.size() - 1; i >= 0; i--) {
+			CollidableObject rider = riders.get(i);
+			if(rider instanceof Creature && !((Creature) rider).isAlive()) {
+				riders.remove(i);
+			} else {
+				rider.setX(rider.getX() + moveX);
+				rider.setY(rider.getY() + moveY);
+			}
 		}
-		//dx = 0;
-		//dy = 0;
-		
 	}
-
+	
+	private int previous(int tick) {
+		return (tick == 0) ? path.getTicks() - 1 : tick - 1;
+	}
 }
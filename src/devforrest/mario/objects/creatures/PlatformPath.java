@@ -0,0 +1,200 @@
+package devforrest.mario.objects.creatures;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * A PlatformPath is the way a Platform moves, as offsets in pixels from where the platform 
+ * was placed. A path goes through waypoints, the first of which is always the platform's own
+ * place, and repeats every getTicks() ticks:
+ * 
+ *   LINEAR  goes along the waypoints at an even speed and back the same way.
+ *   LOOP    goes along the waypoints at an even speed and from the last one to the first.
+ *   SINE    goes along the waypoints and back like LINEAR, slowing down at both ends.
+ *   SPLINE  loops through the waypoints on a smooth curve.
+ * 
+ * The offsets of every tick are computed once, when the path is made, so moving a platform
+ * along it is a table lookup. Paths are immutable and can be shared by several platforms.
+ */
+
+public class PlatformPath {
+	
+	public enum Kind { LINEAR, LOOP, SINE, SPLINE }
+	
+	/**
+	 * The path of a platform the map gives no path: 25 tiles right and 12.5 tiles down, and 
+	 * back, in 800 ticks.
+	 */
+	public static final PlatformPath DEFAULT = new PlatformPath(Kind.LINEAR, 800, new float[] { 400, 200 });
+	
+	private final Kind kind;
+	private final int ticks;
+	private final float[] waypoints; // x, y pairs after the first waypoint, which is 0, 0
+	private final float[] offsetX; // the offset of each tick
+	private final float[] offsetY;
+	
+	/**
+	 * Creates a path of the given kind that repeats every ticks ticks.
+	 * @param waypoints the x and y of the waypoints after the first one, as pixel offsets 
+	 * from the first one.
+	 * @throws IllegalArgumentException if there are no waypoints, or less ticks than 2.
+	 */
+	public PlatformPath(Kind kind, int ticks, float[] waypoints) {
+		if(ticks < 2 || waypoints.length < 2 || waypoints.length % 2 != 0) {
+			throw new IllegalArgumentException("A path needs 2 ticks or more and whole waypoints");
+		}
+		this.kind = kind;
+		this.ticks = ticks;
+		this.waypoints = waypoints.clone();
+		
+		double[] points = new double[waypoints.length + 2];
+		for(int i = 0; i < waypoints.length; i++) {
+			points[i + 2] = waypoints[i];
+		}
+		offsetX = new float[ticks];
+		offsetY = new float[ticks];
+		double[] point = new double[2];
+		for(int tick = 0; tick < ticks; tick++) {
+			switch(kind) {
+			case LINEAR: 
+				// there and back, in the same number of ticks
+				int half = ticks / 2;
+				int along = (tick <= half) ? tick : ticks - tick;
+				alongPolyline(points, false, (double) along / half, point);
+				break;
+			case LOOP:
+				alongPolyline(points, true, (double) tick / ticks, point);
+				break;
+			case SINE:
+				alongPolyline(points, false, (1 - Math.cos(2 * Math.PI * tick / ticks)) / 2, point);
+				break;
+			case SPLINE:
+				alongSpline(points, (double) tick / ticks, point);
+				break;
+			}
+			offsetX[tick] = (float) point[0];
+			offsetY[tick] = (float) point[1];
+		}
+	}
+	
+	public Kind getKind() {
+		return kind;
+	}
+	
+	/**
+	 * @return the number of ticks after which the path repeats.
+	 */
+	public int getTicks() {
+		return ticks;
+	}
+	
+	/**
+	 * @return the x offset from its place of a platform at the given tick of this path.
+	 */
+	public float getOffsetX(int tick) {
+		return offsetX[tick];
+	}
+	
+	public float getOffsetY(int tick) {
+		return offsetY[tick];
+	}
+	
+	/**
+	 * @return true if a platform on this path moves left and right.
+	 */
+	public boolean movesX() {
+		return moves(0);
+	}
+	
+	/**
+	 * @return true if a platform on this path moves up and down.
+	 */
+	public boolean movesY() {
+		return moves(1);
+	}
+	
+	public void writeState(DataOutput out) throws IOException {
+		out.writeByte(kind.ordinal());
+		out.writeInt(ticks);
+		out.writeShort(waypoints.length);
+		for(float f : waypoints) {
+			out.writeFloat(f);
+		}
+	}
+	
+	/**
+	 * Reads a path written by writeState(). The path is only computed again if it differs 
+	 * from last, which is returned otherwise.
+	 */
+	public static PlatformPath readState(DataInput in, PlatformPath last) throws IOException {
+		Kind kind = Kind.values()[in.readByte()];
+		int ticks = in.readInt();
+		float[] waypoints = new float[in.readShort()];
+		for(int i = 0; i < waypoints.length; i++) {
+			waypoints[i] = in.readFloat();
+		}
+		if(last != null && last.kind == kind && last.ticks == ticks && Arrays.equals(last.waypoints, waypoints)) {
+			return last;
+		}
+		return new PlatformPath(kind, ticks, waypoints);
+	}
+	
+	// Puts the point at the given fraction of the length of the lines through points in out,
+	// going back to the first point at the end if closed.
+	private static void alongPolyline(double[] points, boolean closed, double fraction, double[] out) {
+		int count = points.length / 2;
+		int segments = closed ? count : count - 1;
+		double total = 0;
+		for(int i = 0; i < segments; i++) {
+			total += segmentLength(points, i, (i + 1) % count);
+		}
+		double distance = total * fraction;
+		for(int i = 0; i < segments; i++) {
+			int j = (i + 1) % count;
+			double length = segmentLength(points, i, j);
+			if(distance <= length || i == segments - 1) {
+				double t = (length == 0) ? 0 : Math.min(1, distance / length);
+				out[0] = points[2 * i] + (points[2 * j] - points[2 * i]) * t;
+				out[1] = points[2 * i + 1] + (points[2 * j + 1] - points[2 * i + 1]) * t;
+				return;
+			}
+			distance -= length;
+		}
+	}
+	
+	// Puts the point at the given fraction of the closed Catmull-Rom spline through points in
+	// out. Every waypoint takes the same time.
+	private static void alongSpline(double[] points, double fraction, double[] out) {
+		int count = points.length / 2;
+		double position = fraction * count;
+		int i = (int) position;
+		double t = position - i;
+		int p0 = (i + count - 1) % count;
+		int p1 = i % count;
+		int p2 = (i + 1) % count;
+		int p3 = (i + 2) % count;
+		for(int axis = 0; axis < 2; axis++) {
+			double a = points[2 * p0 + axis];
+			double b = points[2 * p1 + axis];
+			double c = points[2 * p2 + axis];
+			double d = points[2 * p3 + axis];
+			out[axis] = 0.5 * (2 * b + (c - a) * t + (2 * a - 5 * b + 4 * c - d) * t * t 
+					+ (3 * b - a - 3 * c + d) * t * t * t);
+		}
+	}
+	
+	private boolean moves(int axis) {
+		for(int i = axis; i < waypoints.length; i += 2) {
+			if(waypoints[i] != 0) { return true; }
+		}
+		return false;
+	}
+	
+	private static double segmentLength(double[] points, int i, int j) {
+		double dx = points[2 * j] - points[2 * i];
+		double dy = points[2 * j + 1] - points[2 * i + 1];
+		return Math.sqrt(dx * dx + dy * dy);
+	}
+}
@@ -4,11 +4,11 @@ package devforrest.mario.objects.creatures;
 
 import java.awt.Point;
 import java.awt.image.BufferedImage;
-import java.util.Random;
 
 import devforrest.mario.core.animation.Animation;
-import devforrest.mario.core.sound.specific.MarioSoundManager22050Hz;
+import devforrest.mario.core.animation.AnimationClip;
 import devforrest.mario.objects.base.Creature;
+import devforrest.mario.util.GameRandom;
 import devforrest.mario.util.ImageManipulator;
 
 
@@ -17,42 +17,44 @@ import devforrest.mario.util.ImageManipulator;
 
 public class RedKoopa extends Creature {
 	
+	// The clips every RedKoopa shares, loaded with the first one.
+	private static final class Clips {
+		static final AnimationClip LEFT, RIGHT, DEAD, FLIP;
+		static {
+			BufferedImage shell = ImageManipulator.loadImage("baddies/Red_Shell_1.png");
+			BufferedImage flipped = ImageManipulator.loadImage("baddies/Red_Shell_Flip.png");
+			LEFT = new AnimationClip(150, ImageManipulator.loadImage("baddies/Koopa_Red_Left_1.png"), 
+					ImageManipulator.loadImage("baddies/Koopa_Red_Left_2.png"));
+			RIGHT = new AnimationClip(150, ImageManipulator.loadImage("baddies/Koopa_Red_Right_1.png"), 
+					ImageManipulator.loadImage("baddies/Koopa_Red_Right_2.png"));
+			DEAD = new AnimationClip(10, shell, shell);
+			FLIP = new AnimationClip(1200, flipped, flipped);
+		}
+	}
+	
 	private Animation left;
 	private Animation right;
 	private Animation dead;
 	private Animation flip;
-	private Random r;
+	private GameRandom r;
 	
-	public RedKoopa(int x, int y, MarioSoundManager22050Hz soundManager) {
-		
-		super(x, y, soundManager);
-		r = new Random();
-		
-		BufferedImage left_1 = ImageManipulator.loadImage("baddies/Koopa_Red_Left_1.png");
-		BufferedImage left_2 = ImageManipulator.loadImage("baddies/Koopa_Red_Left_2.png");
-		BufferedImage right_1 = ImageManipulator.loadImage("baddies/Koopa_Red_Right_1.png");
-		BufferedImage right_2 = ImageManipulator.loadImage("baddies/Koopa_Red_Right_2.png");
-		BufferedImage shell = ImageManipulator.loadImage("baddies/Red_Shell_1.png");
-		BufferedImage flipped = ImageManipulator.loadImage("baddies/Red_Shell_Flip.png");
+	public RedKoopa(int x, int y, GameRandom r) {
 		
-		left = new Animation(150).addFrame(left_1).addFrame(left_2);
-		right = new Animation(150).addFrame(right_1).addFrame(right_2);
+		super(x, y);
+		this.r = r;
 		
-		final class DeadAfterAnimation extends Animation {
-			public void endOfAnimationAction() {
-				kill();
-			}
-		}
-		
-		dead = new DeadAfterAnimation();
-		flip = new DeadAfterAnimation();
-		dead.addFrame(shell, 10);
-		dead.addFrame(shell, 10);
-		flip.addFrame(flipped, 1200);
-		flip.addFrame(flipped, 1200);
+		left = new Animation(Clips.LEFT);
+		right = new Animation(Clips.RIGHT);
+		dead = new Animation(Clips.DEAD);
+		flip = new Animation(Clips.FLIP);
+		setAnimations(left, right, dead, flip);
 		setAnimation(left);
 	}
 	
+	protected void endOfAnimationAction(Animation anim) {
+		if(anim == dead || anim == flip) { kill(); }
+	}
+	
 	public void xCollide(Point p) {
 		super.xCollide(p);
 		if(currentAnimation() == left) {
@@ -63,32 +65,32 @@ public class RedKoopa extends Creature {
 	}
 	
 	public void creatureXCollide() {
-		if(dx > 0) {
-			x = x - 2;
+		if(getdX() > 0) {
+			setX(getX() - 2);
 			setAnimation(left);
 		} else {
 			setAnimation(right);
-			x = x + 2;
+			setX(getX() + 2);
 		}
-		dx = -dx;
+		setdX(-getdX());
 	}
 	
 	public void flip() {
 		setAnimation(flip);
 		setIsFlipped(true);
 		setIsCollidable(false);
-		dy = -.2f;
-		dx = 0;
+		setdY(-.2f);
+		setdX(0);
 	}
 	
 	public void wakeUp() {
 		super.wakeUp();
 		int rNum = r.nextInt(3);
 			if(rNum == 0 || rNum == 1) {
-				dx = -.03f;
+				setdX(-.03f);
 				setAnimation(left);
 			} else {
-				dx = .03f;
+				setdX(.03f);
 				setAnimation(right);
 			}
 	}
@@ -96,6 +98,6 @@ public class RedKoopa extends Creature {
 	public void jumpedOn() {
 		setAnimation(dead);
 		setIsCollidable(false);
-		dx = 0;
+		setdX(0);
 	}
 }
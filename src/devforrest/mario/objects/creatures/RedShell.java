@@ -3,9 +3,13 @@ package devforrest.mario.objects.creatures;
 
 import java.awt.Point;
 import java.awt.image.BufferedImage;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 
 import devforrest.mario.core.animation.Animation;
-import devforrest.mario.core.sound.specific.MarioSoundManager22050Hz;
+import devforrest.mario.core.animation.AnimationClip;
+import devforrest.mario.core.event.GameEvents;
 import devforrest.mario.core.tile.GameTile;
 import devforrest.mario.core.tile.TileMap;
 import devforrest.mario.objects.base.Creature;
@@ -17,6 +21,21 @@ import devforrest.mario.util.ImageManipulator;
 
 public class RedShell extends Creature {
 	
+	// The clips every RedShell shares, loaded with the first one.
+	private static final class Clips {
+		static final AnimationClip STILL, ROTATE, FLIP;
+		static {
+			BufferedImage stay = ImageManipulator.loadImage("baddies/Red_Shell_1.png");
+			BufferedImage rotate_1 = ImageManipulator.loadImage("baddies/Red_Shell_2.png");
+			BufferedImage rotate_2 = ImageManipulator.loadImage("baddies/Red_Shell_3.png");
+			BufferedImage rotate_3 = ImageManipulator.loadImage("baddies/Red_Shell_4.png");
+			BufferedImage flipped = ImageManipulator.loadImage("baddies/Red_Shell_Flip.png");
+			STILL = new AnimationClip(150, stay);
+			ROTATE = new AnimationClip(30, rotate_1, stay, rotate_2, rotate_3, rotate_1);
+			FLIP = new AnimationClip(1200, flipped, flipped);
+		}
+	}
+	
 	private Animation still;
 	private Animation rotate;
 	private Animation flip;
@@ -24,41 +43,35 @@ public class RedShell extends Creature {
 	private TileMap map;
 	private boolean isMoving;
 	
-	public RedShell(int x, int y, TileMap map, MarioSoundManager22050Hz soundManager, boolean isStill) {
+	public RedShell(int x, int y, TileMap map, boolean isStill) {
 		
-		super(x, y, soundManager);
+		super(x, y);
 		this.map = map;
 		setIsAlwaysRelevant(true);
  		
-		BufferedImage stay = ImageManipulator.loadImage("baddies/Red_Shell_1.png");
-		BufferedImage rotate_1 = ImageManipulator.loadImage("baddies/Red_Shell_2.png");
-		BufferedImage rotate_2 = ImageManipulator.loadImage("baddies/Red_Shell_3.png");
-		BufferedImage rotate_3 = ImageManipulator.loadImage("baddies/Red_Shell_4.png");
-		BufferedImage flipped = ImageManipulator.loadImage("baddies/Red_Shell_Flip.png");
-		
-		final class DeadAfterAnimation extends Animation {
-			public void endOfAnimationAction() {
-				kill();
-			}
-		}
-		
-		still = new Animation();
-		rotate = new Animation();
-		flip = new DeadAfterAnimation();
-		
-		still.addFrame(stay, 150);
-		rotate.addFrame(rotate_1, 30);
-		rotate.addFrame(stay, 30);
-		rotate.addFrame(rotate_2, 30);
-		rotate.addFrame(rotate_3, 30);
-		rotate.addFrame(rotate_1, 30);
-		flip.addFrame(flipped, 1200);
-		flip.addFrame(flipped, 1200);
+		still = new Animation(Clips.STILL);
+		rotate = new Animation(Clips.ROTATE);
+		flip = new Animation(Clips.FLIP);
+		setAnimations(still, rotate, flip);
 		
 		wakeUp();
 		isMoving = false;
 		setAnimation(still);
-		dx = 0;
+		setdX(0);
+	}
+	
+	public void writeState(DataOutput out) throws IOException {
+		super.writeState(out);
+		out.writeBoolean(isMoving);
+	}
+	
+	public void readState(DataInput in) throws IOException {
+		super.readState(in);
+		isMoving = in.readBoolean();
+	}
+	
+	protected void endOfAnimationAction(Animation anim) {
+		if(anim == flip) { kill(); }
 	}
 	
 	public boolean isMoving() {
@@ -69,9 +82,9 @@ public class RedShell extends Creature {
 		super.xCollide(p);
 		GameTile tile = map.getTile(p.x, p.y);
 		if(this.isOnScreen()) {
-			soundManager.playBump();
+			events.sound(GameEvents.BUMP);
 			if(tile != null) {
-				tile.doAction();
+				events.tileHit(p.x, p.y);
 			}
 		}
 	}
@@ -80,8 +93,8 @@ public class RedShell extends Creature {
 		setAnimation(flip);
 		setIsFlipped(true);
 		setIsCollidable(false);
-		dy = -.2f;
-		dx = 0;
+		setdY(-.2f);
+		setdX(0);
 	}
 	
 	// if you run or jump on the shell faster, the shell moves faster.
@@ -89,25 +102,25 @@ public class RedShell extends Creature {
 		if(isMoving) {
 			isMoving = false;
 			setAnimation(still);
-			dx = 0;
+			setdX(0);
 		} else {
 			isMoving = true;
 			setAnimation(rotate);
 			if(fromRight) {
 				if(attackerSpeed > .2f) {
-					dx = .24f;
+					setdX(.24f);
 				} else if(attackerSpeed > .16) { 
-					dx = .23f;
+					setdX(.23f);
 				} else {
-					dx = .16f;
+					setdX(.16f);
 				}
 			} else {
 				if(attackerSpeed < -.2f) {
-					dx = -.24f;
+					setdX(-.24f);
 				} else if(attackerSpeed < -.16) {
-					dx = -.23f;
+					setdX(-.23f);
 				} else {
-					dx = -.16f;
+					setdX(-.16f);
 				}
 			}
 		}
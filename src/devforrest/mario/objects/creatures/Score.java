@@ -5,6 +5,7 @@ package devforrest.mario.objects.creatures;
 import java.awt.image.BufferedImage;
 
 import devforrest.mario.core.animation.Animation;
+import devforrest.mario.core.animation.AnimationClip;
 import devforrest.mario.core.tile.TileMap;
 import devforrest.mario.objects.base.Creature;
 import devforrest.mario.util.ImageManipulator;
@@ -13,36 +14,40 @@ import devforrest.mario.util.ImageManipulator;
 
 public class Score extends Creature {
 	
+	// The clip every Score shares, loaded with the first one.
+	private static final class Clips {
+		static final AnimationClip ONE_HUNDRED;
+		static {
+			BufferedImage one_hundred = ImageManipulator.loadImage("items/Score_100_New6.png");
+			ONE_HUNDRED = new AnimationClip(380, one_hundred, one_hundred);
+		}
+	}
+	
 	public Animation oneHundred;
 	
 	public Score(int x, int y) {
 		super(x, y);
 		setIsItem(true);
+		setIsBody(false);
 		
-		dy = -.45f;
+		setdY(-.45f);
 
-		BufferedImage one_hundred = ImageManipulator.loadImage("items/Score_100_New6.png");
-		
-		final class DeadAfterAnimation extends Animation {
-			public void endOfAnimationAction() {
-				kill();
-			}
-		}
-		
-		oneHundred = new DeadAfterAnimation();
-		
-		oneHundred.addFrame(one_hundred, 380);
-		oneHundred.addFrame(one_hundred, 380);	
+		oneHundred = new Animation(Clips.ONE_HUNDRED);
+		setAnimations(oneHundred);
 		setAnimation(oneHundred);
 	}
 	
+	protected void endOfAnimationAction(Animation anim) {
+		kill();
+	}
+	
 	public void updateCreature(TileMap map, int time) {
 		this.update((int) time);
-		y = y + dy * time;
-		if(dy < 0) {
-			dy = dy + .032f;
+		setY(getY() + getdY() * time);
+		if(getdY() < 0) {
+			setdY(getdY() + .032f);
 		} else {
-			dy = 0;
+			setdY(0);
 		}
 	}
 
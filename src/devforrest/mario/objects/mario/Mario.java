@@ -1,24 +1,26 @@
 package devforrest.mario.objects.mario;
 
 
-import java.awt.Point;
 import java.awt.event.KeyEvent;
 import java.awt.image.BufferedImage;
-import java.util.ArrayList;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 import java.util.LinkedList;
 import java.util.List;
 
-import javax.sound.sampled.AudioFormat;
-
 import devforrest.mario.core.GameRenderer;
 import devforrest.mario.core.animation.Animation;
+import devforrest.mario.core.animation.AnimationClip;
 import devforrest.mario.core.animation.CollidableObject;
-import devforrest.mario.core.sound.specific.MarioSoundManager10512Hz;
-import devforrest.mario.core.sound.specific.MarioSoundManager22050Hz;
+import devforrest.mario.core.event.GameEvents;
+import devforrest.mario.core.input.Buttons;
 import devforrest.mario.core.tile.GameTile;
+import devforrest.mario.core.tile.PlatformIndex;
 import devforrest.mario.core.tile.TileMap;
-import devforrest.mario.objects.base.Collision;
+import devforrest.mario.core.tile.TileSweep;
 import devforrest.mario.objects.base.Creature;
+import devforrest.mario.objects.base.CreatureFactory;
 import devforrest.mario.objects.creatures.Coin;
 import devforrest.mario.objects.creatures.Goomba;
 import devforrest.mario.objects.creatures.Mushroom;
@@ -40,8 +42,7 @@ import devforrest.mario.util.ImageManipulator;
 
 public class Mario extends CollidableObject{
 	
-	/* Static Constant Fields.
-	 * Gravity:   Effects the amount of pull objects feel toward the ground. pixels/ms
+	/* Static Constant Fields. Gravity and the terminal fall speed come from the World.
 	 * Friction:  Effects the amount of sliding an object displays before coming to a stop.
 	 * S_X:       Starting X position of Mario.
 	 * S_Y:       Starting Y position of Mario.
@@ -51,13 +52,11 @@ public class Mario extends CollidableObject{
 	 * 
 	 * Terminal_Walking_Dx:  Max speed when Mario is walking.
 	 * Terminal_R3unning_Dx:  Max speed when Mario is running.
-	 * Terminal_Fall_Dy:     Max speed Mario can fall at.
 	 * Walking_Dx_Inc:       The increase in speed per update when walking until terminal runnning is reached.
 	 * Running_Dx_Inc:       The increase in speed per update when running until terminal walking is reached.
 	 * Start_Run_Anim_Thres: The speed where mario switches to the running animation.
 	 */
 
-	public static final float GRAVITY = 0.0008f;
 	public static final float FRICTION = 0.0004f;                   
 	private static final int STARTING_X = 25;
 	private static final int STARTING_Y = 140;
@@ -69,7 +68,6 @@ public class Mario extends CollidableObject{
 	private static final float TERMINAL_RUNNING_DX = .21f;
 	private static final float START_RUN_ANIM_THRESHOLD = .2f;
 	private static final float RUNNING_DX_INC = .001f;
-	private static final float TERMINAL_FALL_DY = .22f;
 	private static final int STARTING_LIFE = 1;
 	private static final int ANIM_TIME = 125;
 	
@@ -78,6 +76,8 @@ public class Mario extends CollidableObject{
 	
 	/* Boolean variables used to identify which keys are pressed. */
 	private boolean isDownHeld, isRightHeld, isLeftHeld, isShiftHeld, isSpaceHeld;
+	/* The Buttons held during the last tick, and the direction pressed last. */
+	private int buttons, lastDirection;
 	/* Boolean variables used to identify where Mario is with respect to Platforms. */
 	private boolean isRightOfPlatform, isLeftOfPlatform, isBelowPlatform, isAbovePlatform;
 	/* Boolean variables used to identify where Mario is with respect to Slopes. */
@@ -93,17 +93,20 @@ public class Mario extends CollidableObject{
 	private int health;
 	private int grace;
 	private Platform platform;
-	private MarioSoundManager10512Hz soundManager2;
+	private final TileSweep sweep = new TileSweep(); // moves mario through the tiles
 	
-	public Mario(MarioSoundManager22050Hz soundManager) {
+	/**
+	 * Creates Mario at his starting position. His sounds are published to the GameEvents of
+	 * the map he is made the player of.
+	 */
+	public Mario() {
 		
-		super(STARTING_X, STARTING_Y, soundManager);
+		super(STARTING_X, STARTING_Y);
 		
 		setIsJumping(true);
 		dy = STARTING_DY;
 		jumpHeight = INITIAL_JUMP_HEIGHT;
 		health = STARTING_LIFE;
-		soundManager2 = new MarioSoundManager10512Hz(new AudioFormat(10512, 8, 1, true, true));
 		
 		BufferedImage[] l = { ImageManipulator.loadImage("mario/Mario_Big_Left_Still.png"), ImageManipulator.loadImage("mario/Mario_Big_Left_1.png"),
 				ImageManipulator.loadImage("mario/Mario_Big_Left_2.png"), ImageManipulator.loadImage("mario/Mario_Big_Left_Run_1.png"),
@@ -116,26 +119,89 @@ public class Mario extends CollidableObject{
 		}
 				
 		// Create left animations.
-    	stillLeft = new Animation(ANIM_TIME).addFrame(l[0]);
-		walkLeft = new Animation(ANIM_TIME).addFrame(l[1]).addFrame(l[2]);
-		runLeft = new Animation(ANIM_TIME - 30).addFrame(l[3]).addFrame(l[4]);
-		crouchLeft = new Animation(ANIM_TIME).addFrame(l[5]);
-		jumpLeft = new Animation(ANIM_TIME).addFrame(l[6]);
-		changeLeft = new Animation(ANIM_TIME).addFrame(l[7]);
+    	stillLeft = new Animation(new AnimationClip(ANIM_TIME, l[0]));
+		walkLeft = new Animation(new AnimationClip(ANIM_TIME, l[1], l[2]));
+		runLeft = new Animation(new AnimationClip(ANIM_TIME - 30, l[3], l[4]));
+		crouchLeft = new Animation(new AnimationClip(ANIM_TIME, l[5]));
+		jumpLeft = new Animation(new AnimationClip(ANIM_TIME, l[6]));
+		changeLeft = new Animation(new AnimationClip(ANIM_TIME, l[7]));
 		
 		// Create right animations.
-		stillRight = new Animation(ANIM_TIME).addFrame(r[0]);
-		walkRight = new Animation(ANIM_TIME).addFrame(r[1]).addFrame(r[2]);
-		runRight = new Animation(ANIM_TIME - 30).addFrame(r[3]).addFrame(r[4]);
-		crouchRight = new Animation(ANIM_TIME).addFrame(r[5]);
-		jumpRight = new Animation(ANIM_TIME).addFrame(r[6]);
-		changeRight = new Animation(ANIM_TIME).addFrame(r[7]);
+		stillRight = new Animation(new AnimationClip(ANIM_TIME, r[0]));
+		walkRight = new Animation(new AnimationClip(ANIM_TIME, r[1], r[2]));
+		runRight = new Animation(new AnimationClip(ANIM_TIME - 30, r[3], r[4]));
+		crouchRight = new Animation(new AnimationClip(ANIM_TIME, r[5]));
+		jumpRight = new Animation(new AnimationClip(ANIM_TIME, r[6]));
+		changeRight = new Animation(new AnimationClip(ANIM_TIME, r[7]));
 		
+		setAnimations(stillLeft, walkLeft, runLeft, crouchLeft, jumpLeft, changeLeft,
+				stillRight, walkRight, runRight, crouchRight, jumpRight, changeRight);
 		setAnimation(stillRight);
 		currLeftAnim = walkLeft;
 		currRightAnim = walkRight;
 	}
 	
+	/**
+	 * @return the Platform Mario is standing on, or null.
+	 */
+	public Platform getPlatform() {
+		return platform;
+	}
+	
+	/**
+	 * @modifies the Platform Mario is standing on. Used when a saved state is restored.
+	 */
+	public void setPlatform(Platform platform) {
+		this.platform = platform;
+	}
+	
+	/**
+	 * Writes Mario's movement, keys, animations and health. The Platform he stands on is written 
+	 * by the TileMap, which knows the ids of its creatures.
+	 */
+	public void writeState(DataOutput out) throws IOException {
+		super.writeState(out);
+		out.writeFloat(jumpHeight);
+		out.writeShort((isDownHeld ? 1 : 0) | (isRightHeld ? 2 : 0) | (isLeftHeld ? 4 : 0) | (isShiftHeld ? 8 : 0)
+				| (isSpaceHeld ? 16 : 0) | (isRightOfPlatform ? 32 : 0) | (isLeftOfPlatform ? 64 : 0)
+				| (isBelowPlatform ? 128 : 0) | (isAbovePlatform ? 256 : 0) | (isUpSlope ? 512 : 0)
+				| (isDownSlope ? 1024 : 0) | (onSlopedTile ? 2048 : 0) | (isJumping ? 4096 : 0)
+				| (frictionLock ? 8192 : 0) | (isInvisible ? 16384 : 0));
+		out.writeByte(animationIndex(currLeftAnim));
+		out.writeByte(animationIndex(currRightAnim));
+		out.writeByte(buttons);
+		out.writeByte(lastDirection);
+		out.writeInt(health);
+		out.writeInt(grace);
+	}
+	
+	public void readState(DataInput in) throws IOException {
+		super.readState(in);
+		jumpHeight = in.readFloat();
+		int flags = in.readShort();
+		isDownHeld = (flags & 1) != 0;
+		isRightHeld = (flags & 2) != 0;
+		isLeftHeld = (flags & 4) != 0;
+		isShiftHeld = (flags & 8) != 0;
+		isSpaceHeld = (flags & 16) != 0;
+		isRightOfPlatform = (flags & 32) != 0;
+		isLeftOfPlatform = (flags & 64) != 0;
+		isBelowPlatform = (flags & 128) != 0;
+		isAbovePlatform = (flags & 256) != 0;
+		isUpSlope = (flags & 512) != 0;
+		isDownSlope = (flags & 1024) != 0;
+		onSlopedTile = (flags & 2048) != 0;
+		isJumping = (flags & 4096) != 0;
+		frictionLock = (flags & 8192) != 0;
+		isInvisible = (flags & 16384) != 0;
+		currLeftAnim = animationAt(in.readByte());
+		currRightAnim = animationAt(in.readByte());
+		buttons = in.readUnsignedByte();
+		lastDirection = in.readUnsignedByte();
+		health = in.readInt();
+		grace = in.readInt();
+	}
+	
 	public int getHealth() {
 		return health;
 	}
@@ -198,10 +264,14 @@ public class Mario extends CollidableObject{
 	 */
 	private Platform getPlatformCollisionX(TileMap map, float oldX, float oldY, float newX, float newY) {
 		
-		for(Platform platform : map.platforms()) {
-	    	float width = getWidth();
-	    	float height = getHeight();
+		PlatformIndex platforms = map.platformIndex();
+    	float width = getWidth();
+    	float height = getHeight();
+    	float right = Math.max(oldX, newX) + width;
+		for(int i = platforms.first(Math.min(oldX, newX)); i < platforms.size(); i++) {
+			Platform platform = platforms.get(i);
 	    	float pX = platform.getX();
+	    	if(pX > right) { break; }
 	    	float pY = platform.getY();
 	    	float oldpX = platform.getOldX();
 	    	float pWidth = platform.getWidth();
@@ -244,10 +314,13 @@ public class Mario extends CollidableObject{
 	 * direction.
 	 */
 	private Platform getPlatformCollisionY(TileMap map, float oldX, float oldY, float newX, float newY) {
-		for(Platform platform : map.platforms()) {
-	    	float width = getWidth();
-	    	float height = getHeight();
+		PlatformIndex platforms = map.platformIndex();
+    	float width = getWidth();
+    	float height = getHeight();
+		for(int i = platforms.first(oldX); i < platforms.size(); i++) {
+			Platform platform = platforms.get(i);
 	    	float pX = platform.getX();
+	    	if(pX > oldX + width) { break; }
 	    	float pY = platform.getY();
 	    	float oldpY = platform.getOldY();
 	    	float pWidth = platform.getWidth();
@@ -264,7 +337,7 @@ public class Mario extends CollidableObject{
 	    	   newY + height <= pY + pHeight &&
 	    	   oldX + width >= pX &&
 	    	   oldX <= pX + pWidth &&
-	    	   oldY + height <= oldpY) { 
+	    	   oldY + height <= Math.max(pY, oldpY) + 1) { // the platform may have carried mario down
 		    	this.isAbovePlatform = true;
 		    	this.isBelowPlatform = false;
 		    	return platform;
@@ -342,7 +415,7 @@ public class Mario extends CollidableObject{
 		if(grace != 0) { grace--; }
 		
 		// Apply gravity.
-		if(getdY() < TERMINAL_FALL_DY) { setdY(getdY() + GRAVITY * time); } 
+		if(getdY() < map.getWorld().getTerminalFallDy()) { setdY(getdY() + map.getWorld().getGravity() * time); } 
 		
 		// Slowly reset offset values caused by slopes.
 		if(getOffsetX() != 0) { setOffsetX(getOffsetX() - 1);} 
@@ -350,27 +423,35 @@ public class Mario extends CollidableObject{
 		// Calculate the new X position.
 		float oldX = getX();
 		float newXCalc = oldX + getdX()*time;
-		if(platform != null) { newXCalc += platform.getdX() * time; } 
 		// Calculate the new Y position.
 		float oldY = getY();
 		float newYCalc = oldY + getdY()*time;
 		//if(platform != null) { newYCalc = platform.getY() - getHeight(); }
 		
-		// Calculate all the tile collisions.
-		ArrayList<Point> xTile = GameRenderer.getTileCollisionAll(map, this, getX(), getY(), newXCalc, getY());
-		ArrayList<Point> yTile = GameRenderer.getTileCollisionAll(map, this, getX(), getY(), getX(), newYCalc); 
-		int numOfXTiles = xTile.size();
-		int numOfYTiles = yTile.size();
+		// Mario stops at the sides of the map, and doesn't fall through its bottom.
+		float moveX = newXCalc - oldX;
+		float moveY = newYCalc - oldY;
+		boolean atMapSide = oldX < 0 || oldX > GameRenderer.tilesToPixels(map.getWidth()) - 21;
+		boolean belowMap = oldY > GameRenderer.tilesToPixels(map.getHeight()) - getHeight();
+		if(atMapSide) { moveX = 0; }
+		if(belowMap) { moveY = 0; }
+		
+		// Sweep through the tiles in X and Y at once, so no step is long enough to pass through one.
+		int sweptHeight = getHeight();
+		int contacts = sweep.move(map, oldX, oldY, getWidth(), sweptHeight, moveX, moveY);
+		onSlopedTile = sweep.isOnSlope();
 
 		Platform platformX = getPlatformCollisionX(map, oldX, oldY, newXCalc, newYCalc);
 		Platform platformY = getPlatformCollisionY(map, oldX, oldY, newXCalc, newYCalc);
 		
 		//this.platformStatus();
 		
-		if(isAbovePlatform) {
-			platform = platformY;
-		} else {
-			platform = null;
+		// Ride the platform mario stands on: it carries him from now on.
+		Platform standingOn = isAbovePlatform ? platformY : null;
+		if(standingOn != platform) {
+			if(platform != null) { platform.removeRider(this); }
+			if(standingOn != null) { standingOn.addRider(this); }
+			platform = standingOn;
 		}
 		
 		// Manage collision in the X direction.
@@ -381,20 +462,10 @@ public class Mario extends CollidableObject{
 			setX(GameRenderer.tilesToPixels(map.getWidth()) - 21);
 			slowSpeed(20);
 		} else {
-			if(numOfXTiles == 0) { // No tile collision in the X direction
-				setX(newXCalc);
-			} else if(numOfXTiles >= 1) { // Tile collision in the X direction. For now, only worry
-										  // about the first tile being collided with.
-				
-				Point xtp = xTile.get(0); // xTilePoint
-				Collision c = Creature.tileCollisionX(map.getTile(xtp.x, xtp.y), this);
+			setX(sweep.getX());
+			if((contacts & (TileSweep.LEFT | TileSweep.RIGHT)) != 0) { // Tile collision in the X direction.
 				toggleMovement(1);
 				frictionLock = false;
-				if(c == Collision.EAST) { // Left of a tile.
-					setX(GameRenderer.tilesToPixels(xtp.x) - getWidth());
-				} else if(c == Collision.WEST) { // Right of a tile.
-					setX(GameRenderer.tilesToPixels(xtp.x + 1));
-				}
 				if(!isAbovePlatform) { setdX(0); } // Stop movement only if mario isn't on a Platform
 												   // Why do this? If I don't mario gets frozen to tiles
 												   // he X collides with while on a platform.
@@ -416,28 +487,26 @@ public class Mario extends CollidableObject{
 		boolean upperCollision = false; // will check if mario is above a tile
 		if(oldY > GameRenderer.tilesToPixels(map.getHeight()) - getHeight()) { // Off the bottom of the map.
 			System.out.println("Mario has died.");
-		} else { // No Y collision, allow Y position to update uninterrupted.
-			if(numOfYTiles == 0) {
-				setY(newYCalc);
+		} else {
+			// Animations since the sweep may have changed his height: keep his feet where the sweep 
+			// left them, unless he hit his head.
+			setY(sweep.getY());
+			if((contacts & TileSweep.CEILING) == 0) { setY(getY() + sweptHeight - getHeight()); }
+			if((contacts & (TileSweep.FLOOR | TileSweep.CEILING)) == 0) { // No Y collision.
 				setIsJumping(true);
 				jump();
-			} else if(numOfYTiles >= 1) { // Y collision detected with a tile 
-				Point ytp = yTile.get(0); // yTilePoint
-				Collision c = Creature.tileCollisionY(map.getTile(ytp.x, ytp.y), this);
+			} else if((contacts & TileSweep.FLOOR) != 0) { // Downward collision with tile.
 				fixJumping();
-				if(c == Collision.NORTH) { // Downward collision with tile.
-					upperCollision = true;
-					setIsJumping(false);
-					setY(GameRenderer.tilesToPixels(ytp.y) - getHeight()); 
-				} else if (c == Collision.SOUTH) { // Upward collision with tile.
-					for(Point p : yTile) {
-						GameTile tile = map.getTile(p.x, p.y);
-						if(tile != null) { tile.doAction(); }
-					}
-					setY(GameRenderer.tilesToPixels(ytp.y + 1));
-					soundManager.playBump();
-					accelerateFall(); 
+				upperCollision = true;
+				setIsJumping(false);
+			} else { // Upward collision with tile.
+				fixJumping();
+				setY(sweep.getY()); // his head stays against the tile in the new animation
+				for(int i = 0; i < sweep.getTouchedCount(); i++) {
+					events.tileHit(sweep.getTouchedX(i), sweep.getTouchedY(i));
 				}
+				events.sound(GameEvents.BUMP);
+				accelerateFall(); 
 			}
 			// Platform collision in Y direction.
 			if (platformY != null && !upperCollision) { 
@@ -446,7 +515,7 @@ public class Mario extends CollidableObject{
 					setIsJumping(false);
 					setY(platformY.getY() - getHeight());
 				} else if (isBelowPlatform) { // Upward collision with platform.
-					soundManager.playBump();
+					events.sound(GameEvents.BUMP);
 					setY(platformY.getY() + platformY.getHeight() + 1);
 					accelerateFall(); 
 				}
@@ -461,7 +530,7 @@ public class Mario extends CollidableObject{
 			if(c instanceof Goomba || c instanceof RedKoopa || c instanceof RedShell) {
 				c.flip();
 				toRemove.add(c);
-				soundManager.playKick();
+				events.sound(GameEvents.KICK);
 			}  
 		}
 		for(Creature c : toRemove) { tile.collidingCreatures().remove(c); }
@@ -477,41 +546,40 @@ public class Mario extends CollidableObject{
 			
 				if(creature instanceof Coin) {
 					creature.kill();
-					soundManager.playCoin();
-					map.creaturesToAdd().add(new Score(Math.round(creature.getX()), Math.round(creature.getY()+13)));
+					events.sound(GameEvents.COIN);
+					events.spawn(CreatureFactory.SCORE, 0, Math.round(creature.getX()), Math.round(creature.getY()+13));
 					
 				} else if(creature instanceof Mushroom) {
-					soundManager2.playCelebrate();
+					events.sound(GameEvents.CELEBRATE);
 					creature.kill();
 					if(health == 3) {
-					soundManager.playBonusPoints();
-					map.creaturesToAdd().add(new Score(Math.round(creature.getX()), Math.round(creature.getY()+13)));
+					events.sound(GameEvents.BONUS_POINTS);
+					events.spawn(CreatureFactory.SCORE, 0, Math.round(creature.getX()), Math.round(creature.getY()+13));
 					} else {
-						soundManager.playHealthUp();
+						events.sound(GameEvents.HEALTH_UP);
 						health++;
 					}	
 				} else if(creature instanceof Goomba && isJumping() && getdY() > 0) {
 					((Goomba) creature).jumpedOn(); // kill goomba
 					this.creatureHop();
-					soundManager.playKick();
+					events.sound(GameEvents.KICK);
 					
 				} else if(creature instanceof RedKoopa && isJumping() && getdY() > 0) {
 					((RedKoopa) creature).jumpedOn();
 					creatureHop();
-					soundManager.playKick();
-					map.creaturesToAdd().add(new RedShell(Math.round(creature.getX()), 
-							Math.round(creature.getY()+13), map, soundManager, true));
+					events.sound(GameEvents.KICK);
+					events.spawn(CreatureFactory.RED_SHELL, 0, Math.round(creature.getX()), Math.round(creature.getY()+13));
 				} else if(creature instanceof RedShell) {
 					
 					if(this.isJumping() && this.getdY() > 0) {
 						((RedShell) creature).jumpedOn(this.getdX() > 0, this.getdX());
 						creatureHop();
-						soundManager.playKick();	
+						events.sound(GameEvents.KICK);	
 						
 					} else if(!isJumping() && !((RedShell) creature).isMoving()) {
 						boolean right = (this.getdX() > 0);
 						((RedShell) creature).jumpedOn(right, this.getdX());
-						soundManager.playKick();
+						events.sound(GameEvents.KICK);
 						// offset to avoid instant death, needed for sure
 						if(right) {
 							setX(this.getX() - 3);
@@ -533,13 +601,13 @@ public class Mario extends CollidableObject{
 			health--;
 			if(health <= 0) {
 				if(health == 0) {
-					soundManager2.playHurt();
-					soundManager.playHealthDown();
+					events.sound(GameEvents.HURT);
+					events.sound(GameEvents.HEALTH_DOWN);
 				}
 				System.out.println("Mario Dies");
 			} else {
-				soundManager2.playHurt();
-				soundManager.playHealthDown();
+				events.sound(GameEvents.HURT);
+				events.sound(GameEvents.HEALTH_DOWN);
 				grace = 80;
 			}
 		}
@@ -607,29 +675,69 @@ public class Mario extends CollidableObject{
     	}
 	}
 
+    /**
+     * Applies the Buttons held during this tick. Buttons that changed since the last tick are
+     * released first and then pressed, each in the order of Buttons.ALL, so the result only
+     * depends on the two masks. The direction pressed last is pressed again every tick it stays 
+     * held, like the keyboard's auto repeat used to do, so the walking animation still turns into
+     * the running one.
+     */
+    public void applyInput(int mask) {
+    	int changed = buttons ^ mask;
+    	for(int button : Buttons.ALL) {
+    		if((changed & button) != 0 && (mask & button) == 0) { release(button); }
+    	}
+    	for(int button : Buttons.ALL) {
+    		if((changed & button) != 0 && (mask & button) != 0) {
+    			press(button);
+    			if(button == Buttons.LEFT || button == Buttons.RIGHT || button == Buttons.DOWN) {
+    				lastDirection = button;
+    			}
+    		}
+    	}
+    	if((changed & lastDirection) == 0 && (mask & lastDirection) != 0) {
+    		press(lastDirection);
+    	}
+    	buttons = mask;
+    }
+    
+    /**
+     * Holds down the game button of the key. Input should be applied once per tick with 
+     * applyInput() instead, this remains for Sprite compatibility.
+     */
     public void keyPressed(KeyEvent e) {
-        int key = e.getKeyCode();
+    	applyInput(buttons | Buttons.fromKeyCode(e.getKeyCode()));
+    }
+    
+    /**
+     * Lets go of the game button of the key.
+     */
+    public void keyReleased(KeyEvent e) {
+    	applyInput(buttons & ~Buttons.fromKeyCode(e.getKeyCode()));
+    }
 
-        if (key == KeyEvent.VK_LEFT) {
+    private void press(int key) {
+
+        if (key == Buttons.LEFT) {
     		isLeftHeld = true;
     		if(!isDownHeld) {
     			setAnimation(currLeftAnim);
     		}
         }
 
-        if(key == KeyEvent.VK_RIGHT) {
+        if(key == Buttons.RIGHT) {
     		isRightHeld = true;
     		if(!isDownHeld) {
     			setAnimation(currRightAnim);
     		}
         }
         
-        if(key == KeyEvent.VK_SHIFT) {
+        if(key == Buttons.RUN) {
         	this.isShiftHeld = true;
         }
       
         
-        if(key == KeyEvent.VK_DOWN) {
+        if(key == Buttons.DOWN) {
         	isDownHeld = true;
         	if(currentAnimation() == currLeftAnim || currentAnimation() == stillLeft || currentAnimation() == crouchLeft) {
         		setAnimation(crouchLeft);
@@ -639,10 +747,10 @@ public class Mario extends CollidableObject{
         	}
         }
         
-        if(key == KeyEvent.VK_SPACE) {	
+        if(key == Buttons.JUMP) {	
         	if(!isJumping && !isSpaceHeld) {
         		isSpaceHeld = true;
-        		soundManager.playJump();
+        		events.sound(GameEvents.JUMP);
 	        	isJumping = true;
 	        	dy = jumpHeight;
         	}
@@ -650,10 +758,9 @@ public class Mario extends CollidableObject{
 
     }
     
-    public void keyReleased(KeyEvent e) {
-        int key = e.getKeyCode();
+    private void release(int key) {
 
-        if (key == KeyEvent.VK_LEFT) {
+        if (key == Buttons.LEFT) {
         	isLeftHeld = false;
         	if(!isJumping) {
         		setAnimation(stillLeft);
@@ -661,24 +768,24 @@ public class Mario extends CollidableObject{
         	
         }
 
-        if(key == KeyEvent.VK_RIGHT) {
+        if(key == Buttons.RIGHT) {
         	isRightHeld = false;
         	if(!isJumping) {
         		setAnimation(stillRight);
         	}
         }
         
-        if(key == KeyEvent.VK_SHIFT) {
+        if(key == Buttons.RUN) {
         	this.isShiftHeld = false;
         }
         
         // responsible for jumps of different heights
-        if(key == KeyEvent.VK_SPACE) {
+        if(key == Buttons.JUMP) {
         	isSpaceHeld = false;
         	dy = this.getdY()/2.5f;
         }
 
-        if(key == KeyEvent.VK_DOWN) {
+        if(key == Buttons.DOWN) {
         	isDownHeld = false;
         	if (currentAnimation() == crouchLeft || currentAnimation() == currLeftAnim || currentAnimation() == changeLeft) {
         		setAnimation(stillLeft);
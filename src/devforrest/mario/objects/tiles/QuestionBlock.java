@@ -1,20 +1,27 @@
 package devforrest.mario.objects.tiles;
 
-import java.awt.image.BufferedImage;
-import java.util.Random;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 
 import devforrest.mario.core.animation.Animation;
-import devforrest.mario.core.sound.specific.MarioSoundManager22050Hz;
+import devforrest.mario.core.animation.AnimationClip;
+import devforrest.mario.core.event.GameEvents;
 import devforrest.mario.core.tile.GameTile;
 import devforrest.mario.core.tile.TileMap;
-import devforrest.mario.objects.creatures.Coin;
-import devforrest.mario.objects.creatures.Mushroom;
-import devforrest.mario.objects.creatures.Score;
+import devforrest.mario.objects.base.CreatureFactory;
 import devforrest.mario.util.ImageManipulator;
 
 public class QuestionBlock extends GameTile {
 
-	private MarioSoundManager22050Hz soundManager;
+	// The clips every QuestionBlock shares, loaded with the first one.
+	private static final class Clips {
+		static final AnimationClip ACTIVE = new AnimationClip(150, ImageManipulator.loadImage("items/Question_Block_0.png"), 
+				ImageManipulator.loadImage("items/Question_Block_1.png"), ImageManipulator.loadImage("items/Question_Block_2.png"), 
+				ImageManipulator.loadImage("items/Question_Block_3.png"));
+		static final AnimationClip DEAD = new AnimationClip(2000, ImageManipulator.loadImage("items/Question_Block_Dead.png"));
+	}
+	
 	private TileMap map;
 	
 	private Animation active;
@@ -23,49 +30,58 @@ public class QuestionBlock extends GameTile {
 	private boolean hasCoin;
 	private boolean hasMushroom;
 	
-	public QuestionBlock(int pixelX, int pixelY, TileMap map, MarioSoundManager22050Hz soundManager, boolean hasCoin,
+	public QuestionBlock(int pixelX, int pixelY, TileMap map, boolean hasCoin,
 			boolean hasMushroom) {
 		
 		// int pixelX, int pixelY, Animation anim, Image img
 		super(pixelX, pixelY, null, null);
 		
-		setIsSloped(false);
 		isActive = true;
 		this.hasCoin = hasCoin;
 		this.hasMushroom = hasMushroom;
-		this.soundManager = soundManager;
 		this.map = map;
 
-		BufferedImage q[] = { ImageManipulator.loadImage("items/Question_Block_0.png"), ImageManipulator.loadImage("items/Question_Block_1.png"),
-				ImageManipulator.loadImage("items/Question_Block_2.png"), ImageManipulator.loadImage("items/Question_Block_3.png"),
-				ImageManipulator.loadImage("items/Question_Block_Dead.png") };
-		
-		Random r = new Random();
-		active = new Animation(r.nextInt(20) + 140).addFrame(q[0]).addFrame(q[1]).addFrame(q[2]).addFrame(q[3]);
-		dead = new Animation(2000).addFrame(q[4]);
+		// The active blocks turn with the animation clock, each a random part of the turn ahead.
+		int phase = map.random().nextInt(20) * Clips.ACTIVE.getDuration() / 20;
+		active = new Animation(Clips.ACTIVE, map.getWorld().getAnimationClock(), phase);
+		dead = new Animation(Clips.DEAD);
+		setAnimations(active, dead);
 		setAnimation(active);
 	}
 	
+	public void writeState(DataOutput out) throws IOException {
+		super.writeState(out);
+		out.writeBoolean(isActive);
+	}
+	
+	public void readState(DataInput in) throws IOException {
+		super.readState(in);
+		isActive = in.readBoolean();
+	}
+	
 	public void update(int time) {
 		super.update(time);
 		if(getOffsetY() != 0) { setOffsetY(getOffsetY() + 2); }
 	}
 	
+	// Active while it is bumped up.
+	public boolean isActive() {
+		return getOffsetY() != 0;
+	}
+	
 	public void doAction() {
 		if(isActive) {
 			if(hasCoin) {
 				setOffsetY(-10);
-				soundManager.playCoin();
-				Coin newCoin = new Coin(getPixelX(), getPixelY());
-				Score score = new Score(getPixelX(), getPixelY());
-				map.creaturesToAdd().add(newCoin);
-				map.creaturesToAdd().add(score);
-				newCoin.shoot();
+				GameEvents events = map.getWorld().getEvents();
+				events.sound(GameEvents.COIN);
+				events.spawn(CreatureFactory.COIN, GameEvents.SHOT, getPixelX(), getPixelY());
+				events.spawn(CreatureFactory.SCORE, 0, getPixelX(), getPixelY());
 			} else if(hasMushroom) {
 				setOffsetY(-10);
-				soundManager.playItemSprout();
-				Mushroom shroom = new Mushroom(getPixelX(), getPixelY()-26);
-				map.creaturesToAdd().add(shroom);
+				GameEvents events = map.getWorld().getEvents();
+				events.sound(GameEvents.ITEM_SPROUT);
+				events.spawn(CreatureFactory.MUSHROOM, 0, getPixelX(), getPixelY()-26);
 			}
 			setAnimation(dead);
 			isActive = false;
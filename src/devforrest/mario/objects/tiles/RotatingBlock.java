@@ -4,6 +4,7 @@ package devforrest.mario.objects.tiles;
 import java.awt.image.BufferedImage;
 
 import devforrest.mario.core.animation.Animation;
+import devforrest.mario.core.animation.AnimationClip;
 import devforrest.mario.core.tile.GameTile;
 import devforrest.mario.util.ImageManipulator;
 
@@ -11,6 +12,30 @@ import devforrest.mario.util.ImageManipulator;
 
 public class RotatingBlock extends GameTile {
 	
+	// The clips every RotatingBlock shares, loaded with the first one.
+	private static final class Clips {
+		static final AnimationClip ROTATE, IDLE;
+		static {
+			BufferedImage rotate_1 = ImageManipulator.loadImage("items/Rotating_Block_Hit_1.png");
+			BufferedImage rotate_2 = ImageManipulator.loadImage("items/Rotating_Block_Hit_2.png");
+			BufferedImage rotate_3 = ImageManipulator.loadImage("items/Rotating_Block_Hit_3.png");
+			BufferedImage still = ImageManipulator.loadImage("items/Rotating_Block_Still.png");
+			
+			AnimationClip.Builder rotate = new AnimationClip.Builder(90);
+			int rotateTime = 90;
+			for(int i = 1; i <= 3; i++) {
+				for(int j = 1; j <= 3; j++) {
+					rotate.addFrame(rotate_1, rotateTime);
+					rotate.addFrame(rotate_2, rotateTime);
+					rotate.addFrame(rotate_3, rotateTime);
+				}
+				rotateTime += 90;
+			}
+			ROTATE = rotate.build();
+			IDLE = new AnimationClip(10000, still);
+		}
+	}
+	
 	private Animation rotate;
 	private Animation idle;
 	
@@ -18,35 +43,23 @@ public class RotatingBlock extends GameTile {
 		
 		// int pixelX, int pixelY, Animation anim, Image img, boolean isUpdateable
 		super(pixelX, pixelY, null, null);
-		setIsSloped(false);
-		
-		BufferedImage rotate_1 = ImageManipulator.loadImage("items/Rotating_Block_Hit_1.png");
-		BufferedImage rotate_2 = ImageManipulator.loadImage("items/Rotating_Block_Hit_2.png");
-		BufferedImage rotate_3 = ImageManipulator.loadImage("items/Rotating_Block_Hit_3.png");
-		BufferedImage still = ImageManipulator.loadImage("items/Rotating_Block_Still.png");
-		
-     	final class RotateAnimation extends Animation {
-     		public void endOfAnimationAction() {
-     			setAnimation(idle);
-     			setIsCollidable(true);
-     		}
-		}
-		
-		idle = new Animation(10000).addFrame(still);
-		rotate = new RotateAnimation();
 		
-		int rotateTime = 90;
-		for(int i = 1; i <= 3; i++) {
-			for(int j = 1; j <= 3; j++) {
-				rotate.addFrame(rotate_1, rotateTime);
-				rotate.addFrame(rotate_2, rotateTime);
-				rotate.addFrame(rotate_3, rotateTime);
-			}
-			rotateTime += 90;
-		}
+		idle = new Animation(Clips.IDLE);
+		rotate = new Animation(Clips.ROTATE);
+		setAnimations(idle, rotate);
 		setAnimation(idle);
 	}
 	
+	protected void endOfAnimationAction(Animation anim) {
+		setAnimation(idle);
+		setIsCollidable(true);
+	}
+	
+	// Active while it turns.
+	public boolean isActive() {
+		return currentAnimation() == rotate;
+	}
+	
 	public void doAction() {
 		setAnimation(rotate);
 		setIsCollidable(false);
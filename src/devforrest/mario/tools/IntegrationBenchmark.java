@@ -0,0 +1,118 @@
+package devforrest.mario.tools;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+import devforrest.mario.core.GameLoader;
+import devforrest.mario.core.World;
+import devforrest.mario.core.tile.TileMap;
+import devforrest.mario.objects.base.Creature;
+import devforrest.mario.objects.base.CreatureStore;
+import devforrest.mario.objects.creatures.Goomba;
+import devforrest.mario.objects.creatures.RedKoopa;
+
+/**
+ * IntegrationBenchmark compares the batch and the one at a time paths of 
+ * CreatureStore.integrate() on a crowd of awake goombas and koopas, some of them flipped,
+ * and checks that they leave the store in the same state. Each round integrates the crowd for a number of 
+ * ticks and then puts every creature back in the state it started in, so every round measures the same work; 
+ * the first rounds let the JIT compile both paths.
+ * 
+ * Usage: java devforrest.mario.tools.IntegrationBenchmark [map-file] [creatures] [ticks] [rounds]
+ * 
+ * Run it from the game's directory, so the map and images are found.
+ */
+
+public class IntegrationBenchmark {
+	
+	private static final int PERIOD = 20;
+	
+	public static void main(String[] args) throws IOException {
+		String mapFile = (args.length > 0) ? args[0] : "maps/map2.txt";
+		int creatures = (args.length > 1) ? Integer.parseInt(args[1]) : 10000;
+		int ticks = (args.length > 2) ? Integer.parseInt(args[2]) : 50;
+		int rounds = (args.length > 3) ? Integer.parseInt(args[3]) : 20;
+		
+		TileMap map = new GameLoader().loadMap(mapFile, 1, new World("benchmark"));
+		int width = map.getWidth() * 16;
+		for(int i = 0; i < creatures; i++) {
+			int x = (i * 7) % width;
+			int y = (i / (width / 7)) % (map.getHeight() * 16);
+			Creature c = (i % 2 == 0) ? new Goomba(x, y, map.random()) : new RedKoopa(x, y, map.random());
+			map.addCreature(c);
+			c.wakeUp();
+			if(i % 50 == 0) { c.flip(); } // a few fall through everything
+		}
+		CreatureStore store = map.creatureStore();
+		int[] slots = new int[store.size()];
+		for(int i = 0; i < slots.length; i++) {
+			slots[i] = i;
+		}
+		byte[] start = snapshot(store);
+		
+		System.out.println(store.size() + " creatures in " + mapFile + ", " + ticks + " ticks per round");
+		for(int round = 0; round < rounds; round++) {
+			restore(store, start);
+			long t = System.nanoTime();
+			for(int tick = 0; tick < ticks; tick++) {
+				store.integrateEach(slots, slots.length, map, PERIOD);
+			}
+			long each = System.nanoTime() - t;
+			float[] eachState = save(store);
+			
+			restore(store, start);
+			t = System.nanoTime();
+			for(int tick = 0; tick < ticks; tick++) {
+				store.integrate(slots, slots.length, map, PERIOD);
+			}
+			long batch = System.nanoTime() - t;
+			
+			boolean same = Arrays.equals(eachState, save(store));
+			System.out.println("Round " + (round + 1) + ": one at a time " + each / 1000 / ticks 
+					+ " us/tick, batch " + batch / 1000 / ticks + " us/tick" + (same ? "" : ", RESULTS DIFFER"));
+			if(!same) { System.exit(2); }
+		}
+		restore(store, start);
+	}
+	
+	// the position, speed, move and life of every creature in store
+	private static float[] save(CreatureStore store) {
+		float[] state = new float[store.size() * 7];
+		for(int i = 0; i < store.size(); i++) {
+			Creature c = store.get(i);
+			state[i * 7] = c.getX();
+			state[i * 7 + 1] = c.getY();
+			state[i * 7 + 2] = c.getdX();
+			state[i * 7 + 3] = c.getdY();
+			state[i * 7 + 4] = store.getMoveX(i);
+			state[i * 7 + 5] = store.getMoveY(i);
+			state[i * 7 + 6] = c.isAlive() ? 1 : 0;
+		}
+		return state;
+	}
+	
+	// the state of every creature in store, as a quick save writes it, and its move
+	private static byte[] snapshot(CreatureStore store) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		DataOutputStream out = new DataOutputStream(bytes);
+		for(int i = 0; i < store.size(); i++) {
+			store.get(i).writeState(out);
+			out.writeFloat(store.getMoveX(i));
+			out.writeFloat(store.getMoveY(i));
+		}
+		out.close();
+		return bytes.toByteArray();
+	}
+	
+	private static void restore(CreatureStore store, byte[] snapshot) throws IOException {
+		DataInputStream in = new DataInputStream(new ByteArrayInputStream(snapshot));
+		for(int i = 0; i < store.size(); i++) {
+			store.get(i).readState(in);
+			store.setMove(i, in.readFloat(), in.readFloat());
+		}
+	}
+}
@@ -0,0 +1,218 @@
+package devforrest.mario.tools;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import devforrest.mario.core.GameLoader;
+import devforrest.mario.core.GameRenderer;
+import devforrest.mario.core.Simulation;
+import devforrest.mario.core.World;
+import devforrest.mario.core.input.InputSource;
+import devforrest.mario.core.input.Replay;
+import devforrest.mario.core.input.ScriptedInput;
+import devforrest.mario.core.profile.FrameProfiler;
+import devforrest.mario.core.sound.ThreadPool;
+import devforrest.mario.core.tile.TileMap;
+import devforrest.mario.objects.mario.Mario;
+
+/**
+ * LevelValidator plays a batch of maps without a screen or sound and reports, for each map,
+ * how often Mario reached the end, fell off the map or got stuck, how many times he died on
+ * the way and how fast the map runs. Like in the game, a death doesn't end the run.
+ * 
+ * Every map is played several times by a ScriptedInput with a different seed, or once with 
+ * the buttons of a recorded Replay. The runs are spread over all cores; each has its own 
+ * World, TileMap, Mario and sound managers, so they share nothing that changes.
+ * 
+ * Usage: java devforrest.mario.tools.LevelValidator [-replay file] [-attempts n] [-ticks n] 
+ *        [-threads n] map-or-directory...
+ * 
+ * Directories are searched for *.txt maps. Run it from the game's directory, so the images 
+ * and sounds are found. The exit code is 1 if a map was never finished or failed to load.
+ */
+
+public class LevelValidator {
+	
+	private static final int SCREEN_WIDTH = 420;
+	private static final int SCREEN_HEIGHT = 330;
+	private static final int PERIOD = 20;
+	private static final int GOAL_MARGIN = 48; // Mario has finished within this many pixels of the right edge
+	private static final int STUCK_TICKS = 500; // Mario is stuck if he gets no further right in this many ticks
+	private static final int STUCK_DISTANCE = 16;
+	
+	/** How a run ended. */
+	public enum Outcome { COMPLETED, FELL, STUCK, TIMED_OUT, FAILED }
+	
+	/** The result of playing one map once. */
+	public static class Run {
+		public final String map;
+		public final int attempt;
+		public Outcome outcome;
+		public long ticks;
+		public long nanos;
+		public int hits; // times Mario was hurt
+		public int deaths; // hits that left Mario without health
+		public float maxX;
+		public String error;
+		
+		public Run(String map, int attempt) {
+			this.map = map;
+			this.attempt = attempt;
+		}
+	}
+	
+	public static void main(String[] args) throws IOException {
+		
+		String replayFile = null;
+		int attempts = 4;
+		long maxTicks = 15000;
+		int threads = Runtime.getRuntime().availableProcessors();
+		List<String> maps = new ArrayList<String>();
+		for(int i = 0; i < args.length; i++) {
+			if(args[i].equals("-replay") && i + 1 < args.length) {
+				replayFile = args[++i];
+			} else if(args[i].equals("-attempts") && i + 1 < args.length) {
+				attempts = Integer.parseInt(args[++i]);
+			} else if(args[i].equals("-ticks") && i + 1 < args.length) {
+				maxTicks = Long.parseLong(args[++i]);
+			} else if(args[i].equals("-threads") && i + 1 < args.length) {
+				threads = Integer.parseInt(args[++i]);
+			} else {
+				addMaps(new File(args[i]), maps);
+			}
+		}
+		if(maps.isEmpty()) {
+			System.out.println("Usage: java devforrest.mario.tools.LevelValidator [-replay file] [-attempts n] "
+					+ "[-ticks n] [-threads n] map-or-directory...");
+			System.exit(1);
+		}
+		
+		final Replay replay = (replayFile == null) ? null : Replay.load(replayFile);
+		if(replay != null) {
+			attempts = 1;
+			maxTicks = replay.getLength();
+		}
+		
+		final Run[] runs = new Run[maps.size() * attempts];
+		ThreadPool pool = new ThreadPool(threads, runs.length, ThreadPool.SaturationPolicy.ABORT);
+		long start = System.nanoTime();
+		for(int i = 0; i < runs.length; i++) {
+			final Run run = new Run(maps.get(i / attempts), i % attempts);
+			final long ticks = maxTicks;
+			runs[i] = run;
+			pool.runTask(new Runnable() {
+				public void run() {
+					play(run, replay, ticks);
+				}
+			});
+		}
+		pool.join();
+		long wallNanos = System.nanoTime() - start;
+		
+		System.out.println(String.format("%-24s %9s %6s %6s %9s %6s %9s %10s", 
+				"map", "completed", "fell", "stuck", "timed out", "deaths", "ticks", "ticks/s"));
+		boolean ok = true;
+		long totalTicks = 0;
+		for(int m = 0; m < maps.size(); m++) {
+			int[] outcomes = new int[Outcome.values().length];
+			long ticks = 0;
+			long nanos = 0;
+			int deaths = 0;
+			for(int a = 0; a < attempts; a++) {
+				Run run = runs[m * attempts + a];
+				outcomes[run.outcome.ordinal()]++;
+				ticks += run.ticks;
+				nanos += run.nanos;
+				deaths += run.deaths;
+				if(run.error != null) {
+					System.out.println(run.map + " attempt " + run.attempt + " failed: " + run.error);
+				}
+			}
+			totalTicks += ticks;
+			ok &= outcomes[Outcome.COMPLETED.ordinal()] > 0 && outcomes[Outcome.FAILED.ordinal()] == 0;
+			System.out.println(String.format("%-24s %5d/%-3d %6d %6d %9d %6d %9d %10d", maps.get(m),
+					outcomes[Outcome.COMPLETED.ordinal()], attempts, outcomes[Outcome.FELL.ordinal()],
+					outcomes[Outcome.STUCK.ordinal()], outcomes[Outcome.TIMED_OUT.ordinal()], deaths, ticks, 
+					(nanos == 0) ? 0 : ticks * 1000000000L / nanos));
+		}
+		System.out.println(runs.length + " runs on " + threads + " threads in " + wallNanos / 1000000 + " ms, " 
+				+ totalTicks * 1000000000L / Math.max(1, wallNanos) + " ticks/s in total");
+		System.exit(ok ? 0 : 1);
+	}
+	
+	/**
+	 * Plays run.map once, with the buttons of replay or, if it is null, of a ScriptedInput
+	 * seeded with the attempt number, for at most maxTicks ticks.
+	 */
+	public static void play(Run run, Replay replay, long maxTicks) {
+		long start = System.nanoTime();
+		run.outcome = Outcome.FAILED; // until the game is running
+		try {
+			// Nothing listens to the World's events, so no sound is loaded or played.
+			long seed = (replay != null) ? replay.getSeed() : run.attempt;
+			World world = new World(new File(run.map).getName() + "#" + run.attempt);
+			TileMap map = new GameLoader().loadMap(run.map, seed, world);
+			Mario mario = new Mario();
+			map.setPlayer(mario);
+			Simulation simulation = new Simulation(map, PERIOD, SCREEN_WIDTH, SCREEN_HEIGHT, new FrameProfiler());
+			InputSource input = (replay != null) ? replay : new ScriptedInput(seed);
+			
+			int goalX = GameRenderer.tilesToPixels(map.getWidth()) - GOAL_MARGIN;
+			int bottomY = GameRenderer.tilesToPixels(map.getHeight()) - mario.getHeight();
+			start = System.nanoTime(); // time the game, not the loading
+			float progressX = mario.getX();
+			long progressTick = 0;
+			int health = mario.getHealth();
+			run.outcome = Outcome.TIMED_OUT;
+			while(simulation.getTick() < maxTicks) {
+				simulation.step(input.sample(simulation.getTick()));
+				long tick = simulation.getTick();
+				if(mario.getHealth() < health) {
+					run.hits++;
+					if(mario.getHealth() <= 0) { run.deaths++; }
+				}
+				health = mario.getHealth();
+				run.maxX = Math.max(run.maxX, mario.getX());
+				
+				if(mario.getX() >= goalX) {
+					run.outcome = Outcome.COMPLETED;
+					break;
+				}
+				if(mario.getY() > bottomY) {
+					run.outcome = Outcome.FELL;
+					break;
+				}
+				if(mario.getX() >= progressX + STUCK_DISTANCE) {
+					progressX = mario.getX();
+					progressTick = tick;
+				} else if(tick - progressTick > STUCK_TICKS) {
+					run.outcome = Outcome.STUCK;
+					break;
+				}
+			}
+			run.ticks = simulation.getTick();
+		} catch (Throwable t) { // an Error of one run, like a StackOverflowError, fails only that run
+			run.outcome = Outcome.FAILED;
+			run.error = t.toString();
+		}
+		run.nanos = System.nanoTime() - start;
+	}
+	
+	private static void addMaps(File file, List<String> maps) {
+		if(file.isDirectory()) {
+			File[] files = file.listFiles();
+			if(files == null) { return; }
+			Arrays.sort(files);
+			for(File f : files) {
+				if(f.isFile() && f.getName().endsWith(".txt")) {
+					maps.add(f.getPath());
+				}
+			}
+		} else {
+			maps.add(file.getPath());
+		}
+	}
+}
@@ -0,0 +1,88 @@
+package devforrest.mario.tools;
+
+import java.io.IOException;
+import java.util.concurrent.ForkJoinPool;
+
+import devforrest.mario.core.GameLoader;
+import devforrest.mario.core.Simulation;
+import devforrest.mario.core.World;
+import devforrest.mario.core.input.Replay;
+import devforrest.mario.core.profile.FrameProfiler;
+import devforrest.mario.core.tile.TileMap;
+import devforrest.mario.objects.mario.Mario;
+
+/**
+ * ReplayRunner plays a saved Replay as fast as possible without a screen or sound, and 
+ * prints the state the game ends in. Since a replay always ends in the same state, the 
+ * checksum it prints can be used to check that a change didn't alter the game, and the 
+ * time it takes makes a repeatable benchmark of the game logic.
+ * 
+ * Usage: java devforrest.mario.tools.ReplayRunner replay-file [runs] [workers]
+ * 
+ * With workers, the creatures are updated by that many threads; the checksum is the same.
+ * 
+ * Run it from the game's directory, so the map, images and sounds are found.
+ */
+
+public class ReplayRunner {
+	
+	public static void main(String[] args) throws IOException {
+		
+		if(args.length < 1) {
+			System.out.println("Usage: java devforrest.mario.tools.ReplayRunner replay-file [runs] [workers]");
+			System.exit(1);
+		}
+		Replay replay = Replay.load(args[0]);
+		int runs = (args.length > 1) ? Integer.parseInt(args[1]) : 1;
+		ForkJoinPool pool = (args.length > 2) ? new ForkJoinPool(Integer.parseInt(args[2])) : null;
+		
+		System.out.println("Replay of " + replay.getMapFile() + ", seed " + replay.getSeed() + ", " 
+				+ replay.getLength() + " ticks, " + replay.getNumChanges() + " input changes");
+		
+		long firstChecksum = 0;
+		for(int run = 0; run < runs; run++) {
+			long start = System.nanoTime();
+			Simulation simulation = run(replay, pool);
+			long millis = (System.nanoTime() - start) / 1000000;
+			
+			Mario mario = simulation.getMap().getPlayer();
+			long checksum = simulation.checksum();
+			System.out.println("Run " + (run + 1) + ": " + millis + " ms, Mario at (" + mario.getX() + ", " 
+					+ mario.getY() + ") health " + mario.getHealth() + ", checksum " + Long.toHexString(checksum));
+			if(run == 0) {
+				firstChecksum = checksum;
+			} else if(checksum != firstChecksum) {
+				System.out.println("Checksum differs from the first run, the game isn't deterministic.");
+				System.exit(2);
+			}
+		}
+	}
+	
+	/**
+	 * Loads the replay's map and runs every recorded tick.
+	 * @return the Simulation after the last tick.
+	 */
+	public static Simulation run(Replay replay) throws IOException {
+		return run(replay, null);
+	}
+	
+	/**
+	 * Loads the replay's map and runs every recorded tick, updating the creatures on the 
+	 * threads of pool, or on this thread if it is null.
+	 * @return the Simulation after the last tick.
+	 */
+	public static Simulation run(Replay replay, ForkJoinPool pool) throws IOException {
+		// Nothing listens to the World's events, so no sound is loaded or played.
+		World world = new World("replay");
+		TileMap map = new GameLoader().loadMap(replay.getMapFile(), replay.getSeed(), world);
+		map.setPlayer(new Mario());
+		Simulation simulation = new Simulation(map, replay.getPeriod(), replay.getScreenWidth(), 
+				replay.getScreenHeight(), new FrameProfiler());
+		simulation.setWorkerPool(pool);
+		
+		for(long tick = 0; tick < replay.getLength(); tick++) {
+			simulation.step(replay.sample(tick));
+		}
+		return simulation;
+	}
+}
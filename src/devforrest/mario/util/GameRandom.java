@@ -0,0 +1,55 @@
+package devforrest.mario.util;
+
+/**
+ * GameRandom.java
+ * 
+ * A small seeded random number generator (xorshift64*) for everything that
+ * changes the game state. Unlike java.util.Random, its whole state is one long
+ * that can be read and written, so a game can be replayed or restored exactly.
+ * 
+ */
+public class GameRandom {
+	
+	private long state;
+	
+	/** Creates a new GameRandom with the given seed. */
+	public GameRandom(long seed) {
+		setSeed(seed);
+	}
+	
+	/** Resets this GameRandom to the sequence of the given seed. */
+	public void setSeed(long seed) {
+		// mix the seed so that close seeds give unrelated sequences, and never use 0
+		long z = seed + 0x9E3779B97F4A7C15L;
+		z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+		z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+		z = z ^ (z >>> 31);
+		state = (z == 0) ? 0x9E3779B97F4A7C15L : z;
+	}
+	
+	/** Returns the internal state, to be restored with setState(). */
+	public long getState() {
+		return state;
+	}
+	
+	/** Restores a state returned by getState(). */
+	public void setState(long state) {
+		this.state = (state == 0) ? 0x9E3779B97F4A7C15L : state;
+	}
+	
+	/** Returns the next pseudorandom long. */
+	public long nextLong() {
+		state ^= state >>> 12;
+		state ^= state << 25;
+		state ^= state >>> 27;
+		return state * 0x2545F4914F6CDD1DL;
+	}
+	
+	/** Returns a pseudorandom int between 0 (inclusive) and bound (exclusive). */
+	public int nextInt(int bound) {
+		if(bound <= 0) {
+			throw new IllegalArgumentException("bound must be positive");
+		}
+		return (int) (((nextLong() >>> 33) * bound) >>> 31);
+	}
+}